@@ -6,11 +6,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -18,9 +30,47 @@ import org.apache.commons.logging.LogFactory;
 /**
  * This class wraps the Unix command getent to retrieve entries from the name
  * service switch libraries.
+ *
+ * In {@link Mode#FULL} mode the complete group and passwd databases are
+ * retrieved and cached as a whole. While the directory is in use, i.e. it
+ * has been read since it was last retrieved, it is retrieved again by a
+ * background thread shortly before the caching period expires, and the new
+ * directory replaces the cached one atomically, so that lookups don't wait
+ * for getent. Otherwise the background thread stops; the next lookup after
+ * expiry is served from the expired directory and restarts it. Only the
+ * very first lookup waits for getent. If retrieval fails, the previously
+ * retrieved directory remains in use and retrieval is retried.
+ *
+ * In {@link Mode#TARGETED} mode only the requested entries are retrieved,
+ * passing their names or IDs as keys to getent, and each is cached for the
+ * caching period on its own; entries not found are not cached, and evicted
+ * once getent no longer finds them. If getent fails, previously retrieved
+ * entries remain in use. Several entries can be retrieved by a single
+ * getent process using {@link #lookupUsers(Collection)} and
+ * {@link #lookupGroups(Collection)}. Users retrieved in targeted mode only
+ * carry their primary group, as their other groups are not known without
+ * retrieving the complete group database.
+ *
+ * This class is thread-safe.
  */
 public final class Getent {
 
+    /**
+     * The lookup modes.
+     */
+    public enum Mode {
+
+        /**
+         * The complete databases are retrieved and cached.
+         */
+        FULL,
+
+        /**
+         * Only the requested entries are retrieved and cached.
+         */
+        TARGETED
+    }
+
     private static final class Directory {
 
         private final Map<String, User> usersByName;
@@ -31,11 +81,14 @@ public final class Getent {
 
         private final Map<Integer, Group> groupsByGID;
 
+        private final long timestamp;
+
         private Directory(final Map<String, User> usersByName,
                 Map<Integer, User> usersByUID,
                 final Map<String, Group> groupsByName,
-                Map<Integer, Group> groupsByGID) {
+                Map<Integer, Group> groupsByGID, final long timestamp) {
 
+            this.timestamp = timestamp;
             this.usersByName = Collections.unmodifiableMap(usersByName);
             this.usersByUID = Collections.unmodifiableMap(usersByUID);
             this.groupsByName = Collections.unmodifiableMap(groupsByName);
@@ -43,6 +96,21 @@ public final class Getent {
         }
     }
 
+    /**
+     * An entry cached in targeted mode.
+     */
+    private static final class Cached<T> {
+
+        private final T value;
+
+        private final long timestamp;
+
+        private Cached(final T value, final long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+    }
+
     /**
      * The log object used for debugging and reporting.
      */
@@ -68,6 +136,22 @@ public final class Getent {
      */
     private static final String DEFAULT_GETENT_PWD_CMD = "getent passwd";
 
+    /**
+     * The maximum number of keys passed to a single getent process.
+     */
+    private static final int MAX_KEYS_PER_LOOKUP = 100;
+
+    /**
+     * The fraction of the caching period after which the directory is
+     * retrieved again in the background.
+     */
+    private static final double REFRESH_FRACTION = 0.9;
+
+    /**
+     * The exit code of getent if one or more keys were not found.
+     */
+    private static final int EXIT_KEY_NOT_FOUND = 2;
+
     /**
      * The caching period of entries in milliseconds.
      */
@@ -84,14 +168,55 @@ public final class Getent {
     private final String getentPasswdCmd;
 
     /**
-     * The cached directory information.
+     * The lookup mode.
      */
-    private Directory cachedDirectory = null;
+    private final Mode mode;
 
     /**
-     * The timestamp when the directory was cached.
+     * The users cached in targeted mode by name.
      */
-    private long cacheTimestamp = 0L;
+    private final ConcurrentMap<String, Cached<User>> cachedUsersByName =
+            new ConcurrentHashMap<String, Cached<User>>();
+
+    /**
+     * The users cached in targeted mode by ID.
+     */
+    private final ConcurrentMap<Integer, Cached<User>> cachedUsersByUID =
+            new ConcurrentHashMap<Integer, Cached<User>>();
+
+    /**
+     * The groups cached in targeted mode by name.
+     */
+    private final ConcurrentMap<String, Cached<Group>> cachedGroupsByName =
+            new ConcurrentHashMap<String, Cached<Group>>();
+
+    /**
+     * The groups cached in targeted mode by ID.
+     */
+    private final ConcurrentMap<Integer, Cached<Group>> cachedGroupsByGID =
+            new ConcurrentHashMap<Integer, Cached<Group>>();
+
+    /**
+     * The cached directory information, replaced by the refresher.
+     */
+    private volatile Directory cachedDirectory = null;
+
+    /**
+     * Indicates whether the directory has been read since it was retrieved.
+     */
+    private final AtomicBoolean directoryRead = new AtomicBoolean(false);
+
+    /**
+     * The background thread retrieving the directory again while it is in
+     * use, null otherwise; modified only while holding this.
+     */
+    private volatile ScheduledExecutorService refresher = null;
+
+    /**
+     * Indicates whether the directory is no longer retrieved in the
+     * background, guarded by this.
+     */
+    private boolean shutdown = false;
 
     /**
      * Constructs a new getent wrapper.
@@ -103,18 +228,55 @@ public final class Getent {
      *            the command to execute for getent group
      * @param getentPasswdCmd
      *            the command to execute for getent passwd
+     * @param mode
+     *            the lookup mode
      */
     public Getent(final int cachingPeriod, final String getentGroupCmd,
-            final String getentPasswdCmd) {
+            final String getentPasswdCmd, final Mode mode) {
 
         if (cachingPeriod < 0) {
             throw new IllegalArgumentException(
                     "Value for argument cachingPeriod must be 0 or larger");
         }
+        if (mode == null) {
+            throw new IllegalArgumentException(
+                    "Value for argument mode must not be null");
+        }
 
         this.cachingPeriodInMilliSeconds = cachingPeriod * 1000L;
         this.getentGroupCmd = getentGroupCmd;
         this.getentPasswdCmd = getentPasswdCmd;
+        this.mode = mode;
+    }
+
+    /**
+     * Constructs a new getent wrapper retrieving the complete databases.
+     * 
+     * @param cachingPeriod
+     *            the period of time to cache retrieved directory entries in
+     *            seconds
+     * @param getentGroupCmd
+     *            the command to execute for getent group
+     * @param getentPasswdCmd
+     *            the command to execute for getent passwd
+     */
+    public Getent(final int cachingPeriod, final String getentGroupCmd,
+            final String getentPasswdCmd) {
+        this(cachingPeriod, getentGroupCmd, getentPasswdCmd, Mode.FULL);
+    }
+
+    /**
+     * Constructs a new getent wrapper.
+     * 
+     * @param cachingPeriod
+     *            the period of time to cache retrieved directory entries in
+     *            seconds
+     * @param mode
+     *            the lookup mode
+     */
+    public Getent(final int cachingPeriod, final Mode mode) {
+        this(cachingPeriod, DEFAULT_GETENT_GROUP_CMD, DEFAULT_GETENT_PWD_CMD,
+                mode);
     }
 
     /**
@@ -146,6 +308,11 @@ public final class Getent {
      */
     public User getUserByName(final String name) {
 
+        if (this.mode == Mode.TARGETED) {
+            lookupUsers(Collections.singleton(name));
+            return valueOf(this.cachedUsersByName.get(name));
+        }
+
         final Directory directory = getDirectory();
         if (directory == null) {
             return null;
@@ -164,6 +331,14 @@ public final class Getent {
      */
     public User getUserByUID(final int uid) {
 
+        if (this.mode == Mode.TARGETED) {
+            final Integer key = Integer.valueOf(uid);
+            if (!isCached(this.cachedUsersByUID.get(key))) {
+                fetchUsers(Collections.singletonList(key.toString()));
+            }
+            return valueOf(this.cachedUsersByUID.get(key));
+        }
+
         final Directory directory = getDirectory();
         if (directory == null) {
             return null;
@@ -182,6 +357,11 @@ public final class Getent {
      */
     public Group getGroupByName(final String name) {
 
+        if (this.mode == Mode.TARGETED) {
+            lookupGroups(Collections.singleton(name));
+            return valueOf(this.cachedGroupsByName.get(name));
+        }
+
         final Directory directory = getDirectory();
         if (directory == null) {
             return null;
@@ -200,6 +380,14 @@ public final class Getent {
      */
     public Group getGroupByGID(final int gid) {
 
+        if (this.mode == Mode.TARGETED) {
+            final Integer key = Integer.valueOf(gid);
+            if (!isCached(this.cachedGroupsByGID.get(key))) {
+                fetchGroups(Collections.singletonList(key.toString()));
+            }
+            return valueOf(this.cachedGroupsByGID.get(key));
+        }
+
         final Directory directory = getDirectory();
         if (directory == null) {
             return null;
@@ -208,6 +396,279 @@ public final class Getent {
         return directory.groupsByGID.get(Integer.valueOf(gid));
     }
 
+    /**
+     * Returns the lookup mode.
+     * 
+     * @return the lookup mode
+     */
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * Retrieves the users with the given names not cached yet, using as few
+     * getent processes as possible. Does nothing in full mode.
+     * 
+     * @param names
+     *            the names of the users to look up
+     */
+    public void lookupUsers(final Collection<String> names) {
+
+        if (this.mode != Mode.TARGETED) {
+            return;
+        }
+
+        final List<String> keys = new ArrayList<String>();
+        for (String name : new HashSet<String>(names)) {
+            if (!isCached(this.cachedUsersByName.get(name))) {
+                keys.add(name);
+            }
+        }
+        fetchUsers(keys);
+    }
+
+    /**
+     * Retrieves the groups with the given names not cached yet, using as few
+     * getent processes as possible. Does nothing in full mode.
+     * 
+     * @param names
+     *            the names of the groups to look up
+     */
+    public void lookupGroups(final Collection<String> names) {
+
+        if (this.mode != Mode.TARGETED) {
+            return;
+        }
+
+        final List<String> keys = new ArrayList<String>();
+        for (String name : new HashSet<String>(names)) {
+            if (!isCached(this.cachedGroupsByName.get(name))) {
+                keys.add(name);
+            }
+        }
+        fetchGroups(keys);
+    }
+
+    private boolean isCached(final Cached<?> cached) {
+        return cached != null && this.cachingPeriodInMilliSeconds > 0L
+                && cached.timestamp + this.cachingPeriodInMilliSeconds
+                        >= System.currentTimeMillis();
+    }
+
+    private static <T> T valueOf(final Cached<T> cached) {
+        return cached != null ? cached.value : null;
+    }
+
+    /**
+     * Retrieves the groups with the given names or IDs, caches those found
+     * and evicts those getent reported as not found.
+     */
+    private void fetchGroups(final List<String> keys) {
+
+        final Map<Integer, Group> groupsByGID = new HashMap<Integer, Group>();
+        final Map<String, Group> groupsByName = new HashMap<String, Group>();
+        final Map<String, Set<Group>> temporaryUserToGroupMap = new HashMap<String, Set<Group>>();
+
+        final List<String> answered = new ArrayList<String>();
+        for (String line : lookup(this.getentGroupCmd, keys, answered)) {
+            parseGroupLine(line, groupsByName, groupsByGID,
+                    temporaryUserToGroupMap);
+        }
+
+        final long now = System.currentTimeMillis();
+        for (Group group : groupsByName.values()) {
+            final Cached<Group> cached = new Cached<Group>(group, now);
+            this.cachedGroupsByName.put(group.getName(), cached);
+            this.cachedGroupsByGID.put(Integer.valueOf(group.getGID()), cached);
+        }
+
+        evictMissing(answered, groupsByName, groupsByGID,
+                this.cachedGroupsByName, this.cachedGroupsByGID);
+    }
+
+    /**
+     * Retrieves the users with the given names or IDs along with their
+     * primary groups, caches those found and evicts those getent reported as
+     * not found.
+     */
+    private void fetchUsers(final List<String> keys) {
+
+        final List<String> answered = new ArrayList<String>();
+        final List<String> lines = lookup(this.getentPasswdCmd, keys,
+                answered);
+
+        // retrieve primary groups not cached yet
+        final List<String> gids = new ArrayList<String>();
+        for (String line : lines) {
+            final String[] fields = line.split(":");
+            if (fields.length >= 4 && !gids.contains(fields[3])) {
+                try {
+                    if (!isCached(this.cachedGroupsByGID.get(
+                            Integer.valueOf(fields[3])))) {
+                        gids.add(fields[3]);
+                    }
+                } catch (NumberFormatException nfe) {
+                    // reported when parsing the line
+                }
+            }
+        }
+        fetchGroups(gids);
+
+        final Map<Integer, Group> groupsByGID = new HashMap<Integer, Group>();
+        for (Map.Entry<Integer, Cached<Group>> entry
+                : this.cachedGroupsByGID.entrySet()) {
+            groupsByGID.put(entry.getKey(), entry.getValue().value);
+        }
+
+        final Map<String, User> usersByName = new HashMap<String, User>();
+        final Map<Integer, User> usersByUID = new HashMap<Integer, User>();
+        for (String line : lines) {
+            parsePasswdLine(line, usersByName, usersByUID, groupsByGID,
+                    new HashMap<String, Set<Group>>());
+        }
+
+        final long now = System.currentTimeMillis();
+        for (User user : usersByName.values()) {
+            final Cached<User> cached = new Cached<User>(user, now);
+            this.cachedUsersByName.put(user.getName(), cached);
+            this.cachedUsersByUID.put(Integer.valueOf(user.getUID()), cached);
+        }
+
+        evictMissing(answered, usersByName, usersByUID,
+                this.cachedUsersByName, this.cachedUsersByUID);
+    }
+
+    /**
+     * Evicts the cached entries of the given keys answered by getent, but
+     * not found by name or ID. Entries of keys not answered, because getent
+     * failed, are kept.
+     */
+    private static <T> void evictMissing(final List<String> answered,
+            final Map<String, T> foundByName, final Map<Integer, T> foundByID,
+            final ConcurrentMap<String, Cached<T>> cachedByName,
+            final ConcurrentMap<Integer, Cached<T>> cachedByID) {
+
+        for (String key : answered) {
+
+            Integer id = null;
+            try {
+                id = Integer.valueOf(key);
+            } catch (NumberFormatException nfe) {
+                // a name
+            }
+
+            if (foundByName.containsKey(key)
+                    || (id != null && foundByID.containsKey(id))) {
+                continue;
+            }
+            cachedByName.remove(key);
+            if (id != null) {
+                cachedByID.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Executes the given getent command with the given keys, split into
+     * batches of at most MAX_KEYS_PER_LOOKUP keys; returns the output lines
+     * of the batches that succeeded and adds their keys to answered.
+     */
+    private static List<String> lookup(final String getentCmd,
+            final List<String> keys, final List<String> answered) {
+
+        final List<String> results = new ArrayList<String>();
+        for (int from = 0; from < keys.size(); from += MAX_KEYS_PER_LOOKUP) {
+
+            final List<String> batch = keys.subList(from,
+                    Math.min(keys.size(), from + MAX_KEYS_PER_LOOKUP));
+            final List<String> command = new ArrayList<String>(
+                    Arrays.asList(getentCmd.trim().split("\\s+")));
+            command.addAll(batch);
+
+            final List<String> lines = execute(command);
+            if (lines != null) {
+                results.addAll(lines);
+                answered.addAll(batch);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Executes the given command and returns its output lines, or
+     * <code>null</code> if it failed.
+     */
+    private static List<String> execute(final List<String> command) {
+
+        final List<String> lines = new ArrayList<String>();
+        final Process p;
+        try {
+            p = new ProcessBuilder(command).start();
+        } catch (IOException ioe) {
+            if (LOG.isErrorEnabled()) {
+                LOG.error("Error while executing " + command + ": "
+                        + ioe.getMessage());
+            }
+            return null;
+        }
+
+        boolean failed = false;
+        Closeable closeable = null;
+
+        try {
+
+            closeSilently(p.getErrorStream());
+            final InputStream is = p.getInputStream();
+            closeable = is;
+            final InputStreamReader isr = new InputStreamReader(is,
+                    DEFAULT_CHARSET);
+            closeable = isr;
+            final BufferedReader br = new BufferedReader(isr);
+            closeable = br;
+
+            String line;
+            while ((line = br.readLine()) != null) {
+                lines.add(line);
+            }
+
+        } catch (IOException ioe) {
+            if (LOG.isErrorEnabled()) {
+                LOG.error("Error while executing " + command + ": "
+                        + ioe.getMessage());
+            }
+            failed = true;
+        } finally {
+            closeSilently(closeable);
+        }
+
+        try {
+            final int exitCode = p.waitFor();
+            if (exitCode != 0 && exitCode != EXIT_KEY_NOT_FOUND) {
+                if (LOG.isErrorEnabled()) {
+                    LOG.error(command + " returned with code " + exitCode);
+                }
+                failed = true;
+            }
+        } catch (InterruptedException e) {
+            if (LOG.isErrorEnabled()) {
+                LOG.error(command + " received interrupt: " + e.getMessage());
+            }
+            Thread.currentThread().interrupt();
+            failed = true;
+        }
+
+        return failed ? null : lines;
+    }
+
+    /**
+     * Stops retrieving the directory in the background. Lookups retrieve the
+     * directory themselves once it has expired.
+     */
+    public synchronized void shutdown() {
+        this.shutdown = true;
+        stopRefresher();
+    }
+
     private Directory getDirectory() {
 
         if (this.cachingPeriodInMilliSeconds == 0L) {
@@ -215,25 +676,137 @@ public final class Getent {
             return createDirectory(this.getentGroupCmd, this.getentPasswdCmd);
         }
 
-        final long now = System.currentTimeMillis();
+        // The refresher keeps the directory current while it's in use, a
+        // stale one is used while the refresher retries or restarts
+        final Directory cached = this.cachedDirectory;
+        if (cached != null) {
+            this.directoryRead.set(true);
+            if (!isExpired(cached) || this.refresher != null) {
+                return cached;
+            }
+        }
+
         synchronized (this) {
-            if (this.cachedDirectory == null
-                    || this.cacheTimestamp + this.cachingPeriodInMilliSeconds < now) {
+            Directory current = this.cachedDirectory;
+
+            // The refresher stopped while the directory was idle, restart it
+            if (current != null && !this.shutdown) {
+                if (isExpired(current) && this.refresher == null) {
+                    this.directoryRead.set(true);
+                    scheduleRefresh(0L);
+                }
+                return current;
+            }
+
+            if (current == null || isExpired(current)) {
 
                 final Directory directory = createDirectory(
                         this.getentGroupCmd, this.getentPasswdCmd);
                 if (directory != null) {
                     this.cachedDirectory = directory;
-                    this.cacheTimestamp = now;
+                    this.directoryRead.set(false);
+                    current = directory;
+                    scheduleRefresh((long) (this.cachingPeriodInMilliSeconds
+                            * REFRESH_FRACTION));
+                }
+            }
+            return current;
+        }
+    }
+
+    private boolean isExpired(final Directory directory) {
+        return directory.timestamp + this.cachingPeriodInMilliSeconds
+                < System.currentTimeMillis();
+    }
+
+    private long getRetryDelay() {
+        return (long) (this.cachingPeriodInMilliSeconds
+                * (1 - REFRESH_FRACTION));
+    }
+
+    /**
+     * Retrieves the directory again if it has been read since it was last
+     * retrieved, executed by the refresher.
+     */
+    private void refreshDirectory() {
+
+        if (!this.directoryRead.getAndSet(false)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Directory not read since last retrieved, "
+                        + "stopping refresher");
+            }
+            synchronized (this) {
+                stopRefresher();
+            }
+            return;
+        }
+
+        final Directory directory = createDirectory(this.getentGroupCmd,
+                this.getentPasswdCmd);
+        if (directory == null) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("Refreshing directory failed, "
+                        + "keeping directory retrieved at "
+                        + new Date(this.cachedDirectory.timestamp)
+                        + ", retrying in " + getRetryDelay() + " ms");
+            }
+            scheduleRefresh(getRetryDelay());
+            return;
+        }
+
+        this.cachedDirectory = directory;
+        scheduleRefresh((long) (this.cachingPeriodInMilliSeconds
+                * REFRESH_FRACTION));
+    }
+
+    /**
+     * Schedules retrieval of the directory after the given delay, starting
+     * the refresher if needed.
+     */
+    private synchronized void scheduleRefresh(final long delay) {
+
+        if (this.shutdown) {
+            return;
+        }
+
+        if (this.refresher == null) {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "getent-refresher");
+                    t.setDaemon(true);
+                    return t;
                 }
+            });
+        }
+
+        this.refresher.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                refreshDirectory();
             }
-            return this.cachedDirectory;
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the refresher, called while holding this.
+     */
+    private void stopRefresher() {
+        if (this.refresher != null) {
+            this.refresher.shutdownNow();
+            this.refresher = null;
         }
     }
 
     private static Directory createDirectory(final String getentGroupCmd,
             final String getentPasswdCmd) {
 
+        final long timestamp = System.currentTimeMillis();
+        boolean failed = false;
+
         final Map<Integer, Group> groupsByGID = new HashMap<Integer, Group>();
         final Map<String, Group> groupsByName = new HashMap<String, Group>();
         final Map<String, Set<Group>> temporaryUserToGroupMap = new HashMap<String, Set<Group>>();
@@ -271,19 +844,26 @@ public final class Getent {
                     final int exitCode = p.waitFor();
                     if (exitCode != 0) {
                         if (LOG.isErrorEnabled()) {
-                            LOG.error(getentGroupCmd + "returned with code "
+                            LOG.error(getentGroupCmd + " returned with code "
                                     + exitCode);
                         }
+                        failed = true;
                     }
                 } catch (InterruptedException e) {
                     if (LOG.isErrorEnabled()) {
                         LOG.error(getentGroupCmd + " received interrupt: "
                                 + e.getMessage());
                     }
+                    failed = true;
                 }
             }
         }
 
+        // A partial directory must not replace a complete one
+        if (failed) {
+            return null;
+        }
+
         p = null;
         closeable = null;
 
@@ -320,20 +900,27 @@ public final class Getent {
                     final int exitCode = p.waitFor();
                     if (exitCode != 0) {
                         if (LOG.isErrorEnabled()) {
-                            LOG.error(getentPasswdCmd + "returned with code "
+                            LOG.error(getentPasswdCmd + " returned with code "
                                     + exitCode);
                         }
+                        failed = true;
                     }
                 } catch (InterruptedException e) {
                     if (LOG.isErrorEnabled()) {
                         LOG.error(getentPasswdCmd + " received interrupt: "
                                 + e.getMessage());
                     }
+                    failed = true;
                 }
             }
         }
 
-        return new Directory(usersByName, usersByUID, groupsByName, groupsByGID);
+        if (failed) {
+            return null;
+        }
+
+        return new Directory(usersByName, usersByUID, groupsByName, groupsByGID,
+                timestamp);
     }
 
     static void parseGroupLine(final String line,
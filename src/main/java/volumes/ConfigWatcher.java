@@ -0,0 +1,283 @@
+package volumes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Watches the configuration directory (XML files and the reconcile trigger
+ * file) and the VG configuration directory for changes using a
+ * java.nio.file.WatchService, so that the main loop doesn't need to scan
+ * both directories on every tick. Changes are coalesced until the
+ * directories have been quiet for the settle delay, then reported to the
+ * listener, which is expected to wake up the main loop; the main loop
+ * consumes them with consumeChange().
+ * <p>
+ * Watching only sees changes made through the local kernel, i.e. not those
+ * made on other hosts to an NFS-mounted directory; polling is to be used
+ * then, as well as if the watcher couldn't be started or has failed.
+ * <p>
+ * This class is thread-safe.
+ */
+final class ConfigWatcher {
+
+    /**
+     * Listener notified of changes, called from the watcher thread.
+     */
+    interface Listener {
+
+        /**
+         * called after a change has been detected
+         */
+        void changed(String reason);
+    }
+
+    /**
+     * default time in milliseconds without further events after which
+     * changes are reported
+     */
+    static final long SETTLE_DELAY = 500;
+
+    /**
+     * maximum number of settle delays changes are held back while events
+     * keep arriving
+     */
+    private static final int MAX_SETTLE_ROUNDS = 20;
+
+    private static final Log LOG = LogFactory.getLog(ConfigWatcher.class);
+
+    private final Path confDir;
+    private final Path vgDir;
+    private final long settleDelay;
+    private final Listener listener;
+
+    /**
+     * set on configuration changes, cleared by consumeChange()
+     */
+    private final AtomicBoolean changed = new AtomicBoolean(false);
+
+    /**
+     * set if a watched directory became inaccessible
+     */
+    private volatile boolean failed = false;
+
+    private WatchService service = null;
+    private Thread thread = null;
+
+    /**
+     * Constructor
+     *
+     * @param confDir
+     *            configuration directory, XML files and trigger file watched
+     * @param vgDir
+     *            VG configuration directory, all files watched
+     * @param settleDelay
+     *            time in milliseconds without further events after which
+     *            changes are reported
+     * @param listener
+     *            listener notified of changes
+     */
+    ConfigWatcher(final File confDir, final File vgDir, final long settleDelay,
+            final Listener listener) {
+        this.confDir = confDir.getAbsoluteFile().toPath();
+        this.vgDir = vgDir.getAbsoluteFile().toPath();
+        this.settleDelay = settleDelay;
+        this.listener = listener;
+    }
+
+    /**
+     * starts watching; returns false if the directories can't be watched
+     */
+    synchronized boolean start() {
+
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            register(confDir);
+            if (!vgDir.equals(confDir)) {
+                register(vgDir);
+            }
+        } catch (IOException e) {
+            LOG.warn("unable to watch configuration directories, falling back to polling : " + e);
+            close();
+            return false;
+        } catch (UnsupportedOperationException e) {
+            LOG.warn("watching configuration directories not supported, falling back to polling");
+            close();
+            return false;
+        }
+
+        thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+
+        LOG.info("watching " + confDir + " and " + vgDir + " for changes");
+        return true;
+    }
+
+    /**
+     * stops watching
+     */
+    synchronized void close() {
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                LOG.debug("unable to close watch service : " + e);
+            }
+            service = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * check and clear whether configuration has changed since the last call
+     */
+    boolean consumeChange() {
+        return changed.getAndSet(false);
+    }
+
+    /**
+     * check if watching failed, e.g. because a watched directory has been
+     * removed; changes are no longer reported then
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * retrieve watched VG configuration directory
+     */
+    File getVgDir() {
+        return vgDir.toFile();
+    }
+
+    private void register(final Path dir) throws IOException {
+        dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * watcher thread: waits for events, coalesces them and notifies the
+     * listener
+     */
+    private void watch() {
+
+        final WatchService ws;
+        synchronized (this) {
+            ws = service;
+        }
+        if (ws == null) {
+            return;
+        }
+
+        try {
+            while (!failed) {
+                final Change change = new Change();
+                process(ws.take(), change);
+
+                for (int i = 0; i < MAX_SETTLE_ROUNDS; i++) {
+                    final WatchKey key =
+                            ws.poll(settleDelay, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    process(key, change);
+                }
+
+                if (change.config != null) {
+                    changed.set(true);
+                    listener.changed("configuration change detected : "
+                            + change.config);
+                } else if (change.trigger != null) {
+                    listener.changed("trigger file " + change.trigger);
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    /**
+     * changes collected from a batch of events
+     */
+    private static final class Change {
+
+        /**
+         * first configuration file changed, null if none
+         */
+        private Path config = null;
+
+        /**
+         * trigger file if created or modified, null otherwise
+         */
+        private Path trigger = null;
+    }
+
+    /**
+     * collects events of a watch key and resets it
+     */
+    private void process(final WatchKey key, final Change change) {
+
+        final Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+
+            // events were lost, anything may have changed
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                if (change.config == null) {
+                    change.config = dir;
+                }
+                continue;
+            }
+
+            final Path name = (Path) event.context();
+            final Path file = dir.resolve(name);
+            if (dir.equals(confDir)) {
+                if (name.toString().equals(ReconcileScheduler.TRIGGER_FILE)) {
+                    if (event.kind() != StandardWatchEventKinds.ENTRY_DELETE) {
+                        change.trigger = file;
+                    }
+                    continue;
+                }
+                if (!name.toString().endsWith(".xml") && !dir.equals(vgDir)) {
+                    continue;
+                }
+            }
+            if (change.config == null) {
+                change.config = file;
+            }
+        }
+
+        // reported right away, as the main loop falls back to polling
+        if (!key.reset()) {
+            LOG.warn("configuration directory " + dir
+                    + " can no longer be watched, falling back to polling");
+            changed.set(true);
+            failed = true;
+            listener.changed("configuration directory " + dir
+                    + " can no longer be watched");
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package volumes;
+
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps Kerberos credentials valid by logging in again in the background once
+ * the given fraction of the ticket lifetime has passed, so that callers never
+ * wait for the KDC after the initial login. Each login creates a new Subject,
+ * which replaces the current one atomically: work started afterwards runs
+ * with the new Subject, while work in flight keeps using the old one, which
+ * is logged out only when its ticket expires. Failed logins are retried with
+ * exponential backoff.
+ * <p>
+ * This class is thread-safe.
+ */
+final class CredentialRefresher {
+
+    /**
+     * Login creating a new login context.
+     */
+    interface Login {
+
+        /**
+         * logs in, returns null if authentication failed
+         */
+        LoginContext login();
+    }
+
+    /**
+     * default delay in milliseconds before a failed login is retried
+     */
+    static final long MIN_RETRY_DELAY = 10000;
+
+    /**
+     * maximum delay in milliseconds before a failed login is retried
+     */
+    private static final long MAX_RETRY_DELAY = 600000;
+
+    private static final Log LOG = LogFactory.getLog(CredentialRefresher.class);
+
+    private final Login login;
+
+    /**
+     * fraction of the ticket lifetime after which credentials are refreshed
+     */
+    private final double fraction;
+
+    /**
+     * delay before the first retry of a failed login, doubled with each
+     * further failure
+     */
+    private final long minRetryDelay;
+
+    /**
+     * login context of the current Subject, null before the first login
+     */
+    private final AtomicReference<LoginContext> current =
+            new AtomicReference<LoginContext>();
+
+    /**
+     * single daemon thread running logins and logouts
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * next scheduled refresh, guarded by this
+     */
+    private ScheduledFuture<?> pending = null;
+
+    /**
+     * delay before the next retry, only accessed by the executor thread
+     */
+    private long retryDelay;
+
+    /**
+     * Constructor
+     *
+     * @param login
+     *            login creating new login contexts
+     * @param fraction
+     *            fraction of the ticket lifetime after which credentials are
+     *            refreshed, between 0 and 1
+     * @param minRetryDelay
+     *            delay in milliseconds before a failed refresh is retried
+     */
+    CredentialRefresher(final Login login, final double fraction,
+            final long minRetryDelay) {
+        this.login = login;
+        this.fraction = fraction;
+        this.minRetryDelay = minRetryDelay;
+        this.retryDelay = minRetryDelay;
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "credential-refresher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * logs in on the calling thread and schedules the first refresh; returns
+     * false if authentication failed
+     */
+    boolean login() {
+
+        final LoginContext lc = login.login();
+        if (lc == null) {
+            return false;
+        }
+
+        replace(lc);
+        return true;
+    }
+
+    /**
+     * retrieve current Subject, null before the first login
+     */
+    Subject getSubject() {
+        final LoginContext lc = current.get();
+        return lc != null ? lc.getSubject() : null;
+    }
+
+    /**
+     * requests a refresh in the background, e.g. because credentials have
+     * expired before a scheduled refresh succeeded; a refresh already due
+     * within the minimum retry delay is not brought forward, so that repeated
+     * requests don't defeat the retry backoff
+     */
+    synchronized void refreshNow() {
+        if (pending != null && !pending.isDone()
+                && pending.getDelay(TimeUnit.MILLISECONDS) <= minRetryDelay) {
+            return;
+        }
+        schedule(0);
+    }
+
+    /**
+     * stops refreshing and logs out the current Subject
+     */
+    void shutdown() {
+        executor.shutdownNow();
+        final LoginContext lc = current.getAndSet(null);
+        if (lc != null) {
+            logout(lc);
+        }
+    }
+
+    /**
+     * retrieve delay in milliseconds after which credentials of the given
+     * Subject are to be refreshed: the given fraction of the lifetime of its
+     * earliest expiring Kerberos ticket, 0 if that time has passed, and -1 if
+     * the Subject holds no Kerberos ticket
+     */
+    static long refreshDelay(final Subject subject, final long now,
+            final double fraction) {
+
+        long refreshTime = Long.MAX_VALUE;
+        for (KerberosTicket ticket
+                : subject.getPrivateCredentials(KerberosTicket.class)) {
+            final Date end = ticket.getEndTime();
+            if (end == null) {
+                continue;
+            }
+            final Date start = ticket.getStartTime() != null
+                    ? ticket.getStartTime() : ticket.getAuthTime();
+            final long startTime = start != null ? start.getTime() : now;
+            final long lifetime = Math.max(0, end.getTime() - startTime);
+            refreshTime = Math.min(refreshTime,
+                    startTime + (long) (lifetime * fraction));
+        }
+
+        if (refreshTime == Long.MAX_VALUE) {
+            return -1;
+        }
+        return Math.max(0, refreshTime - now);
+    }
+
+    /**
+     * retrieve expiry time of the earliest expiring Kerberos ticket of the
+     * given Subject, Long.MAX_VALUE if it holds none
+     */
+    private static long expiry(final Subject subject) {
+        long expiry = Long.MAX_VALUE;
+        for (KerberosTicket ticket
+                : subject.getPrivateCredentials(KerberosTicket.class)) {
+            if (ticket.getEndTime() != null) {
+                expiry = Math.min(expiry, ticket.getEndTime().getTime());
+            }
+        }
+        return expiry;
+    }
+
+    /**
+     * logs in again, executed by the refresher thread
+     */
+    private void refresh() {
+
+        LOG.info("refreshing Kerberos credentials");
+        final LoginContext lc = login.login();
+        if (lc == null) {
+            LOG.warn("refreshing Kerberos credentials failed, retrying in "
+                    + retryDelay + " ms");
+            schedule(retryDelay);
+            retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+            return;
+        }
+
+        retryDelay = minRetryDelay;
+        replace(lc);
+    }
+
+    /**
+     * makes the given login context current, schedules logout of the
+     * previous one at the expiry of its tickets and the next refresh
+     */
+    private void replace(final LoginContext lc) {
+
+        final long now = System.currentTimeMillis();
+        final LoginContext previous = current.getAndSet(lc);
+        if (previous != null) {
+            final long expiry = expiry(previous.getSubject());
+            try {
+                executor.schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        logout(previous);
+                    }
+                }, expiry == Long.MAX_VALUE ? 0 : Math.max(0, expiry - now),
+                        TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // executor shut down
+                logout(previous);
+            }
+        }
+
+        final long delay = refreshDelay(lc.getSubject(), now, fraction);
+        if (delay < 0) {
+            LOG.warn("no Kerberos ticket found, credentials will not be refreshed");
+            return;
+        }
+
+        LOG.info("Kerberos credentials will be refreshed in " + delay / 1000
+                + " sec");
+        schedule(delay);
+    }
+
+    /**
+     * schedules a refresh after the given delay, replacing any scheduled one
+     */
+    private synchronized void schedule(final long delay) {
+
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        try {
+            pending = executor.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            LOG.debug("credential refresher shut down, refresh not scheduled");
+        }
+    }
+
+    private static void logout(final LoginContext lc) {
+        try {
+            lc.logout();
+        } catch (LoginException e) {
+            LOG.warn("logout of previous Kerberos credentials failed : " + e);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package volumes;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Java Flight Recorder events of reconcile phases and volume actions. The
+ * events are defined at runtime through jdk.jfr.EventFactory (JDK 11 and
+ * later), accessed reflectively so that the application still runs on older
+ * JVMs, where all events are no-ops. Events are only created and committed
+ * while a recording is running, and carry no stack traces.
+ * <p>
+ * Usage: FlightRecorderEvents.begin(Type.X).set("field", value).commit()
+ * <p>
+ * This class is thread-safe, a single Event is not.
+ */
+final class FlightRecorderEvents {
+
+    private static final Log LOG = LogFactory.getLog(FlightRecorderEvents.class);
+
+    /**
+     * category shown in JDK Mission Control
+     */
+    private static final String CATEGORY = "Volume Manager";
+
+    /**
+     * field of an event type
+     */
+    private static final class Field {
+
+        private final String name;
+        private final Class<?> type;
+        private final String label;
+
+        private Field(final String name, final Class<?> type,
+                final String label) {
+            this.name = name;
+            this.type = type;
+            this.label = label;
+        }
+    }
+
+    /**
+     * event types, the duration of each event is the time between begin()
+     * and commit()
+     */
+    enum Type {
+
+        RECONCILE("volumes.Reconcile", "Reconcile",
+                "Reconcile of cluster volumes, from volume list retrieval to volume action execution",
+                new Field("success", boolean.class, "Success"),
+                new Field("creates", int.class, "Volumes to Create"),
+                new Field("purges", int.class, "Volumes to Purge"),
+                new Field("aceModifications", int.class, "Volumes to Modify ACEs")),
+
+        VOLUME_LIST("volumes.VolumeList", "Volume List Fetch",
+                "Volume list REST call, parsing included",
+                new Field("restNode", String.class, "REST Node"),
+                new Field("offset", int.class, "Offset"),
+                new Field("limit", int.class, "Limit"),
+                new Field("items", int.class, "Items"),
+                new Field("hedged", boolean.class, "Hedging Enabled"),
+                new Field("success", boolean.class, "Success")),
+
+        VOLUME_LIST_PARSE("volumes.VolumeListParse", "Volume List Parse",
+                "Parsing of a volume list response",
+                new Field("items", int.class, "Items")),
+
+        PLAN("volumes.Plan", "Plan",
+                "Target map update (phase 'targets') or delta list generation for a page of cluster volumes (phase 'delta')",
+                new Field("phase", String.class, "Phase"),
+                new Field("volumeGroups", int.class, "Volume Groups"),
+                new Field("volumes", int.class, "Volumes"),
+                new Field("creates", int.class, "Volumes to Create"),
+                new Field("purges", int.class, "Volumes to Purge"),
+                new Field("aceModifications", int.class, "Volumes to Modify ACEs")),
+
+        VOLUME_ACTION("volumes.VolumeAction", "Volume Action",
+                "Attempt of a volume creation, purge or ACE modification",
+                new Field("action", String.class, "Action"),
+                new Field("volume", String.class, "Volume"),
+                new Field("volumeGroup", String.class, "Volume Group"),
+                new Field("restNode", String.class, "REST Node"),
+                new Field("attempt", int.class, "Attempt"),
+                new Field("outcome", String.class, "Outcome"));
+
+        private final String name;
+        private final String label;
+        private final String description;
+        private final Field[] fields;
+
+        private Type(final String name, final String label,
+                final String description, final Field... fields) {
+            this.name = name;
+            this.label = label;
+            this.description = description;
+            this.fields = fields;
+        }
+
+        /**
+         * retrieve index of the given field, -1 if there is none
+         */
+        private int index(final String field) {
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].name.equals(field)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * event being recorded, or a no-op
+     */
+    static final class Event {
+
+        private final Type type;
+        private final Object event;
+
+        private Event(final Type type, final Object event) {
+            this.type = type;
+            this.event = event;
+        }
+
+        /**
+         * sets a field of the event, unknown fields are ignored
+         */
+        Event set(final String field, final Object value) {
+            if (event != null) {
+                final int index = type.index(field);
+                if (index >= 0) {
+                    invoke(set, event, Integer.valueOf(index), value);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * ends and records the event
+         */
+        void commit() {
+            if (event != null) {
+                invoke(commit, event);
+            }
+        }
+    }
+
+    private static final Event NOOP = new Event(null, null);
+
+    /**
+     * event factories by type, empty if JFR is not available
+     */
+    private static final Map<Type, Object> factories;
+
+    private static Method newEvent;
+    private static Method isEnabled;
+    private static Method begin;
+    private static Method set;
+    private static Method commit;
+
+    /**
+     * set after the first failure of a reflective call, all events are
+     * no-ops then
+     */
+    private static volatile boolean broken = false;
+
+    static {
+        final Map<Type, Object> created = new EnumMap<Type, Object>(Type.class);
+        try {
+            created.putAll(createFactories());
+            LOG.info("JFR events available");
+        } catch (ClassNotFoundException e) {
+            LOG.info("JFR event API not available in this JVM, JFR events disabled");
+        } catch (Exception e) {
+            LOG.warn("unable to define JFR events, JFR events disabled : " + e);
+        } catch (LinkageError e) {
+            LOG.warn("unable to define JFR events, JFR events disabled : " + e);
+        }
+        factories = Collections.unmodifiableMap(created);
+    }
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * begins an event of the given type; the event is a no-op unless JFR is
+     * available and a recording of the event type is running
+     */
+    static Event begin(final Type type) {
+
+        final Object factory = factories.get(type);
+        if (factory == null || broken) {
+            return NOOP;
+        }
+
+        final Object event = invoke(newEvent, factory);
+        if (event == null || !Boolean.TRUE.equals(invoke(isEnabled, event))) {
+            return NOOP;
+        }
+
+        invoke(begin, event);
+        return new Event(type, event);
+    }
+
+    /**
+     * check if JFR events are available in this JVM
+     */
+    static boolean isAvailable() {
+        return !factories.isEmpty() && !broken;
+    }
+
+    /**
+     * defines event types through jdk.jfr.EventFactory
+     */
+    private static Map<Type, Object> createFactories() throws Exception {
+
+        final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+        final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        final Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+        final Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+
+        final Constructor<?> annotation =
+                annotationClass.getConstructor(Class.class, Object.class);
+        final Constructor<?> descriptor =
+                descriptorClass.getConstructor(Class.class, String.class, List.class);
+        final Method create = factoryClass.getMethod("create", List.class, List.class);
+
+        final Class<?> nameAnnotation = Class.forName("jdk.jfr.Name");
+        final Class<?> labelAnnotation = Class.forName("jdk.jfr.Label");
+        final Class<?> descriptionAnnotation = Class.forName("jdk.jfr.Description");
+        final Class<?> categoryAnnotation = Class.forName("jdk.jfr.Category");
+        final Class<?> stackTraceAnnotation = Class.forName("jdk.jfr.StackTrace");
+
+        final Map<Type, Object> result = new EnumMap<Type, Object>(Type.class);
+        for (Type type : Type.values()) {
+
+            final List<Object> annotations = new ArrayList<Object>();
+            annotations.add(annotation.newInstance(nameAnnotation, type.name));
+            annotations.add(annotation.newInstance(labelAnnotation, type.label));
+            annotations.add(annotation.newInstance(descriptionAnnotation,
+                    type.description));
+            annotations.add(annotation.newInstance(categoryAnnotation,
+                    new String[] { CATEGORY }));
+            annotations.add(annotation.newInstance(stackTraceAnnotation,
+                    Boolean.FALSE));
+
+            final List<Object> fields = new ArrayList<Object>();
+            for (Field field : type.fields) {
+                fields.add(descriptor.newInstance(field.type, field.name,
+                        Collections.singletonList(annotation.newInstance(
+                                labelAnnotation, field.label))));
+            }
+
+            result.put(type, create.invoke(null, annotations, fields));
+        }
+
+        newEvent = factoryClass.getMethod("newEvent");
+        isEnabled = eventClass.getMethod("isEnabled");
+        begin = eventClass.getMethod("begin");
+        set = eventClass.getMethod("set", int.class, Object.class);
+        commit = eventClass.getMethod("commit");
+
+        return result;
+    }
+
+    /**
+     * invokes a JFR method, disables all events on failure
+     */
+    private static Object invoke(final Method method, final Object target,
+            final Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (Exception e) {
+            if (!broken) {
+                broken = true;
+                LOG.warn("JFR event call " + method.getName()
+                        + " failed, JFR events disabled : " + e);
+            }
+            return null;
+        }
+    }
+}
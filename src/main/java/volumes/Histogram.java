@@ -0,0 +1,149 @@
+package volumes;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cumulative histogram of non-negative long values in log-linear buckets:
+ * values below 32 are counted exactly, larger values in 32 buckets per power
+ * of two, i.e. with a relative error of at most 1/32. Memory use is fixed
+ * regardless of the number or range of values recorded.
+ * <p>
+ * This class is thread-safe and lock-free.
+ */
+final class Histogram {
+
+    /**
+     * number of bits resolved below the highest bit of a value
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * one linear range for values below SUB_BUCKETS, then one range per
+     * power of two up to Long.MAX_VALUE
+     */
+    private static final int BUCKETS =
+            SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * records a value, negative values are recorded as 0
+     */
+    void record(final long value) {
+
+        final long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+
+        long m = max.get();
+        while (v > m && !max.compareAndSet(m, v)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * retrieve number of recorded values
+     */
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * retrieve sum of recorded values
+     */
+    long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * retrieve largest recorded value, 0 if none has been recorded
+     */
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * retrieve the given percentile (0-100) of recorded values as the upper
+     * bound of its bucket, limited to the largest value recorded; 0 if no
+     * value has been recorded
+     */
+    long percentile(final double p) {
+
+        final long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+
+        // values recorded concurrently may not be visible in all buckets yet
+        return max.get();
+    }
+
+    /**
+     * retrieve cumulative number of recorded values up to each of the given
+     * ascending bounds, counted at bucket resolution, i.e. including values
+     * of the bucket of the bound above it
+     */
+    long[] cumulativeCounts(final long[] bounds) {
+
+        final long[] cumulative = new long[bounds.length];
+        long seen = 0;
+        int i = 0;
+        for (int j = 0; j < bounds.length; j++) {
+            final int last = index(Math.max(0, bounds[j]));
+            for (; i <= last; i++) {
+                seen += counts.get(i);
+            }
+            cumulative[j] = seen;
+        }
+
+        return cumulative;
+    }
+
+    /**
+     * retrieve bucket index of a non-negative value
+     */
+    static int index(final long v) {
+
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+
+        final int exp = 63 - Long.numberOfLeadingZeros(v);
+        final int sub = (int) (v >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exp - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * retrieve largest value counted in the given bucket
+     */
+    static long upperBound(final int index) {
+
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int exp = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        final long sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        final long width = 1L << (exp - SUB_BUCKET_BITS);
+        return (1L << exp) + sub * width + width - 1;
+    }
+}
@@ -0,0 +1,65 @@
+package volumes;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latest call latencies in a fixed-size window and computes
+ * percentiles over them.
+ * <p>
+ * This class is thread-safe.
+ */
+final class LatencyTracker {
+
+    /**
+     * latency samples in milliseconds, used as ring buffer
+     */
+    private final long[] samples;
+
+    /**
+     * minimum number of samples before percentiles are reported
+     */
+    private final int minSamples;
+
+    /**
+     * total number of recorded samples
+     */
+    private long count;
+
+    /**
+     * Constructor
+     *
+     * @param window
+     *            number of latest samples kept
+     * @param minSamples
+     *            minimum number of samples before percentiles are reported
+     */
+    LatencyTracker(final int window, final int minSamples) {
+        this.samples = new long[window];
+        this.minSamples = Math.min(window, Math.max(1, minSamples));
+    }
+
+    /**
+     * records latency of a call in milliseconds
+     */
+    synchronized void record(final long millis) {
+        samples[(int) (count++ % samples.length)] = millis;
+    }
+
+    /**
+     * retrieve the given percentile (0-100) of recorded latencies in
+     * milliseconds, -1 if not enough samples have been recorded yet
+     */
+    synchronized long percentile(final double p) {
+
+        if (count < minSamples) {
+            return -1;
+        }
+
+        final int n = (int) Math.min(count, samples.length);
+        final long[] sorted = Arrays.copyOf(samples, n);
+        Arrays.sort(sorted);
+
+        final int index = (int) Math.ceil(p / 100 * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, index))];
+    }
+}
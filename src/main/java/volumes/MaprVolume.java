@@ -4,9 +4,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.util.Date;
-import java.text.SimpleDateFormat;
-import java.text.DateFormat;
-import java.text.ParseException;
 
 import java.io.IOException;
 import org.apache.hadoop.fs.FileSystem;
@@ -341,6 +338,13 @@ class MaprVolume {
         this.vgc = vgc;
     }
 
+    /**
+     * retrieve configuration of the VG the volume belongs to, null if unknown
+     */
+    public VolumeGroupConfiguration getVolumeGroupConfiguration() {
+        return vgc;
+    }
+
 
     public void setPath(String path) {
         this.path = path;
@@ -354,21 +358,16 @@ class MaprVolume {
 
         // if appender is empty string, simply return path
         if (appender.isEmpty()) {
-            return new SimpleDateFormat(vgc.getPathFormat()).format(new Date());
+            return vgc.getPathFormatter().format(new Date());
         }
 
         // in all other cases we expect appender to be formatted date
-        final DateFormat df = new SimpleDateFormat("yyyyMMdd");
-
-        Date date = null;
-        try {
-            date = (Date)df.parse(appender);
-        } catch (ParseException pe) {
-            LOG.error("date '" + appender + "' parsing error: " + pe.getMessage());
+        final int date = VolumeDates.parse(appender);
+        if (date < 0) {
+            LOG.error("date '" + appender + "' parsing error");
             return null;
         }
 
-        final SimpleDateFormat sdf = new SimpleDateFormat(vgc.getPathFormat());
-        return sdf.format(date.getTime());
+        return vgc.getPathFormatter().format(date);
     }
 }
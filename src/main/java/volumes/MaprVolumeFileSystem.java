@@ -0,0 +1,124 @@
+package volumes;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+
+import com.mapr.fs.MapRFileAce;
+import com.mapr.fs.MapRFileSystem;
+
+/**
+ * Volume file system operations on MapR-FS, or on any Hadoop file system,
+ * in which case public ACEs are not set.
+ */
+final class MaprVolumeFileSystem implements VolumeFileSystem {
+
+    private static final Log LOG = LogFactory.getLog(MaprVolumeFileSystem.class);
+
+    /**
+     * MapR-FS designator
+     */
+    private static final String MAPRFS_URI = "maprfs:///";
+
+    /**
+     * public ACE string
+     */
+    private static final String PUBLIC_ACE = "p";
+
+    private final FileSystem fs;
+
+    /**
+     * ACEs granting public access on all access types
+     */
+    private final ArrayList<MapRFileAce> publicAces;
+
+    MaprVolumeFileSystem(final FileSystem fs) throws IOException {
+        this.fs = fs;
+        this.publicAces = buildPublicAces();
+    }
+
+    /**
+     * connects to MapR-FS, returns null on failure
+     */
+    static MaprVolumeFileSystem connect() {
+
+        final Configuration conf = new Configuration();
+        conf.set("fs.defaultFS", MAPRFS_URI);
+        conf.set("fs.maprfs.impl", "com.mapr.fs.MapRFileSystem");
+
+        try {
+            LOG.info("Initializing MapR Native FS ...");
+            final FileSystem filesys = FileSystem.get(URI.create(MAPRFS_URI), conf);
+            LOG.info("MapR Native FS initialization successful");
+            return new MaprVolumeFileSystem(filesys);
+        } catch (IOException ioe) {
+            LOG.error("Failure when initializing MapR FS : " + ioe);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean exists(final String path) throws IOException {
+        return fs.exists(new Path(path));
+    }
+
+    @Override
+    public boolean mkdirs(final String path, final String permission)
+            throws IOException {
+        return fs.mkdirs(new Path(path), new FsPermission(permission));
+    }
+
+    @Override
+    public void setOwner(final String path, final String owner,
+            final String group) throws IOException {
+        fs.setOwner(new Path(path), owner, group);
+    }
+
+    @Override
+    public void setPermission(final String path, final String permission)
+            throws IOException {
+        fs.setPermission(new Path(path), new FsPermission(permission));
+    }
+
+    @Override
+    public void setPublicAces(final String path) throws IOException {
+
+        if (!(fs instanceof MapRFileSystem)) {
+            LOG.info("no MapR FS, public ACEs on " + path + " skipped");
+            return;
+        }
+
+        ((MapRFileSystem) fs).setAces(new Path(path), publicAces);
+    }
+
+    /**
+     * initialize ACE array
+     */
+    private static ArrayList<MapRFileAce> buildPublicAces() throws IOException {
+
+        final MapRFileAce.AccessType[] types = {
+                MapRFileAce.AccessType.READFILE,
+                MapRFileAce.AccessType.WRITEFILE,
+                MapRFileAce.AccessType.EXECUTEFILE,
+                MapRFileAce.AccessType.READDIR,
+                MapRFileAce.AccessType.ADDCHILD,
+                MapRFileAce.AccessType.DELETECHILD,
+                MapRFileAce.AccessType.LOOKUPDIR };
+
+        final ArrayList<MapRFileAce> aces = new ArrayList<MapRFileAce>(types.length);
+        for (MapRFileAce.AccessType type : types) {
+            final MapRFileAce ace = new MapRFileAce(type);
+            ace.setBooleanExpression(PUBLIC_ACE);
+            aces.add(ace);
+        }
+
+        return aces;
+    }
+}
@@ -4,20 +4,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.core.JsonToken;
 
 /**
  * MaprVolumeParser - converts JSON input stream into list of MaprVolume
  * objects.
+ * <p>
+ * The default mode walks the REST response token by token and keeps only
+ * volume name and mount directory of each volume, all other attributes are
+ * skipped without being materialized.
  */
 class MaprVolumeParser {
 
@@ -44,12 +47,28 @@ class MaprVolumeParser {
     /**
      * The key to retrieve volume name
      */
-    private static final String VOLUME_NAME_KEY = "volumename";
+    static final String VOLUME_NAME_KEY = "volumename";
 
     /**
      * The key to retrieve mount directory
      */
-    private static final String VOLUME_MOUNTDIR_KEY = "mountdir";
+    static final String VOLUME_MOUNTDIR_KEY = "mountdir";
+
+    /**
+     * The key to retrieve whole volume ACEs
+     */
+    static final String VOLUME_ACES_KEY = "volumeAces";
+
+    /**
+     * The keys to retrieve read and write ACE from whole volume ACEs
+     */
+    private static final String VOLUME_READ_ACE_KEY = "readAce";
+    private static final String VOLUME_WRITE_ACE_KEY = "writeAce";
+
+    /**
+     * JSON factory shared by all streaming parser instances (thread-safe)
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
     /**
      * converts JSON input stream into list of MaprVolume objects
@@ -58,76 +77,166 @@ class MaprVolumeParser {
 
         final List<MaprVolume> volumes = new ArrayList<MaprVolume>();
 
+        if (parse(is, volumes) < 0) {
+            return Collections.emptyList();
+        }
+
+        return Collections.unmodifiableList(volumes);
+    }
+
+    /**
+     * streams JSON input and appends parsed volumes to the given list.
+     * returns the number of items in the data array (including items which
+     * could not be converted) if REST call status is OK and the data array is
+     * present, -1 otherwise; in the latter case the given list is left
+     * unchanged
+     */
+    static int parse(final InputStream is, final List<MaprVolume> volumes)
+            throws IOException {
+
+        final int initialSize = volumes.size();
+        String status = null;
+        boolean data = false;
+        int items = 0;
+
+        final JsonParser jp = JSON_FACTORY.createParser(is);
         try {
-            // Parse JSON message
-            final ObjectMapper mapper = new ObjectMapper();
-            final JsonNode rootNode = mapper.readTree(is);
-
-            // Check if the call returned with the right response code
-            final JsonNode statusNode = rootNode.get(STATUS_KEY);
-            if (statusNode == null
-                    || statusNode.getNodeType() != JsonNodeType.STRING
-                    || !OK_STATUS_VALUE.equals(statusNode.asText())) {
-                if (LOG.isWarnEnabled()) {
-                    LOG.warn("REST call returned with unexpected return code: "
-                            + rootNode);
-                }
-                return Collections.emptyList();
+            if (jp.nextToken() != JsonToken.START_OBJECT) {
+                LOG.warn("REST call returned with unexpected response, "
+                        + "JSON object expected");
+                return -1;
             }
 
-            // Iterate the data
-            final JsonNode dataNode = rootNode.get(DATA_KEY);
-            if (dataNode == null
-                    || dataNode.getNodeType() != JsonNodeType.ARRAY) {
-                if (LOG.isWarnEnabled()) {
-                    LOG.warn("REST call returned with unexpected data component: "
-                            + rootNode);
+            // status and data may come in any order, all other fields skipped
+            while (jp.nextToken() == JsonToken.FIELD_NAME) {
+
+                final String field = jp.getCurrentName();
+                final JsonToken token = jp.nextToken();
+
+                if (STATUS_KEY.equals(field)
+                        && token == JsonToken.VALUE_STRING) {
+                    status = jp.getText();
+                } else if (DATA_KEY.equals(field)
+                        && token == JsonToken.START_ARRAY) {
+                    data = true;
+                    items += parseData(jp, volumes);
+                } else {
+                    jp.skipChildren();
                 }
-                return Collections.emptyList();
             }
 
-            for (final Iterator<JsonNode> it = dataNode.iterator(); it
-                    .hasNext();) {
+        } catch (JsonProcessingException e) {
+            throw new IOException(e);
+        } finally {
+            jp.close();
+        }
 
-                final MaprVolume maprVolume = parseVolume(it.next());
-                if (maprVolume != null) {
-                    volumes.add(maprVolume);
-                }
+        if (!OK_STATUS_VALUE.equals(status)) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("REST call returned with unexpected return code: "
+                        + status);
             }
+            volumes.subList(initialSize, volumes.size()).clear();
+            return -1;
+        }
 
-        } catch (JsonProcessingException e) {
-            throw new IOException(e);
+        if (!data) {
+            LOG.warn("REST call returned without " + DATA_KEY + " array");
+            return -1;
         }
 
-        return Collections.unmodifiableList(volumes);
+        return items;
     }
 
     /**
-     * convert JSON data into MapR volume data item
+     * iterates through the data array, parser is positioned on its start.
+     * returns the number of items found in the array
      */
-    private static MaprVolume parseVolume(final JsonNode volumeNode) {
+    private static int parseData(final JsonParser jp,
+            final List<MaprVolume> volumes) throws IOException {
 
-        final JsonNode volumeNameNode = volumeNode.get(VOLUME_NAME_KEY);
-        if (volumeNameNode == null
-                || volumeNameNode.getNodeType() != JsonNodeType.STRING) {
-            if (LOG.isWarnEnabled()) {
-                LOG.warn("Alarm has unexpected alarm state: " + volumeNode);
+        int items = 0;
+        JsonToken token;
+        while ((token = jp.nextToken()) != JsonToken.END_ARRAY) {
+
+            items++;
+
+            if (token != JsonToken.START_OBJECT) {
+                LOG.warn("REST call returned with unexpected data item: "
+                        + token);
+                jp.skipChildren();
+                continue;
+            }
+
+            final MaprVolume maprVolume = parseVolume(jp);
+            if (maprVolume != null) {
+                volumes.add(maprVolume);
+            }
+        }
+
+        return items;
+    }
+
+    /**
+     * converts one JSON volume object into MapR volume data item, parser is
+     * positioned on the start of the object
+     */
+    private static MaprVolume parseVolume(final JsonParser jp)
+            throws IOException {
+
+        String name = null;
+        String mountDir = null;
+        String readAce = null;
+        String writeAce = null;
+
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+
+            final String field = jp.getCurrentName();
+            final JsonToken token = jp.nextToken();
+
+            if (VOLUME_NAME_KEY.equals(field)
+                    && token == JsonToken.VALUE_STRING) {
+                name = jp.getText();
+            } else if (VOLUME_MOUNTDIR_KEY.equals(field)
+                    && token == JsonToken.VALUE_STRING) {
+                mountDir = jp.getText();
+            } else if (VOLUME_ACES_KEY.equals(field)
+                    && token == JsonToken.START_OBJECT) {
+                // whole volume ACEs, only listed if requested
+                while (jp.nextToken() == JsonToken.FIELD_NAME) {
+                    final String aceField = jp.getCurrentName();
+                    final JsonToken aceToken = jp.nextToken();
+                    if (VOLUME_READ_ACE_KEY.equals(aceField)
+                            && aceToken == JsonToken.VALUE_STRING) {
+                        readAce = jp.getText();
+                    } else if (VOLUME_WRITE_ACE_KEY.equals(aceField)
+                            && aceToken == JsonToken.VALUE_STRING) {
+                        writeAce = jp.getText();
+                    } else {
+                        jp.skipChildren();
+                    }
+                }
+            } else {
+                jp.skipChildren();
             }
-            return null;
         }
 
-        final JsonNode mountDirNode = volumeNode.get(VOLUME_MOUNTDIR_KEY);
-        if (mountDirNode == null
-                || mountDirNode.getNodeType() != JsonNodeType.STRING) {
+        if (name == null || mountDir == null) {
             if (LOG.isWarnEnabled()) {
-                LOG.warn("Alarm has unexpected alarm state: " + volumeNode);
+                LOG.warn("Volume item without " + VOLUME_NAME_KEY + " or "
+                        + VOLUME_MOUNTDIR_KEY + " skipped: " + name);
             }
             return null;
         }
 
-        MaprVolume volume = new MaprVolume(volumeNameNode.asText());
+        final MaprVolume volume = new MaprVolume(name);
+        volume.setMountDir(mountDir);
 
-        volume.setMountDir(mountDirNode.asText());
+        // ACEs are kept only if both are present
+        if (readAce != null && writeAce != null) {
+            volume.setReadAce(readAce);
+            volume.setWriteAce(writeAce);
+        }
 
         return volume;
     }
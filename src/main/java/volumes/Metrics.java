@@ -0,0 +1,206 @@
+package volumes;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of named timers, counters and gauges, exposed via
+ * JMX (MetricsMBean) and the local scrape endpoint (MetricsServer). Metrics
+ * are created on first use and live as long as the process. Names are
+ * lowercase and dot-separated, e.g. "rest.volume.list".
+ * <p>
+ * This class is thread-safe.
+ */
+final class Metrics {
+
+    /**
+     * duration of a reconcile
+     */
+    static final String RECONCILE = "reconcile";
+
+    /**
+     * duration of a volume list call, parsing included
+     */
+    static final String VOLUME_LIST = "volume.list";
+
+    /**
+     * duration of volume list parsing
+     */
+    static final String VOLUME_LIST_PARSE = "volume.list.parse";
+
+    /**
+     * duration of target map preparation
+     */
+    static final String PREPARE = "prepare";
+
+    /**
+     * duration of delta list generation for a reconcile, all pages
+     */
+    static final String DELTA_LISTS = "delta.lists";
+
+    /**
+     * duration of volume action execution
+     */
+    static final String EXECUTE = "execute";
+
+    /**
+     * prefix of REST call timers, followed by the REST path, e.g.
+     * "rest.volume.create"
+     */
+    static final String REST = "rest";
+
+    /**
+     * prefix of FS operation timers, followed by the operation, e.g.
+     * "fs.mkdirs"
+     */
+    static final String FS = "fs";
+
+    static final String REST_FAILURES = "rest.failures";
+    static final String FS_FAILURES = "fs.failures";
+    static final String RECONCILE_FAILURES = "reconcile.failures";
+    static final String VOLUMES_CREATED = "volumes.created";
+    static final String VOLUMES_PURGED = "volumes.purged";
+    static final String VOLUMES_ACE_MODIFIED = "volumes.acemodified";
+    static final String VOLUMES_FAILED = "volumes.failed";
+
+    /**
+     * number of volume actions of the running phase not finished yet
+     */
+    static final String ACTIONS_PENDING = "actions.pending";
+
+    /**
+     * time of the last successful reconcile, seconds since the epoch
+     */
+    static final String LAST_RECONCILE = "reconcile.last.success";
+
+    /**
+     * Timer recording durations in microseconds.
+     */
+    static final class Timer {
+
+        private final Histogram histogram = new Histogram();
+
+        /**
+         * records duration of an operation started at the given
+         * System.nanoTime()
+         */
+        void stop(final long startNanos) {
+            histogram.record((System.nanoTime() - startNanos) / 1000);
+        }
+
+        /**
+         * records a duration in nanoseconds
+         */
+        void record(final long nanos) {
+            histogram.record(nanos / 1000);
+        }
+
+        /**
+         * retrieve histogram of recorded durations in microseconds
+         */
+        Histogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    /**
+     * Counter of events, or gauge of a current value.
+     */
+    static final class Counter {
+
+        private final AtomicLong value = new AtomicLong();
+
+        void inc() {
+            value.incrementAndGet();
+        }
+
+        void add(final long n) {
+            value.addAndGet(n);
+        }
+
+        void set(final long n) {
+            value.set(n);
+        }
+
+        long get() {
+            return value.get();
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Timer> timers =
+            new ConcurrentHashMap<String, Timer>();
+
+    private static final ConcurrentHashMap<String, Counter> counters =
+            new ConcurrentHashMap<String, Counter>();
+
+    private static final ConcurrentHashMap<String, Counter> gauges =
+            new ConcurrentHashMap<String, Counter>();
+
+    private Metrics() {
+    }
+
+    /**
+     * retrieve timer of the given name
+     */
+    static Timer timer(final String name) {
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            final Timer created = new Timer();
+            timer = timers.putIfAbsent(name, created);
+            if (timer == null) {
+                timer = created;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * retrieve counter of the given name, counters only increase
+     */
+    static Counter counter(final String name) {
+        return get(counters, name);
+    }
+
+    /**
+     * retrieve gauge of the given name, gauges are set to current values
+     */
+    static Counter gauge(final String name) {
+        return get(gauges, name);
+    }
+
+    /**
+     * retrieve all timers sorted by name
+     */
+    static SortedMap<String, Timer> getTimers() {
+        return new TreeMap<String, Timer>(timers);
+    }
+
+    /**
+     * retrieve all counters sorted by name
+     */
+    static SortedMap<String, Counter> getCounters() {
+        return new TreeMap<String, Counter>(counters);
+    }
+
+    /**
+     * retrieve all gauges sorted by name
+     */
+    static SortedMap<String, Counter> getGauges() {
+        return new TreeMap<String, Counter>(gauges);
+    }
+
+    private static Counter get(final ConcurrentHashMap<String, Counter> map,
+            final String name) {
+        Counter counter = map.get(name);
+        if (counter == null) {
+            final Counter created = new Counter();
+            counter = map.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,171 @@
+package volumes;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Read-only JMX view of Metrics: one attribute per counter and gauge, and
+ * count, mean, p50, p99 and max in milliseconds per timer, e.g.
+ * "rest.volume.list.p99". Attributes appear as metrics are first used.
+ */
+final class MetricsDynamicMBean implements DynamicMBean {
+
+    private static final Log LOG = LogFactory.getLog(MetricsDynamicMBean.class);
+
+    /**
+     * JMX object name the metrics are registered with
+     */
+    static final String OBJECT_NAME = "volumes:type=Metrics";
+
+    /**
+     * timer statistics exposed, attribute name suffixes
+     */
+    private static final String[] TIMER_STATS = {
+            "count", "mean", "p50", "p99", "max" };
+
+    /**
+     * registers the metrics with the platform MBean server, unless done
+     * already
+     */
+    static synchronized void register() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsDynamicMBean(), name);
+                LOG.info("metrics registered with JMX as " + OBJECT_NAME);
+            }
+        } catch (JMException e) {
+            LOG.error("unable to register metrics with JMX : " + e);
+        }
+    }
+
+    @Override
+    public Object getAttribute(final String attribute)
+            throws AttributeNotFoundException {
+
+        final Metrics.Counter counter = Metrics.getCounters().get(attribute);
+        if (counter != null) {
+            return Long.valueOf(counter.get());
+        }
+        final Metrics.Counter gauge = Metrics.getGauges().get(attribute);
+        if (gauge != null) {
+            return Long.valueOf(gauge.get());
+        }
+
+        final int dot = attribute.lastIndexOf('.');
+        if (dot > 0) {
+            final Metrics.Timer timer =
+                    Metrics.getTimers().get(attribute.substring(0, dot));
+            if (timer != null) {
+                final Object value =
+                        timerStat(timer.getHistogram(), attribute.substring(dot + 1));
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // left out as defined by DynamicMBean
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute)
+            throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName()
+                + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params,
+            final String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName),
+                "no operation " + actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+
+        final List<MBeanAttributeInfo> attributes =
+                new ArrayList<MBeanAttributeInfo>();
+
+        for (Map.Entry<String, Metrics.Timer> timer : Metrics.getTimers().entrySet()) {
+            for (String stat : TIMER_STATS) {
+                final boolean count = "count".equals(stat);
+                attributes.add(new MBeanAttributeInfo(timer.getKey() + "." + stat,
+                        count ? "long" : "double",
+                        count ? "number of " + timer.getKey() + " timings"
+                                : stat + " of " + timer.getKey() + " in ms",
+                        true, false, false));
+            }
+        }
+        for (String name : Metrics.getCounters().keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "long",
+                    "counter " + name, true, false, false));
+        }
+        for (String name : Metrics.getGauges().keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "long",
+                    "gauge " + name, true, false, false));
+        }
+
+        return new MBeanInfo(getClass().getName(), "Volume Manager metrics",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                null, new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+    }
+
+    /**
+     * retrieve timer statistic, null for unknown statistics
+     */
+    private static Object timerStat(final Histogram h, final String stat) {
+
+        if ("count".equals(stat)) {
+            return Long.valueOf(h.getCount());
+        } else if ("mean".equals(stat)) {
+            final long count = h.getCount();
+            return Double.valueOf(count == 0 ? 0 : h.getSum() / 1000.0 / count);
+        } else if ("p50".equals(stat)) {
+            return Double.valueOf(h.percentile(50) / 1000.0);
+        } else if ("p99".equals(stat)) {
+            return Double.valueOf(h.percentile(99) / 1000.0);
+        } else if ("max".equals(stat)) {
+            return Double.valueOf(h.getMax() / 1000.0);
+        }
+        return null;
+    }
+}
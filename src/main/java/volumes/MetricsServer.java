@@ -0,0 +1,191 @@
+package volumes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP endpoint serving Metrics at /metrics in the Prometheus text
+ * format, bound to the loopback interface only. Timers are exported as
+ * histograms in seconds, e.g. volume_manager_reconcile_seconds_bucket with
+ * cumulative counts from 1 ms to 30 min, so that quantiles over any time
+ * window can be derived from rates by the server; counters with a _total
+ * suffix.
+ */
+final class MetricsServer {
+
+    private static final Log LOG = LogFactory.getLog(MetricsServer.class);
+
+    /**
+     * prefix of all exported metric names
+     */
+    private static final String PREFIX = "volume_manager_";
+
+    /**
+     * upper bounds of exported histogram buckets in seconds
+     */
+    private static final String[] BUCKETS = { "0.001", "0.005", "0.01",
+            "0.05", "0.1", "0.5", "1", "5", "10", "30", "60", "300", "1800" };
+
+    /**
+     * upper bounds of exported histogram buckets in microseconds
+     */
+    private static final long[] BUCKET_MICROS = new long[BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_MICROS[i] = Math.round(Double.parseDouble(BUCKETS[i]) * 1000000);
+        }
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private MetricsServer(final HttpServer server,
+            final ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * starts serving metrics on the given loopback port, 0 for an ephemeral
+     * one; returns null if the server can't be started
+     */
+    static MetricsServer start(final int port) {
+
+        final HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            LOG.error("unable to start metrics endpoint on port " + port
+                    + " : " + e);
+            return null;
+        }
+
+        final ExecutorService executor =
+                Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "metrics-server");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        server.setExecutor(executor);
+
+        server.createContext("/metrics", new HttpHandler() {
+
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    final byte[] body = scrape().getBytes("UTF-8");
+                    exchange.getResponseHeaders().set("Content-Type",
+                            "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    final OutputStream os = exchange.getResponseBody();
+                    try {
+                        os.write(body);
+                    } finally {
+                        os.close();
+                    }
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+
+        server.start();
+        LOG.info("serving metrics on http://"
+                + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/metrics");
+        return new MetricsServer(server, executor);
+    }
+
+    /**
+     * retrieve port the endpoint listens on
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * retrieve all metrics in the Prometheus text format
+     */
+    static String scrape() {
+
+        final StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, Metrics.Timer> e : Metrics.getTimers().entrySet()) {
+            final String name = PREFIX + sanitize(e.getKey()) + "_seconds";
+            final Histogram h = e.getValue().getHistogram();
+
+            // buckets are read first, values recorded meanwhile only count
+            // towards +Inf
+            final long[] buckets = h.cumulativeCounts(BUCKET_MICROS);
+            final long count = Math.max(h.getCount(),
+                    buckets[buckets.length - 1]);
+
+            sb.append("# TYPE ").append(name).append(" histogram\n");
+            for (int i = 0; i < BUCKETS.length; i++) {
+                sb.append(name).append("_bucket{le=\"").append(BUCKETS[i])
+                        .append("\"} ").append(buckets[i]).append('\n');
+            }
+            sb.append(name).append("_bucket{le=\"+Inf\"} ").append(count)
+                    .append('\n');
+            sb.append(name).append("_sum ").append(seconds(h.getSum())).append('\n');
+            sb.append(name).append("_count ").append(count).append('\n');
+
+            sb.append("# TYPE ").append(name).append("_max gauge\n");
+            sb.append(name).append("_max ").append(seconds(h.getMax())).append('\n');
+        }
+
+        for (Map.Entry<String, Metrics.Counter> e : Metrics.getCounters().entrySet()) {
+            final String name = PREFIX + sanitize(e.getKey()) + "_total";
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            sb.append(name).append(' ').append(e.getValue().get()).append('\n');
+        }
+
+        for (Map.Entry<String, Metrics.Counter> e : Metrics.getGauges().entrySet()) {
+            final String name = PREFIX + sanitize(e.getKey());
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            sb.append(name).append(' ').append(e.getValue().get()).append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * converts microseconds to seconds
+     */
+    private static String seconds(final long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1000000.0);
+    }
+
+    /**
+     * converts dot-separated metric name into Prometheus metric name
+     */
+    private static String sanitize(final String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+}
@@ -0,0 +1,67 @@
+package volumes;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Formats volume mount paths from dates using the 'pathformat' pattern of a
+ * volume group. The pattern is compiled once; since SimpleDateFormat is not
+ * thread-safe, each thread formats with its own copy of the compiled
+ * instance.
+ * <p>
+ * This class is thread-safe.
+ */
+final class PathFormatter {
+
+    /**
+     * SimpleDateFormat pattern
+     */
+    private final String pattern;
+
+    /**
+     * per-thread copies of the compiled pattern
+     */
+    private final ThreadLocal<SimpleDateFormat> format;
+
+    /**
+     * Constructor
+     *
+     * @param pattern
+     *            SimpleDateFormat pattern
+     * @throws IllegalArgumentException
+     *             if the pattern is invalid
+     */
+    PathFormatter(final String pattern) {
+
+        this.pattern = pattern;
+        final SimpleDateFormat compiled = new SimpleDateFormat(pattern);
+        this.format = new ThreadLocal<SimpleDateFormat>() {
+
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return (SimpleDateFormat) compiled.clone();
+            }
+        };
+    }
+
+    /**
+     * retrieve pattern
+     */
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * formats the given date
+     */
+    String format(final Date date) {
+        return format.get().format(date);
+    }
+
+    /**
+     * formats the given date, in yyyyMMdd integer form
+     */
+    String format(final int date) {
+        return format(VolumeDates.toDate(date));
+    }
+}
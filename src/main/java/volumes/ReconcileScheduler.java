@@ -0,0 +1,197 @@
+package volumes;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Decides when the main loop reconciles the volumes on the cluster with the
+ * volume group configuration.
+ * <p>
+ * The set of target volumes of a volume group only changes at the start of a
+ * day, month or year (see the volume group 'interval'), so a reconcile is
+ * scheduled for the next such boundary of any configured volume group. In
+ * between, the main loop merely ticks to check configuration and Kerberos
+ * ticket, which doesn't involve any REST call. A reconcile is run earlier if
+ * triggered (configuration change, trigger file, previous failure), and at
+ * least every full interval as safety net for changes made on the cluster
+ * outside of volume manager.
+ * <p>
+ * This class is thread-safe.
+ */
+final class ReconcileScheduler {
+
+    /**
+     * The log object used for debugging and reporting.
+     */
+    private static final Log LOG = LogFactory.getLog(ReconcileScheduler.class);
+
+    /**
+     * name of the file in the configuration directory triggering a reconcile
+     */
+    static final String TRIGGER_FILE = "reconcile.trigger";
+
+    /**
+     * file triggering a reconcile when present, null if not used
+     */
+    private final File triggerFile;
+
+    /**
+     * lock guarding all state, also used to wake up a waiting main loop
+     */
+    private final Object lock = new Object();
+
+    /**
+     * time of next scheduled reconcile, 0 for immediately
+     */
+    private long nextReconcile = 0;
+
+    /**
+     * reason of pending triggered reconcile, null if not triggered
+     */
+    private String trigger = null;
+
+    /**
+     * Constructor
+     *
+     * @param confDir
+     *            configuration directory watched for the trigger file, may be
+     *            null
+     */
+    ReconcileScheduler(final File confDir) {
+        this.triggerFile = confDir == null ? null
+                : new File(confDir, TRIGGER_FILE);
+    }
+
+    /**
+     * requests a reconcile as soon as possible and wakes up a waiting main
+     * loop
+     */
+    void trigger(final String reason) {
+        synchronized (lock) {
+            if (trigger == null) {
+                LOG.info("reconcile triggered : " + reason);
+                trigger = reason;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * check if a reconcile is due at the given time; a present trigger file
+     * is consumed
+     */
+    boolean isDue(final long now) {
+
+        if (triggerFile != null && triggerFile.exists()) {
+            if (!triggerFile.delete()) {
+                LOG.warn("unable to delete " + triggerFile.getPath());
+            }
+            trigger("trigger file " + triggerFile.getPath());
+        }
+
+        synchronized (lock) {
+            return trigger != null || now >= nextReconcile;
+        }
+    }
+
+    /**
+     * schedules the next reconcile after one has been run
+     *
+     * @param success
+     *            false if the reconcile failed and is to be repeated at the
+     *            next tick
+     * @param vgs
+     *            configured volume groups
+     * @param now
+     *            current time
+     * @param fullInterval
+     *            maximum time between two reconciles, 0 for every tick
+     */
+    void reconciled(final boolean success,
+            final Collection<VolumeGroupConfiguration> vgs, final long now,
+            final long fullInterval) {
+
+        synchronized (lock) {
+            trigger = null;
+
+            if (!success) {
+                nextReconcile = now;
+                LOG.info("reconcile failed, repeating at next tick");
+                return;
+            }
+
+            if (fullInterval == 0) {
+                nextReconcile = now;
+                return;
+            }
+
+            nextReconcile = Math.min(nextBoundary(vgs, now),
+                    now + fullInterval);
+            LOG.info("next reconcile scheduled at " + new Date(nextReconcile));
+        }
+    }
+
+    /**
+     * waits until the next tick, the next scheduled reconcile or a trigger,
+     * whichever comes first
+     */
+    void await(final long tick) throws InterruptedException {
+
+        synchronized (lock) {
+            if (trigger != null) {
+                return;
+            }
+            final long untilReconcile = nextReconcile - System.currentTimeMillis();
+            final long millis = Math.min(tick, Math.max(untilReconcile, 1));
+            LOG.info("sleeping " + millis / 1000 + " sec ...");
+            lock.wait(millis);
+        }
+    }
+
+    /**
+     * computes the earliest start of a day, month or year after the given
+     * time at which the target volumes of any volume group change, in the
+     * default time zone used for volume names
+     */
+    static long nextBoundary(final Collection<VolumeGroupConfiguration> vgs,
+            final long now) {
+
+        long next = Long.MAX_VALUE;
+
+        for (VolumeGroupConfiguration vgc : vgs) {
+            final Integer interval =
+                    VolumeManagerConfiguration.getCalInterval(vgc.getInterval());
+            if (interval == null || interval.intValue() == Calendar.ERA) {
+                continue;
+            }
+
+            final Calendar cal = Calendar.getInstance();
+            cal.setTimeInMillis(now);
+            cal.set(Calendar.HOUR_OF_DAY, 0);
+            cal.set(Calendar.MINUTE, 0);
+            cal.set(Calendar.SECOND, 0);
+            cal.set(Calendar.MILLISECOND, 0);
+
+            switch (interval.intValue()) {
+                case Calendar.MONTH:
+                    cal.set(Calendar.DAY_OF_MONTH, 1);
+                    break;
+                case Calendar.YEAR:
+                    cal.set(Calendar.DAY_OF_YEAR, 1);
+                    break;
+                default:
+                    break;
+            }
+            cal.add(interval.intValue(), 1);
+
+            next = Math.min(next, cal.getTimeInMillis());
+        }
+
+        return next;
+    }
+}
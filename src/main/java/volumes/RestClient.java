@@ -0,0 +1,480 @@
+package volumes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.CookieHandler;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Shared client for all MapR REST calls.
+ * <p>
+ * Connections are pooled by the JDK keep-alive cache, which requires every
+ * response body to be fully read and closed; this class takes care of it for
+ * successful and failed calls. The size of that cache is the JVM-wide
+ * http.maxConnections system property, which the JDK reads once on first
+ * use; it is set from the configuration only when the first client is
+ * created and thus can't be changed by a configuration reload. The
+ * authentication cookie issued by the MapR web server after the first SPNEGO
+ * handshake is kept and sent along with subsequent calls.
+ * <p>
+ * Calls are optionally passed through a {@link RestRateLimiter}, which is
+ * slowed down when the server responds with HTTP 5xx or times out. Latency
+ * and outcome of each call are reported to a {@link RestNodeSelector}.
+ * <p>
+ * A call can be hedged: if it hasn't completed within a given delay, the
+ * same request is sent to a second URL, the first successful response is
+ * used and the other call is cancelled by closing its connection.
+ * <p>
+ * This class is thread-safe.
+ */
+final class RestClient {
+
+    /**
+     * Handler converting REST response body into a result object.
+     */
+    interface ResponseHandler<T> {
+
+        /**
+         * converts response body, the stream is drained and closed by the
+         * caller afterwards
+         */
+        T handle(InputStream is) throws IOException;
+    }
+
+    /**
+     * State of a single call, allowing it to be cancelled from another
+     * thread.
+     */
+    private static final class Call {
+
+        private volatile HttpURLConnection conn;
+        private volatile boolean cancelled;
+
+        void cancel() {
+            cancelled = true;
+            final HttpURLConnection c = conn;
+            if (c != null) {
+                c.disconnect();
+            }
+        }
+    }
+
+    /**
+     * The log object used for debugging and reporting.
+     */
+    private static final Log LOG = LogFactory.getLog(RestClient.class);
+
+    /**
+     * host of the last call executed by the current thread, for JFR events
+     */
+    private static final ThreadLocal<String> lastHost = new ThreadLocal<String>();
+
+    /**
+     * buffer size used to drain response bodies
+     */
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+
+    /**
+     * daemon threads running hedged calls, created on first use and shared
+     * by all clients, as a client is replaced on each configuration reload;
+     * idle threads terminate after a minute
+     */
+    private static ExecutorService hedgePool;
+
+    /**
+     * connect timeout in milliseconds
+     */
+    private final int connectTimeout;
+
+    /**
+     * read timeout in milliseconds
+     */
+    private final int readTimeout;
+
+    /**
+     * rate limiter applied to all calls, null for unlimited
+     */
+    private final RestRateLimiter rateLimiter;
+
+    /**
+     * node selector receiving call outcomes, null if not tracked
+     */
+    private final RestNodeSelector nodeSelector;
+
+    /**
+     * Constructs a new REST client.
+     *
+     * @param connectTimeout
+     *            connect timeout in milliseconds, 0 for infinite
+     * @param readTimeout
+     *            read timeout in milliseconds, 0 for infinite
+     * @param maxConnections
+     *            maximum number of idle keep-alive connections per REST node,
+     *            JVM-wide and effective only on startup, ignored if the
+     *            http.maxConnections system property is already set
+     * @param rateLimiter
+     *            rate limiter applied to all calls, null for unlimited
+     * @param nodeSelector
+     *            node selector receiving call outcomes, null if not tracked
+     */
+    RestClient(final int connectTimeout, final int readTimeout,
+            final int maxConnections, final RestRateLimiter rateLimiter,
+            final RestNodeSelector nodeSelector) {
+
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.rateLimiter = rateLimiter;
+        this.nodeSelector = nodeSelector;
+
+        // keep-alive pool is sized from system properties, unless set by user
+        // or by a previous client; the JDK reads them only once
+        System.setProperty("http.keepAlive", "true");
+        final String max = System.getProperty("http.maxConnections");
+        if (max == null) {
+            System.setProperty("http.maxConnections",
+                    Integer.toString(maxConnections));
+        } else if (!max.equals(Integer.toString(maxConnections))) {
+            LOG.warn("REST connection pool size is " + max
+                    + ", a changed pool size takes effect on restart only");
+        }
+
+        // keep authentication cookie between calls
+        synchronized (CookieHandler.class) {
+            if (CookieHandler.getDefault() == null) {
+                CookieHandler.setDefault(new CookieManager(null,
+                        CookiePolicy.ACCEPT_ORIGINAL_SERVER));
+            }
+        }
+    }
+
+    /**
+     * executes REST call and converts the response body using the given
+     * handler; any HTTP error status is reported as IOException
+     */
+    <T> T get(final String surl, final ResponseHandler<T> handler)
+            throws IOException {
+        return execute(surl, handler, new Call());
+    }
+
+    /**
+     * executes REST call like {@link #get(String, ResponseHandler)}; if it
+     * hasn't completed within hedgeDelay milliseconds, the call is repeated
+     * against hedgeUrl and the first successful result is returned. The
+     * handler must not share state between both calls.
+     */
+    <T> T getHedged(final String surl, final String hedgeUrl,
+            final long hedgeDelay, final ResponseHandler<T> handler)
+            throws IOException {
+
+        final CompletionService<T> cs =
+                new ExecutorCompletionService<T>(getHedgePool());
+        final Subject subject = Subject.getSubject(AccessController.getContext());
+        final Call primary = new Call();
+        final Call hedge = new Call();
+
+        final Future<T> primaryFuture =
+                cs.submit(callable(surl, handler, primary, subject));
+        Future<T> hedgeFuture = null;
+        try {
+            Future<T> done = cs.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            if (done != null) {
+                return result(done);
+            }
+
+            LOG.info("no response within " + hedgeDelay
+                    + " ms, hedging call with URL " + hedgeUrl);
+            hedgeFuture = cs.submit(callable(hedgeUrl, handler, hedge, subject));
+
+            done = cs.take();
+            try {
+                return result(done);
+            } catch (IOException e) {
+                LOG.warn("hedged call failed, waiting for the other one : " + e);
+                return result(cs.take());
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted during hedged call");
+        } finally {
+            // cancel whichever call is still running
+            if (!primaryFuture.isDone()) {
+                primary.cancel();
+            }
+            if (hedgeFuture != null && !hedgeFuture.isDone()) {
+                hedge.cancel();
+            }
+        }
+    }
+
+    /**
+     * retrieve and clear host of the last call executed by the current
+     * thread, null if there is none
+     */
+    static String takeLastHost() {
+        final String host = lastHost.get();
+        lastHost.remove();
+        return host;
+    }
+
+    /**
+     * executes REST call, the connection is registered with the call state
+     * for cancellation; outcomes of cancelled calls are not recorded
+     */
+    private <T> T execute(final String surl, final ResponseHandler<T> handler,
+            final Call call) throws IOException {
+
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+        }
+
+        final HttpURLConnection conn = open(surl);
+        call.conn = conn;
+        if (call.cancelled) {
+            throw new InterruptedIOException("call cancelled : " + surl);
+        }
+        final String host = conn.getURL().getHost();
+        lastHost.set(host);
+        final Metrics.Timer timer = Metrics.timer(Metrics.REST
+                + conn.getURL().getPath().replaceFirst("^/rest", "")
+                        .replace('/', '.'));
+        final long startTime = System.nanoTime();
+        // node latency is taken up to the response status, as the time taken
+        // by the handler to read the body depends on its size
+        long latency = 0;
+        boolean responded = false;
+        boolean recorded = false;
+        InputStream is = null;
+        try {
+            final int code = conn.getResponseCode();
+            latency = (System.nanoTime() - startTime) / 1000000;
+            responded = true;
+            final boolean serverError =
+                    code >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+            if (serverError && rateLimiter != null) {
+                rateLimiter.onOverload();
+            }
+            if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                recordResponse(host, latency, serverError);
+                recorded = true;
+                throw new IOException("HTTP status " + code + " "
+                        + conn.getResponseMessage() + " for URL " + surl);
+            }
+            is = conn.getInputStream();
+            final T result = handler.handle(is);
+            drain(is);
+            recordResponse(host, latency, false);
+            timer.stop(startTime);
+            if (rateLimiter != null) {
+                rateLimiter.onSuccess();
+            }
+            return result;
+        } catch (IOException e) {
+            if (call.cancelled) {
+                throw new InterruptedIOException("call cancelled : " + surl);
+            }
+            if (e instanceof SocketTimeoutException && rateLimiter != null) {
+                rateLimiter.onOverload();
+            }
+            if (!recorded) {
+                recordFailure(host, responded, latency, e);
+            }
+            timer.stop(startTime);
+            Metrics.counter(Metrics.REST_FAILURES).inc();
+            // release the connection for reuse, or drop it if it's broken
+            drain(conn.getErrorStream());
+            throw e;
+        } finally {
+            closeSilently(is);
+        }
+    }
+
+    /**
+     * executes REST call, response body is discarded
+     */
+    void get(final String surl) throws IOException {
+
+        get(surl, new ResponseHandler<Void>() {
+
+            @Override
+            public Void handle(final InputStream is) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * wraps call into a task running with the caller's credentials
+     */
+    private <T> Callable<T> callable(final String surl,
+            final ResponseHandler<T> handler, final Call call,
+            final Subject subject) {
+
+        return new Callable<T>() {
+
+            @Override
+            public T call() throws Exception {
+                try {
+                    return Subject.doAs(subject,
+                            new PrivilegedExceptionAction<T>() {
+
+                        @Override
+                        public T run() throws IOException {
+                            return execute(surl, handler, call);
+                        }
+                    });
+                } catch (PrivilegedActionException e) {
+                    throw e.getException();
+                }
+            }
+        };
+    }
+
+    /**
+     * retrieve result of a completed call, unwrapping its failure
+     */
+    private static <T> T result(final Future<T> future) throws IOException,
+            InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("hedged call failed", e.getCause());
+        }
+    }
+
+    /**
+     * retrieve thread pool running hedged calls
+     */
+    private static synchronized ExecutorService getHedgePool() {
+
+        if (hedgePool == null) {
+            final AtomicInteger threadCount = new AtomicInteger(0);
+            hedgePool = Executors.newCachedThreadPool(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "rest-hedge-"
+                            + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return hedgePool;
+    }
+
+    /**
+     * reports call answered with an HTTP status after the given latency in
+     * milliseconds to the node selector
+     */
+    private void recordResponse(final String host, final long latency,
+            final boolean serverError) {
+        if (nodeSelector != null) {
+            nodeSelector.recordResponse(host, latency, serverError);
+        }
+    }
+
+    /**
+     * reports failed call to the node selector; failures before any status
+     * was received count against the node's availability, later ones (e.g.
+     * broken response body) against its error rate only
+     */
+    private void recordFailure(final String host, final boolean responded,
+            final long latency, final IOException e) {
+        if (nodeSelector == null) {
+            return;
+        }
+        if (!responded) {
+            nodeSelector.recordFailure(host, e);
+        } else {
+            recordResponse(host, latency, true);
+        }
+    }
+
+    /**
+     * opens configured connection to the given URL
+     */
+    private HttpURLConnection open(final String surl) throws IOException {
+
+        final URL url;
+        try {
+            url = new URL(surl);
+        } catch (MalformedURLException e) {
+            throw new IOException("malformed URL : " + surl, e);
+        }
+
+        final URLConnection conn = url.openConnection();
+        if (!(conn instanceof HttpURLConnection)) {
+            throw new IOException("not an HTTP URL : " + surl);
+        }
+
+        conn.setConnectTimeout(connectTimeout);
+        conn.setReadTimeout(readTimeout);
+        conn.setUseCaches(false);
+
+        return (HttpURLConnection) conn;
+    }
+
+    /**
+     * reads remaining bytes of the stream so that the connection can go back
+     * to the keep-alive pool, and closes the stream
+     */
+    private static void drain(final InputStream is) {
+
+        if (is == null) {
+            return;
+        }
+
+        final byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+        try {
+            while (is.read(buffer) >= 0) {
+                // discard
+            }
+        } catch (IOException e) {
+            LOG.debug("unable to drain REST response : " + e);
+        } finally {
+            closeSilently(is);
+        }
+    }
+
+    /**
+     * closes the stream, ignoring errors
+     */
+    private static void closeSilently(final InputStream is) {
+
+        if (is != null) {
+            try {
+                is.close();
+            } catch (IOException e) {
+                LOG.debug("unable to close REST response : " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package volumes;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Selects the REST node each call is routed to.
+ * <p>
+ * Latency and error rate of every configured node are kept as exponentially
+ * weighted moving averages of the calls made by {@link RestClient}; each call
+ * goes to the node with the lowest latency weighted by its error rate. A node
+ * failing at transport level, or repeatedly answering HTTP 5xx, is taken out
+ * of rotation. A background probe periodically sends an unauthenticated
+ * request to such nodes and puts them back as soon as they respond with any
+ * HTTP status.
+ * <p>
+ * This class is thread-safe.
+ */
+final class RestNodeSelector {
+
+    /**
+     * The log object used for debugging and reporting.
+     */
+    private static final Log LOG = LogFactory.getLog(RestNodeSelector.class);
+
+    /**
+     * weight of the latest sample in the moving averages
+     */
+    private static final double EWMA_ALPHA = 0.2;
+
+    /**
+     * latency penalty factor applied per unit of error rate
+     */
+    private static final double ERROR_PENALTY = 10.0;
+
+    /**
+     * number of consecutive HTTP errors taking a node out of rotation
+     */
+    private static final int MAX_CONSECUTIVE_ERRORS = 3;
+
+    /**
+     * path requested by the health probe, any HTTP status counts as alive
+     */
+    private static final String PROBE_PATH = "/rest";
+
+    /**
+     * health state of a single REST node
+     */
+    private static final class Node {
+
+        private final String host;
+        private final String endPoint;
+
+        /**
+         * moving average latency in milliseconds, 0 until first call
+         */
+        private double latency;
+
+        /**
+         * moving average error rate between 0 and 1
+         */
+        private double errorRate;
+
+        private int consecutiveErrors;
+        private boolean down;
+
+        Node(final String host, final String endPoint) {
+            this.host = host;
+            this.endPoint = endPoint;
+        }
+
+        double score() {
+            return latency * (1 + ERROR_PENALTY * errorRate);
+        }
+    }
+
+    /**
+     * nodes in configuration order, which breaks ties
+     */
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    /**
+     * probe connect and read timeout in milliseconds
+     */
+    private final int probeTimeout;
+
+    /**
+     * background health probe, null if disabled
+     */
+    private final Thread probeThread;
+
+    /**
+     * node returned by the last selection, used for logging switches
+     */
+    private Node selected;
+
+    /**
+     * Constructor
+     *
+     * @param hosts
+     *            configured REST node host names
+     * @param scheme
+     *            URL scheme, 'http' or 'https'
+     * @param port
+     *            REST port
+     * @param probeInterval
+     *            health probe interval in milliseconds, 0 disables probing
+     * @param probeTimeout
+     *            probe connect and read timeout in milliseconds
+     */
+    RestNodeSelector(final List<String> hosts, final String scheme,
+            final String port, final long probeInterval,
+            final int probeTimeout) {
+
+        if (hosts == null || hosts.isEmpty()) {
+            throw new IllegalArgumentException("no REST nodes configured");
+        }
+
+        for (String host : hosts) {
+            nodes.add(new Node(host, scheme + "://" + host + ":" + port));
+        }
+        this.probeTimeout = probeTimeout;
+
+        if (probeInterval > 0) {
+            probeThread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    probeLoop(probeInterval);
+                }
+            }, "rest-node-probe");
+            probeThread.setDaemon(true);
+            probeThread.start();
+        } else {
+            probeThread = null;
+        }
+    }
+
+    /**
+     * retrieve endpoint of the healthiest node, in format 'scheme://host:port'
+     */
+    String select() {
+        return select(null);
+    }
+
+    /**
+     * retrieve endpoint of the healthiest node other than the given endpoint;
+     * the given endpoint is returned only if it is the sole node
+     */
+    synchronized String select(final String exclude) {
+
+        Node best = null;
+        for (Node node : nodes) {
+            if (node.endPoint.equals(exclude)) {
+                continue;
+            }
+            if (best == null || isBetter(node, best)) {
+                best = node;
+            }
+        }
+
+        if (best == null) {
+            return exclude;
+        }
+
+        if (exclude == null && best != selected) {
+            if (selected != null) {
+                LOG.info("switching REST node from " + selected.host + " to "
+                        + best.host + " (" + describe(best) + ")");
+            }
+            selected = best;
+        }
+        return best.endPoint;
+    }
+
+    /**
+     * records a call answered with an HTTP status
+     *
+     * @param host
+     *            host name of the called URL
+     * @param millis
+     *            call duration in milliseconds
+     * @param serverError
+     *            true if the status signals a server failure (5xx)
+     */
+    synchronized void recordResponse(final String host, final long millis,
+            final boolean serverError) {
+
+        final Node node = find(host);
+        if (node == null) {
+            return;
+        }
+
+        node.latency = node.latency == 0 ? millis
+                : node.latency + EWMA_ALPHA * (millis - node.latency);
+        updateErrorRate(node, serverError);
+
+        if (!serverError) {
+            node.consecutiveErrors = 0;
+        } else if (++node.consecutiveErrors >= MAX_CONSECUTIVE_ERRORS) {
+            markDown(node, node.consecutiveErrors + " consecutive server errors");
+        }
+    }
+
+    /**
+     * records a call failed at transport level, the node is taken out of
+     * rotation until the health probe reaches it again
+     */
+    synchronized void recordFailure(final String host, final IOException e) {
+
+        final Node node = find(host);
+        if (node == null) {
+            return;
+        }
+
+        updateErrorRate(node, true);
+        node.consecutiveErrors++;
+        markDown(node, e.toString());
+    }
+
+    /**
+     * stops the background health probe
+     */
+    void shutdown() {
+        if (probeThread != null) {
+            probeThread.interrupt();
+        }
+    }
+
+    /**
+     * probes all nodes out of rotation, returns number of recovered nodes
+     */
+    int probe() {
+
+        final List<Node> downNodes = new ArrayList<Node>();
+        synchronized (this) {
+            for (Node node : nodes) {
+                if (node.down) {
+                    downNodes.add(node);
+                }
+            }
+        }
+
+        int recovered = 0;
+        for (Node node : downNodes) {
+            if (isAlive(node)) {
+                synchronized (this) {
+                    // start over, so that the node is tried again soon
+                    node.down = false;
+                    node.latency = 0;
+                    node.errorRate = 0;
+                    node.consecutiveErrors = 0;
+                }
+                LOG.info("REST node " + node.host + " is back in rotation");
+                recovered++;
+            }
+        }
+        return recovered;
+    }
+
+    /**
+     * health probe loop, runs until interrupted
+     */
+    private void probeLoop(final long interval) {
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException ie) {
+                return;
+            }
+            probe();
+        }
+    }
+
+    /**
+     * sends unauthenticated request to the node, any HTTP response means the
+     * REST server is alive
+     */
+    private boolean isAlive(final Node node) {
+
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(node.endPoint + PROBE_PATH)
+                    .openConnection();
+            conn.setConnectTimeout(probeTimeout);
+            conn.setReadTimeout(probeTimeout);
+            conn.setUseCaches(false);
+            final int code = conn.getResponseCode();
+            LOG.debug("probe of REST node " + node.host + " returned " + code);
+            return code > 0;
+        } catch (IOException e) {
+            LOG.debug("probe of REST node " + node.host + " failed : " + e);
+            return false;
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * true if candidate is preferable to current best node
+     */
+    private static boolean isBetter(final Node candidate, final Node best) {
+        if (candidate.down != best.down) {
+            return !candidate.down;
+        }
+        return candidate.score() < best.score();
+    }
+
+    private void markDown(final Node node, final String reason) {
+        if (!node.down) {
+            node.down = true;
+            LOG.warn("REST node " + node.host + " taken out of rotation : "
+                    + reason);
+        }
+    }
+
+    private static void updateErrorRate(final Node node, final boolean error) {
+        node.errorRate += EWMA_ALPHA * ((error ? 1 : 0) - node.errorRate);
+    }
+
+    private Node find(final String host) {
+        for (Node node : nodes) {
+            if (node.host.equalsIgnoreCase(host)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static String describe(final Node node) {
+        return String.format("latency %.0f ms, error rate %.2f%s",
+                node.latency, node.errorRate, node.down ? ", down" : "");
+    }
+}
@@ -0,0 +1,155 @@
+package volumes;
+
+import java.io.InterruptedIOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Token-bucket rate limiter shared by all REST calls. Tokens are refilled at
+ * the current rate up to the burst size, a call without available token
+ * waits for its share of the rate.
+ * <p>
+ * The current rate adapts to the REST server: it is halved when the server
+ * appears overloaded (HTTP 5xx, timeouts) and increased additively towards
+ * the configured maximum rate with each successful call.
+ * <p>
+ * This class is thread-safe.
+ */
+final class RestRateLimiter {
+
+    /**
+     * The log object used for debugging and reporting.
+     */
+    private static final Log LOG = LogFactory.getLog(RestRateLimiter.class);
+
+    /**
+     * the current rate never drops below this fraction of the maximum rate
+     */
+    private static final double MIN_RATE_FRACTION = 0.05;
+
+    /**
+     * fraction of the maximum rate added with each successful call
+     */
+    private static final double INCREASE_FRACTION = 0.05;
+
+    /**
+     * maximum rate in calls per second
+     */
+    private final double maxRate;
+
+    /**
+     * minimum rate in calls per second
+     */
+    private final double minRate;
+
+    /**
+     * maximum number of tokens in the bucket
+     */
+    private final double burst;
+
+    /**
+     * current rate in calls per second
+     */
+    private double rate;
+
+    /**
+     * tokens available, negative if calls are waiting for tokens
+     */
+    private double tokens;
+
+    /**
+     * time of last refill in nanoseconds
+     */
+    private long lastRefill;
+
+    /**
+     * Constructor
+     *
+     * @param maxRate
+     *            maximum rate in calls per second, must be positive
+     * @param burst
+     *            maximum number of calls passing without delay
+     */
+    RestRateLimiter(final double maxRate, final int burst) {
+
+        if (maxRate <= 0) {
+            throw new IllegalArgumentException(
+                    "Value for argument maxRate must be positive");
+        }
+
+        this.maxRate = maxRate;
+        this.minRate = maxRate * MIN_RATE_FRACTION;
+        this.burst = Math.max(1, burst);
+        this.rate = maxRate;
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * waits until the call may be executed
+     */
+    void acquire() throws InterruptedIOException {
+
+        final long waitNanos;
+        synchronized (this) {
+            refill();
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+        }
+
+        if (waitNanos > 0) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("REST call delayed by " + waitNanos / 1000000
+                        + " ms, rate " + getRate() + " calls/s");
+            }
+            try {
+                Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting "
+                        + "for REST rate limiter");
+            }
+        }
+    }
+
+    /**
+     * reports successful call, increases the rate
+     */
+    synchronized void onSuccess() {
+        if (rate < maxRate) {
+            refill();
+            rate = Math.min(maxRate, rate + maxRate * INCREASE_FRACTION);
+        }
+    }
+
+    /**
+     * reports call failed due to server overload, decreases the rate
+     */
+    synchronized void onOverload() {
+        refill();
+        final double previous = rate;
+        rate = Math.max(minRate, rate / 2);
+        if (rate < previous) {
+            LOG.info("REST server overloaded, decreasing rate from "
+                    + String.format("%.2f", previous) + " to "
+                    + String.format("%.2f", rate) + " calls/s");
+        }
+    }
+
+    /**
+     * retrieve current rate in calls per second
+     */
+    synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * adds tokens accumulated since last refill at the current rate
+     */
+    private void refill() {
+        final long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * rate);
+        lastRefill = now;
+    }
+}
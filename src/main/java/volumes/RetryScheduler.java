@@ -0,0 +1,138 @@
+package volumes;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delay-queue based work queue for volume actions. Items are either ready
+ * immediately or parked for a retry with exponential backoff and jitter;
+ * workers take items as soon as they become ready, so a parked item never
+ * blocks processing of other items.
+ * <p>
+ * This class is thread-safe.
+ */
+final class RetryScheduler<T> {
+
+    /**
+     * base delay of the first retry in milliseconds
+     */
+    private final long baseDelay;
+
+    /**
+     * upper bound of retry delays in milliseconds
+     */
+    private final long maxDelay;
+
+    /**
+     * queue of ready and parked items
+     */
+    private final DelayQueue<Entry<T>> queue = new DelayQueue<Entry<T>>();
+
+    /**
+     * sequence number keeping FIFO order of items ready at the same time
+     */
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    /**
+     * Constructor
+     *
+     * @param baseDelay
+     *            delay of the first retry in milliseconds
+     * @param maxDelay
+     *            upper bound of retry delays in milliseconds
+     */
+    RetryScheduler(final long baseDelay, final long maxDelay) {
+        this.baseDelay = baseDelay;
+        this.maxDelay = Math.max(baseDelay, maxDelay);
+    }
+
+    /**
+     * computes delay before the given attempt (2 for the first retry):
+     * exponential backoff with jitter between half and full backoff
+     */
+    long backoff(final int attempt) {
+
+        long delay = baseDelay;
+        for (int i = 2; i < attempt && delay < maxDelay; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelay);
+
+        if (delay <= 1) {
+            return delay;
+        }
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * queues item for immediate processing
+     */
+    void submit(final T item) {
+        queue.put(new Entry<T>(item, System.nanoTime(), sequence.getAndIncrement()));
+    }
+
+    /**
+     * parks item until backoff delay for the given attempt has passed;
+     * returns the delay in milliseconds
+     */
+    long retry(final T item, final int attempt) {
+
+        final long delay = backoff(attempt);
+        queue.put(new Entry<T>(item, System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(delay),
+                sequence.getAndIncrement()));
+        return delay;
+    }
+
+    /**
+     * queues the given number of stop markers, returned as null by take()
+     */
+    void stop(final int workers) {
+        for (int i = 0; i < workers; i++) {
+            submit(null);
+        }
+    }
+
+    /**
+     * waits for the next ready item, null indicates that the worker is to
+     * stop
+     */
+    T take() throws InterruptedException {
+        return queue.take().item;
+    }
+
+    /**
+     * queue entry becoming ready at a given point in time
+     */
+    private static final class Entry<T> implements Delayed {
+
+        private final T item;
+        private final long readyAt;
+        private final long seq;
+
+        private Entry(final T item, final long readyAt, final long seq) {
+            this.item = item;
+            this.readyAt = readyAt;
+            this.seq = seq;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(),
+                    TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+
+            final Entry<?> o = (Entry<?>) other;
+            if (readyAt != o.readyAt) {
+                return readyAt - o.readyAt < 0 ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package volumes;
+
+import java.io.IOException;
+
+/**
+ * Volume file system recording the duration of each operation of another
+ * one in Metrics, as "fs.exists", "fs.mkdirs", "fs.setowner",
+ * "fs.setpermission" and "fs.setpublicaces", and counting failed operations
+ * as "fs.failures".
+ */
+final class TimedVolumeFileSystem implements VolumeFileSystem {
+
+    private final VolumeFileSystem fs;
+
+    private final Metrics.Timer existsTimer = timer("exists");
+    private final Metrics.Timer mkdirsTimer = timer("mkdirs");
+    private final Metrics.Timer setOwnerTimer = timer("setowner");
+    private final Metrics.Timer setPermissionTimer = timer("setpermission");
+    private final Metrics.Timer setPublicAcesTimer = timer("setpublicaces");
+    private final Metrics.Counter failures =
+            Metrics.counter(Metrics.FS_FAILURES);
+
+    TimedVolumeFileSystem(final VolumeFileSystem fs) {
+        this.fs = fs;
+    }
+
+    @Override
+    public boolean exists(final String path) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return fs.exists(path);
+        } catch (IOException e) {
+            failures.inc();
+            throw e;
+        } finally {
+            existsTimer.stop(start);
+        }
+    }
+
+    @Override
+    public boolean mkdirs(final String path, final String permission)
+            throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return fs.mkdirs(path, permission);
+        } catch (IOException e) {
+            failures.inc();
+            throw e;
+        } finally {
+            mkdirsTimer.stop(start);
+        }
+    }
+
+    @Override
+    public void setOwner(final String path, final String owner,
+            final String group) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            fs.setOwner(path, owner, group);
+        } catch (IOException e) {
+            failures.inc();
+            throw e;
+        } finally {
+            setOwnerTimer.stop(start);
+        }
+    }
+
+    @Override
+    public void setPermission(final String path, final String permission)
+            throws IOException {
+        final long start = System.nanoTime();
+        try {
+            fs.setPermission(path, permission);
+        } catch (IOException e) {
+            failures.inc();
+            throw e;
+        } finally {
+            setPermissionTimer.stop(start);
+        }
+    }
+
+    @Override
+    public void setPublicAces(final String path) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            fs.setPublicAces(path);
+        } catch (IOException e) {
+            failures.inc();
+            throw e;
+        } finally {
+            setPublicAcesTimer.stop(start);
+        }
+    }
+
+    private static Metrics.Timer timer(final String op) {
+        return Metrics.timer(Metrics.FS + "." + op);
+    }
+}
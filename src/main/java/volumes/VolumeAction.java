@@ -0,0 +1,211 @@
+package volumes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Volume action (purge, create, ACE modification) consisting of a sequence
+ * of steps executed in order. A step failing with a retryable failure is
+ * attempted again later, a step failing finally aborts the action and raises
+ * a MapR alarm.
+ * <p>
+ * An action is executed by one worker at a time and is not thread-safe.
+ */
+final class VolumeAction {
+
+    /**
+     * Single step of a volume action, e.g. one REST call or FS operation.
+     */
+    interface Step {
+
+        /**
+         * executes the step, throws StepFailure if it did not succeed
+         */
+        void run() throws StepFailure;
+    }
+
+    /**
+     * Failure of a step.
+     */
+    static final class StepFailure extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * indicates whether the step may succeed if attempted again
+         */
+        private final boolean retryable;
+
+        /**
+         * Constructor
+         *
+         * @param message
+         *            description used for logging and the MapR alarm
+         * @param retryable
+         *            whether the step may succeed if attempted again
+         */
+        StepFailure(final String message, final boolean retryable) {
+            super(message);
+            this.retryable = retryable;
+        }
+
+        /**
+         * check if step may succeed if attempted again
+         */
+        boolean isRetryable() {
+            return retryable;
+        }
+    }
+
+    /**
+     * logger for troubleshooting and debugging
+     */
+    private static final Log LOG = LogFactory.getLog(VolumeAction.class);
+
+    /**
+     * description of the action for logging
+     */
+    private final String description;
+
+    /**
+     * maximum number of attempts for each step
+     */
+    private final long maxAttempts;
+
+    /**
+     * kind of action for JFR events, e.g. "create", null if not set
+     */
+    private String kind;
+
+    /**
+     * volume the action applies to, null if not set
+     */
+    private MaprVolume volume;
+
+    /**
+     * steps in order of execution
+     */
+    private final List<Step> steps = new ArrayList<Step>();
+
+    /**
+     * index of the step to execute next
+     */
+    private int nextStep = 0;
+
+    /**
+     * attempt number of the next step execution
+     */
+    private int attempt = 1;
+
+    /**
+     * indicates that a step failed finally
+     */
+    private boolean failed = false;
+
+    /**
+     * Constructor
+     */
+    VolumeAction(final String description, final long maxAttempts) {
+        this.description = description;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * appends a step to the action
+     */
+    VolumeAction addStep(final Step step) {
+        steps.add(step);
+        return this;
+    }
+
+    /**
+     * sets kind of action and volume it applies to
+     */
+    VolumeAction forVolume(final String kind, final MaprVolume volume) {
+        this.kind = kind;
+        this.volume = volume;
+        return this;
+    }
+
+    /**
+     * retrieve kind of action, null if not set
+     */
+    String getKind() {
+        return kind;
+    }
+
+    /**
+     * retrieve volume the action applies to, null if not set
+     */
+    MaprVolume getVolume() {
+        return volume;
+    }
+
+    /**
+     * retrieve description of the action
+     */
+    String getDescription() {
+        return description;
+    }
+
+    /**
+     * retrieve attempt number of the next step execution
+     */
+    int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * check if the action was aborted by a step failing finally
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * executes remaining steps in order. returns true if the action is
+     * finished, either successfully or with final failure, and false if the
+     * current step is to be retried later
+     */
+    boolean run() {
+
+        while (nextStep < steps.size()) {
+            try {
+                steps.get(nextStep).run();
+                nextStep++;
+                attempt = 1;
+            } catch (StepFailure f) {
+                if (f.isRetryable() && attempt < maxAttempts) {
+                    LOG.warn(description + " : " + f.getMessage()
+                            + " (attempt " + attempt + " of " + maxAttempts
+                            + ")");
+                    attempt++;
+                    return false;
+                }
+                fail(f.getMessage() + " (attempt " + attempt + " of "
+                        + maxAttempts + ")", f.getMessage());
+                return true;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * aborts the action, skipping remaining steps, and raises a MapR alarm,
+     * e.g. after a step failed unexpectedly
+     */
+    void fail(final String message) {
+        fail(message, message);
+    }
+
+    private void fail(final String message, final String alarm) {
+        LOG.error(description + " failed : " + message);
+        nextStep = steps.size();
+        failed = true;
+        VolumeManager.raiseAlarm(alarm);
+    }
+}
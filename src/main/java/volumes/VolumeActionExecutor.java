@@ -0,0 +1,282 @@
+package volumes;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.Subject;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Bounded worker pool executing volume actions of one phase (purge, create,
+ * ACE modification) concurrently. Each action covers all steps for a single
+ * volume, so per-volume ordering is kept while independent volumes are
+ * processed in parallel. Actions with a failed step are parked in a
+ * {@link RetryScheduler} and picked up again after their backoff delay,
+ * meanwhile workers continue with other actions. Actions run in the security
+ * context (Kerberos subject) of the thread that submits them.
+ * <p>
+ * With concurrency of 1 actions are executed by the calling thread.
+ * <p>
+ * This class is thread-safe.
+ */
+final class VolumeActionExecutor {
+
+    /**
+     * logger for troubleshooting and debugging
+     */
+    private static final Log LOG = LogFactory.getLog(VolumeActionExecutor.class);
+
+    /**
+     * retry delays are capped at this multiple of the base retry delay
+     */
+    private static final long MAX_RETRY_DELAY_FACTOR = 16;
+
+    /**
+     * number of actions executed concurrently
+     */
+    private final int concurrency;
+
+    /**
+     * delay before the first retry of a failed step in milliseconds
+     */
+    private final long retryDelay;
+
+    /**
+     * worker pool, null if actions are executed by the calling thread
+     */
+    private final ExecutorService pool;
+
+    /**
+     * Constructor
+     */
+    VolumeActionExecutor(final int concurrency, final long retryDelay) {
+
+        this.concurrency = concurrency;
+        this.retryDelay = retryDelay;
+
+        if (concurrency > 1) {
+            final AtomicInteger threadCount = new AtomicInteger(0);
+            this.pool = Executors.newFixedThreadPool(concurrency,
+                    new ThreadFactory() {
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "volume-action-"
+                            + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else {
+            this.pool = null;
+        }
+    }
+
+    /**
+     * retrieve number of actions executed concurrently
+     */
+    int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * retrieve delay before the first retry of a failed step
+     */
+    long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * executes all actions of one phase and waits for their completion,
+     * including retries. returns the sum of the execution times of all
+     * actions in milliseconds, i.e. the time a sequential execution without
+     * retry delays would have taken
+     */
+    long runPhase(final String phase, final List<VolumeAction> actions) {
+
+        if (actions.isEmpty()) {
+            return 0;
+        }
+
+        LOG.info("executing " + actions.size() + " " + phase + " action(s)");
+
+        final RetryScheduler<VolumeAction> scheduler =
+                new RetryScheduler<VolumeAction>(retryDelay,
+                        retryDelay * MAX_RETRY_DELAY_FACTOR);
+        final CountDownLatch done = new CountDownLatch(actions.size());
+        final AtomicLong serialTime = new AtomicLong(0);
+        final Subject subject = Subject.getSubject(AccessController.getContext());
+        final int workers = pool == null ? 1 : concurrency;
+
+        for (VolumeAction action : actions) {
+            scheduler.submit(action);
+        }
+        Metrics.gauge(Metrics.ACTIONS_PENDING).set(actions.size());
+
+        final Worker worker = new Worker(phase, scheduler, done, workers,
+                subject, serialTime);
+
+        if (pool == null) {
+            worker.run();
+            return serialTime.get();
+        }
+
+        final List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(pool.submit(worker));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ee) {
+                LOG.error("unexpected failure in " + phase + " worker : "
+                        + ee.getCause());
+            } catch (InterruptedException ie) {
+                LOG.warn("interrupted while waiting for " + phase + " actions");
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return serialTime.get();
+    }
+
+    /**
+     * stops worker threads, running actions are completed
+     */
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * worker loop taking ready actions from the scheduler until all actions
+     * of the phase are finished
+     */
+    private static final class Worker implements Runnable {
+
+        private final String phase;
+        private final RetryScheduler<VolumeAction> scheduler;
+        private final CountDownLatch done;
+        private final int workers;
+        private final Subject subject;
+        private final AtomicLong serialTime;
+
+        private Worker(final String phase,
+                final RetryScheduler<VolumeAction> scheduler,
+                final CountDownLatch done, final int workers,
+                final Subject subject, final AtomicLong serialTime) {
+            this.phase = phase;
+            this.scheduler = scheduler;
+            this.done = done;
+            this.workers = workers;
+            this.subject = subject;
+            this.serialTime = serialTime;
+        }
+
+        @Override
+        public void run() {
+
+            if (subject == null) {
+                loop();
+                return;
+            }
+
+            Subject.doAs(subject, new PrivilegedAction<Void>() {
+
+                @Override
+                public Void run() {
+                    loop();
+                    return null;
+                }
+            });
+        }
+
+        private void loop() {
+
+            while (true) {
+                final VolumeAction action;
+                try {
+                    action = scheduler.take();
+                } catch (InterruptedException ie) {
+                    LOG.warn("interrupted while waiting for " + phase + " actions");
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                // stop marker
+                if (action == null) {
+                    return;
+                }
+
+                final long start = System.currentTimeMillis();
+                final FlightRecorderEvents.Event event =
+                        FlightRecorderEvents.begin(FlightRecorderEvents.Type.VOLUME_ACTION);
+                final int attempt = action.getAttempt();
+                boolean finished = true;
+                boolean failed = true;
+                try {
+                    finished = action.run();
+                    failed = action.isFailed();
+                } catch (RuntimeException re) {
+                    try {
+                        action.fail("unexpected failure in " + phase
+                                + " action : " + re);
+                    } catch (RuntimeException alarm) {
+                        LOG.error("unable to raise alarm : " + alarm);
+                    }
+                } finally {
+                    serialTime.addAndGet(System.currentTimeMillis() - start);
+                    commit(event, action, attempt,
+                            !finished ? "retry" : failed ? "failed" : "succeeded");
+                }
+
+                if (!finished) {
+                    final long delay = scheduler.retry(action, action.getAttempt());
+                    LOG.info("retrying " + action.getDescription() + " in "
+                            + delay + " ms");
+                    continue;
+                }
+
+                done.countDown();
+                Metrics.gauge(Metrics.ACTIONS_PENDING).add(-1);
+                if (done.getCount() == 0) {
+                    scheduler.stop(workers);
+                }
+            }
+        }
+
+        /**
+         * records attempt of an action as JFR event
+         */
+        private static void commit(final FlightRecorderEvents.Event event,
+                final VolumeAction action, final int attempt,
+                final String outcome) {
+
+            final MaprVolume volume = action.getVolume();
+            final VolumeGroupConfiguration vgc = volume != null
+                    ? volume.getVolumeGroupConfiguration() : null;
+            event.set("action", action.getKind())
+                    .set("volume", volume != null ? volume.getName() : null)
+                    .set("volumeGroup", vgc != null ? vgc.getName() : null)
+                    .set("restNode", RestClient.takeLastHost())
+                    .set("attempt", Integer.valueOf(attempt))
+                    .set("outcome", outcome)
+                    .commit();
+        }
+    }
+}
@@ -1,31 +1,24 @@
 package volumes;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.util.Calendar;
 import java.util.Date;
-import java.text.SimpleDateFormat;
 
-import java.net.URL;
-import java.net.URI;
 import java.io.InputStream;
-import java.net.MalformedURLException;
 
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.fs.permission.FsPermission;
 import java.io.IOException;
 import java.io.File;
 
-import com.mapr.fs.MapRFileAce;
-import com.mapr.fs.MapRFileSystem;
-
 /** 
  * Basic idea is to generate set of volumes that should be in place according to
  * configuration. By comparing target set with an actual set of volumes it is
@@ -38,21 +31,54 @@ class VolumeActionManager {
      */
     private static final Log LOG = LogFactory.getLog(VolumeActionManager.class);
 
-    /**
-     * FS action retry delay
-     */
-    private final long FS_ACTION_RETRY_DELAY = 5000;
-
     /**
      * reference to application configuration
      */
     private VolumeManagerConfiguration vmConf;
 
     /**
-     * target map of volumes, regenerated on each main loop iteration
+     * target map of volumes, kept between main loop iterations and updated
+     * incrementally
      */
     HashMap<String,MaprVolume> targetVolMap = new HashMap<String,MaprVolume>();
 
+    /**
+     * target volumes of a single VG as of the last update
+     */
+    private static final class VgTargets {
+
+        /**
+         * configuration the volumes have been generated from
+         */
+        private final VolumeGroupConfiguration vgc;
+
+        /**
+         * appender of the current interval when last updated
+         */
+        private int anchor = NO_ANCHOR;
+
+        /**
+         * target volumes by name
+         */
+        private Map<String, MaprVolume> volumes =
+                new HashMap<String, MaprVolume>();
+
+        VgTargets(VolumeGroupConfiguration vgc) {
+            this.vgc = vgc;
+        }
+    }
+
+    /**
+     * anchor of VG targets never generated
+     */
+    private static final int NO_ANCHOR = -2;
+
+    /**
+     * target volumes by VG name, used to update the target map incrementally
+     */
+    private final Map<String, VgTargets> vgTargets =
+            new HashMap<String, VgTargets>();
+
     /**
      * lists of volumes that are to be created or purged
      */
@@ -61,24 +87,43 @@ class VolumeActionManager {
     ArrayList<MaprVolume> aceModList = new ArrayList<MaprVolume>();
 
     /**
-     * public ACE string
+     * volume group map the delta lists are being generated for
      */
-    final String publicAce = new String("p");
+    private Map<String, VolumeGroupConfiguration> deltaVgMap = null;
 
     /**
-     * Array containing ACEs to be set for the volume
+     * index of the VG names of deltaVgMap, kept while the map is unchanged
      */
-    ArrayList<MapRFileAce> publicAces = null;
+    private VolumeGroupIndex deltaVgIndex = null;
+    private Map<String, VolumeGroupConfiguration> indexedVgMap = null;
 
     /**
-     * Native MapR FS for ACE operations
+     * names of relevant cluster volumes seen while generating delta lists,
+     * bounded by the number of volumes managed rather than cluster size
      */
-    FileSystem fs = null;
+    private final Set<String> seenVolumes = new HashSet<String>();
 
     /**
-     * MapR-FS designator
+     * number of cluster volume list pages passed to addVolumes()
      */
-    private final String MAPRFS_URI = "maprfs:///";
+    private int deltaPages = 0;
+
+    /**
+     * whether volumes to be created are checked for existence first, as the
+     * cluster volume list was retrieved in several pages: volumes moving
+     * across page boundaries while the list is retrieved may be missing
+     */
+    private volatile boolean verifyCreates = false;
+
+    /**
+     * file system of volume mount points, MapR FS unless set otherwise
+     */
+    VolumeFileSystem fs = null;
+
+    /**
+     * worker pool executing volume actions
+     */
+    private VolumeActionExecutor executor = null;
 
     /**
      * retrieve list of volumes to be created
@@ -115,15 +160,18 @@ class VolumeActionManager {
         return vmConf;
     }
 
+    /**
+     * set file system used for mount point operations instead of MapR FS,
+     * e.g. an in-memory one when running against a REST simulator
+     */
+    void setFileSystem(VolumeFileSystem fs) {
+        this.fs = fs == null ? null : new TimedVolumeFileSystem(fs);
+    }
+
     /**
      * Contructor
      */
     VolumeActionManager() {
-        try {
-            publicAces = buildPublicAces();
-        } catch (IOException ioe) {
-            LOG.error("Failed to build array of public ACEs, will keep null value");
-        }
     }
 
     /**
@@ -132,64 +180,135 @@ class VolumeActionManager {
     public void prepare(VolumeManagerConfiguration vmconf, 
             List<MaprVolume> volumes) {
 
+        if (!prepareTargets(vmconf)) {
+            return;
+        }
+
+        genDeltaLists(vmconf.getVgMap(), volumes);
+    }
+
+    /**
+     * first step of preparing volume actions when the cluster volume list is
+     * processed in pages: populates target map of volumes from configured VGs
+     * and starts delta lists generation; returns false if volume actions
+     * can't be prepared
+     */
+    public boolean prepareTargets(VolumeManagerConfiguration vmconf) {
+
         LOG.info("preparing volume actions");
 
         // clear data from previous iteration
-        targetVolMap.clear();
         createList.clear();
         purgeList.clear();
         aceModList.clear();
 
         final Map<String, VolumeGroupConfiguration> vgMap = vmconf.getVgMap();
 
-        for (VolumeGroupConfiguration vgc : vgMap.values()) {
-            populateTargetMapFromVg(vgc);
-        }
-
-        LOG.info("generated target volume map, size=" + targetVolMap.size());
+        updateTargetMap(vgMap, new Date());
 
         // initialize the FileSystem if not yet done
         if (fs == null) {
-            fs = getMapRFS();
+            final VolumeFileSystem maprfs = MaprVolumeFileSystem.connect();
 
-            if (fs == null) {
+            if (maprfs == null) {
                 LOG.error("Can't obtain MapRFS handle, preparing volume actions aborted.");
-                return;
+                return false;
             }
+            setFileSystem(maprfs);
         }
 
-        genDeltaLists(vgMap, volumes);
-
-        LOG.info("finished preparing volume actions : purge=" + 
-                purgeList.size() + " create=" + createList.size() +
-                " aceMod=" + aceModList.size());
+        startDeltaLists(vgMap);
+        return true;
     }
 
     /**
-     * populates target map of volumes based on VG configuration
+     * updates target map of volumes based on VG configuration: volumes of
+     * VGs removed or modified are dropped, and volumes are (re)generated only
+     * for VGs that are new, modified, or whose current interval has changed
+     * since the last update
      */
-    private void populateTargetMapFromVg(VolumeGroupConfiguration vgc) {
+    void updateTargetMap(Map<String, VolumeGroupConfiguration> vgMap,
+            Date now) {
+
+        int added = 0;
+        int removed = 0;
+
+        // drop targets of VGs removed or modified
+        for (Iterator<Map.Entry<String, VgTargets>> it =
+                vgTargets.entrySet().iterator(); it.hasNext();) {
+            final VgTargets targets = it.next().getValue();
+            final VolumeGroupConfiguration vgc = vgMap.get(targets.vgc.getName());
+            if (vgc == null || !vgc.equals(targets.vgc)) {
+                removed += removeTargets(targets.volumes);
+                it.remove();
+            }
+        }
 
-        final Integer interval =
-                VolumeManagerConfiguration.getCalInterval(vgc.getInterval());
-        final Date now = new Date();
+        for (VolumeGroupConfiguration vgc : vgMap.values()) {
 
-        // generate the list of volumes (retent, current and ahead)
-        for (int i=-vgc.getRetention(); i<=vgc.getAheadFactor(); i++) {
+            VgTargets targets = vgTargets.get(vgc.getName());
+            if (targets == null) {
+                targets = new VgTargets(vgc);
+                vgTargets.put(vgc.getName(), targets);
+            }
 
-            String appender = this.getVolumeNameAppender(now, interval.intValue(), i);
+            final int interval = VolumeManagerConfiguration
+                    .getCalInterval(vgc.getInterval()).intValue();
+            final int anchor = VolumeDates.appender(now.getTime(), interval, 0);
+            if (anchor == targets.anchor) {
+                continue;
+            }
+
+            // generate the list of volumes (retent, current and ahead),
+            // keeping volumes which are still in the window
+            final Map<String, MaprVolume> window =
+                    new HashMap<String, MaprVolume>();
+            for (int i=-vgc.getRetention(); i<=vgc.getAheadFactor(); i++) {
+
+                String appender = this.getVolumeNameAppender(now, interval, i);
+
+                StringBuilder sb = new StringBuilder();
+                sb.append(vgc.getName());
 
-            StringBuilder sb = new StringBuilder();
-            sb.append(vgc.getName());
+                if (!appender.isEmpty()) {
+                    sb.append("_");
+                    sb.append(appender);
+                }
 
-            if (!appender.isEmpty()) {
-                sb.append("_");
-                sb.append(appender);
+                final String name = sb.toString();
+                MaprVolume vol = targets.volumes.remove(name);
+                if (vol == null) {
+                    LOG.info("adding volume to target map: " + name);
+                    vol = new MaprVolume(vgc, appender);
+                    added++;
+                }
+                window.put(name, vol);
+                targetVolMap.put(name, vol);
             }
 
-            LOG.info("adding volume to target map: " + sb.toString());
-            targetVolMap.put(sb.toString(), new MaprVolume(vgc, appender));
+            // volumes left behind have moved out of the window
+            removed += removeTargets(targets.volumes);
+            targets.volumes = window;
+            targets.anchor = anchor;
+        }
+
+        LOG.info("updated target volume map, size=" + targetVolMap.size()
+                + " added=" + added + " removed=" + removed);
+    }
+
+    /**
+     * removes the given volumes from the target map, returns their number
+     */
+    private int removeTargets(Map<String, MaprVolume> volumes) {
+
+        for (Map.Entry<String, MaprVolume> entry : volumes.entrySet()) {
+            // only if not re-generated by another VG meanwhile
+            if (targetVolMap.get(entry.getKey()) == entry.getValue()) {
+                LOG.info("removing volume from target map: " + entry.getKey());
+                targetVolMap.remove(entry.getKey());
+            }
         }
+        return volumes.size();
     }
 
     /**
@@ -201,26 +320,8 @@ class VolumeActionManager {
      */
     private String getVolumeNameAppender(Date now, int interval, int offset) {
 
-        SimpleDateFormat sdf = null;
-
-        switch (interval) {
-            case Calendar.MONTH:
-                sdf = new SimpleDateFormat("yyyyMM01");
-                break;
-            case Calendar.YEAR:
-                sdf = new SimpleDateFormat("yyyy0101");
-                break;
-            case Calendar.ERA:
-                return new String();
-            default:
-                sdf = new SimpleDateFormat("yyyyMMdd");
-                break;
-        }
-
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(now);
-        cal.add(interval, offset);
-        return sdf.format(cal.getTime());
+        final int appender = VolumeDates.appender(now.getTime(), interval, offset);
+        return appender < 0 ? "" : Integer.toString(appender);
     }
 
     /**
@@ -229,21 +330,56 @@ class VolumeActionManager {
     public void genDeltaLists(Map<String, VolumeGroupConfiguration> vgMap, 
             List<MaprVolume> volumes) {
 
+        startDeltaLists(vgMap);
+        addVolumes(volumes);
+        finishDeltaLists();
+    }
+
+    /**
+     * starts delta lists generation for the given VG map
+     */
+    private void startDeltaLists(Map<String, VolumeGroupConfiguration> vgMap) {
+
         LOG.info("generating delta lists");
 
-        // list of volumes will be converted into the map for create lookups
-        HashMap<String, MaprVolume> volMap = new HashMap<String, MaprVolume>();
+        this.deltaVgMap = vgMap;
+        if (vgMap != indexedVgMap) {
+            deltaVgIndex = new VolumeGroupIndex(vgMap);
+            indexedVgMap = vgMap;
+        }
+        seenVolumes.clear();
+        deltaPages = 0;
+    }
+
+    /**
+     * generates purge and ACE modification lists from a (partial) list of
+     * cluster volumes, may be called repeatedly for each page of the list
+     */
+    public void addVolumes(List<MaprVolume> volumes) {
+
+        final VolumeGroupIndex index = deltaVgIndex;
+        final int today = VolumeDates.today(System.currentTimeMillis());
+        deltaPages++;
 
         // purge and ACE modification lists generation loop
         for (MaprVolume vol : volumes) {
 
-            volMap.put(vol.getName(), vol);
-
             // check if the volume is relevant for automation
-            final String name = vol.getName().replaceAll("_\\d*$", "");
-            final VolumeGroupConfiguration vgc = vgMap.get(name);
+            final VolumeGroupConfiguration vgc = index.match(vol.getName());
             if (vgc == null) {
-                LOG.debug("volume " + name + " / " + vol.getName() + " is not relevant for automation");
+                // static VG names may end with digits themselves
+                if (targetVolMap.containsKey(vol.getName())) {
+                    seenVolumes.add(vol.getName());
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("volume " + vol.getName() + " is not relevant for automation");
+                }
+                continue;
+            }
+
+            // volume may be listed twice if the list changed between pages
+            if (!seenVolumes.add(vol.getName())) {
+                LOG.debug("volume " + vol.getName() + " already processed");
                 continue;
             }
 
@@ -254,16 +390,18 @@ class VolumeActionManager {
 
             // enforce ACE mod check on retention=0 volume
             if (configuredVol == null && vgc.getRetention() == 0) {
-                String[] splits = vol.getName().split("_");
-                configuredVol = new MaprVolume(vgc, splits[splits.length - 1]);
+                final int end = VolumeGroupIndex.nameEnd(vol.getName());
+                configuredVol = new MaprVolume(vgc, end < vol.getName().length()
+                        ? vol.getName().substring(end + 1) : "");
             }
 
             // this volume is either in target map or retention=0, hence doesn't need to be purged
             // only check ACE mod and skip over
             if (configuredVol != null) {
-                // only check ACE mods on startup / config modification event
-                if (vgc.isAceEnabled() && vmConf.hasConfigReloaded()) {
-                    if (isAceToBeModified(configuredVol, vgc)) {
+                // only check ACE mods of VGs added or modified since the last
+                // successful reconcile
+                if (vgc.isAceEnabled() && vmConf.hasVgChanged(vgc.getName())) {
+                    if (isAceToBeModified(configuredVol, vol)) {
                         aceModList.add(configuredVol);
                     }
                 }
@@ -277,77 +415,287 @@ class VolumeActionManager {
             }
 
             // check if volume is to be purged
-            if (isToBePurged(vol)) {
+            if (isToBePurged(vol, today)) {
+                vol.setVolumeGroupConfiguration(vgc);
                 purgeList.add(vol);
                 LOG.info("added volume to purge list: " + vol.getName());
             } else {
                 LOG.info("volume " + vol.getName() + " is ahead, skipping");
             }
         }
+    }
+
+    /**
+     * completes delta lists generation once all cluster volumes have been
+     * passed to addVolumes(): target volumes not seen are to be created
+     */
+    public void finishDeltaLists() {
 
         // create list generation loop
         for (Map.Entry<String, MaprVolume> entry : targetVolMap.entrySet()) {
-            final MaprVolume v = volMap.get(entry.getKey());
-            if (v == null) {
+            if (!seenVolumes.contains(entry.getKey())) {
                 createList.add(entry.getValue());
                 LOG.info("added volume to create list: " + entry.getKey());
             }
         }
+
+        seenVolumes.clear();
+        deltaVgMap = null;
+        verifyCreates = deltaPages > 1;
+
+        LOG.info("finished preparing volume actions : purge=" + 
+                purgeList.size() + " create=" + createList.size() +
+                " aceMod=" + aceModList.size());
     }
 
     /**
-     * function to check if volume is to be purged
+     * function to check if volume is to be purged, i.e. its date appender is
+     * before today (in yyyyMMdd form)
      */
-    private boolean isToBePurged(MaprVolume vol) {
+    private boolean isToBePurged(MaprVolume vol, int today) {
 
-        final String[] splits = vol.getName().split("_");
-        final String date = splits[splits.length-1];
-        final SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(new Date());
-        final String now = sdf.format(cal.getTime());
-        return (Integer.valueOf(now) > Integer.valueOf(date));
+        final int date = VolumeDates.parseSuffix(vol.getName());
+        if (date < 0) {
+            LOG.warn("volume " + vol.getName() + " has no valid date appender, skipping");
+            return false;
+        }
+        return today > date;
     }
 
     /**
-     * executes actions on purge/create lists
+     * executes actions on purge/create lists, returns false if any action
+     * failed
      */
-    public void execute() {
+    public boolean execute() {
 
         // return immediately if nothing to do
         if (purgeList.size() + createList.size() + aceModList.size() == 0) {
             LOG.info("no pending volume actions");
-            return;
+            return true;
         }
 
         LOG.info("executing volume actions");
 
+        final VolumeActionExecutor ex = getExecutor();
+        final long start = System.currentTimeMillis();
+        final List<VolumeAction> allActions = new ArrayList<VolumeAction>();
+        long serialTime = 0;
+
         // purge
+        final List<VolumeAction> purgeActions = new ArrayList<VolumeAction>();
         for (MaprVolume vol : purgeList) {
-            this.purge(vol);
+            purgeActions.add(buildPurgeAction(vol));
         }
-
-        // create
-        for (MaprVolume vol : createList) {
-            this.create(vol);
+        serialTime += ex.runPhase("purge", purgeActions);
+        allActions.addAll(purgeActions);
+        countSucceeded(purgeActions, Metrics.VOLUMES_PURGED);
+
+        // create, volumes mounted deeper in the namespace come after their
+        // potential parent volumes
+        for (List<MaprVolume> wave : groupByPathDepth(createList)) {
+            final List<VolumeAction> createActions = new ArrayList<VolumeAction>();
+            for (MaprVolume vol : wave) {
+                createActions.add(buildCreateAction(vol));
+            }
+            serialTime += ex.runPhase("create", createActions);
+            allActions.addAll(createActions);
+            countSucceeded(createActions, Metrics.VOLUMES_CREATED);
         }
-        
+
         // ACE modification
+        final List<VolumeAction> aceActions = new ArrayList<VolumeAction>();
         for (MaprVolume vol : aceModList) {
-            try {
-                this.setAces(vol, true);
-            } catch (IOException ioe) {
-                LOG.error("Error when modifying ACE of volume " + vol.getName() + " " + ioe);
+            aceActions.add(buildAceModAction(vol));
+        }
+        serialTime += ex.runPhase("ACE modification", aceActions);
+        allActions.addAll(aceActions);
+        countSucceeded(aceActions, Metrics.VOLUMES_ACE_MODIFIED);
+
+        final long wallTime = Math.max(1, System.currentTimeMillis() - start);
+        LOG.info("finished executing volume actions in " + wallTime
+                + " ms with concurrency " + ex.getConcurrency()
+                + " (sequential time " + serialTime + " ms, speedup "
+                + String.format("%.1f", (double) serialTime / wallTime) + ")");
+
+        int failures = 0;
+        for (VolumeAction action : allActions) {
+            if (action.isFailed()) {
+                failures++;
+            }
+        }
+        if (failures > 0) {
+            LOG.warn(failures + " of " + allActions.size()
+                    + " volume action(s) failed");
+            Metrics.counter(Metrics.VOLUMES_FAILED).add(failures);
+        }
+        return failures == 0;
+    }
+
+    /**
+     * adds the number of actions that succeeded to the given counter
+     */
+    private static void countSucceeded(List<VolumeAction> actions,
+            String counter) {
+        long succeeded = 0;
+        for (VolumeAction action : actions) {
+            if (!action.isFailed()) {
+                succeeded++;
+            }
+        }
+        Metrics.counter(counter).add(succeeded);
+    }
+
+    /**
+     * retrieve executor matching configured concurrency
+     */
+    private VolumeActionExecutor getExecutor() {
+
+        final int concurrency = vmConf.getActionConcurrency();
+        final long retryDelay = vmConf.getActionRetryDelay();
+        if (executor == null || executor.getConcurrency() != concurrency
+                || executor.getRetryDelay() != retryDelay) {
+            if (executor != null) {
+                executor.shutdown();
+            }
+            executor = new VolumeActionExecutor(concurrency, retryDelay);
+        }
+        return executor;
+    }
+
+    /**
+     * groups volumes by depth of their mount path, in ascending order
+     */
+    static List<List<MaprVolume>> groupByPathDepth(List<MaprVolume> volumes) {
+
+        final TreeMap<Integer, List<MaprVolume>> waves =
+                new TreeMap<Integer, List<MaprVolume>>();
+
+        for (MaprVolume vol : volumes) {
+            int depth = 0;
+            final String path = vol.getPath();
+            if (path != null) {
+                for (int i = 0; i < path.length(); i++) {
+                    if (path.charAt(i) == '/') {
+                        depth++;
+                    }
+                }
+            }
+
+            List<MaprVolume> wave = waves.get(Integer.valueOf(depth));
+            if (wave == null) {
+                wave = new ArrayList<MaprVolume>();
+                waves.put(Integer.valueOf(depth), wave);
             }
+            wave.add(vol);
         }
 
-        LOG.info("finished executing volume actions");
+        return new ArrayList<List<MaprVolume>>(waves.values());
     }
 
     /**
      * volume action : purge one volume
      */
-    private void purge(MaprVolume volume) {
+    private VolumeAction buildPurgeAction(final MaprVolume volume) {
+
+        final VolumeAction action = new VolumeAction("purge of volume "
+                + volume.getName(), vmConf.getFsActionAttempts())
+                .forVolume("purge", volume);
+
+        return action.addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() throws VolumeAction.StepFailure {
+                purge(volume, action.getAttempt());
+            }
+        });
+    }
+
+    /**
+     * volume action : create one volume, then set ownership, permission and
+     * ACEs of its mount directory
+     */
+    private VolumeAction buildCreateAction(final MaprVolume volume) {
+
+        final VolumeAction action = new VolumeAction("creation of volume "
+                + volume.getName(), vmConf.getFsActionAttempts())
+                .forVolume("create", volume);
+
+        // ensure base directory for mounting the volume
+        action.addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() throws VolumeAction.StepFailure {
+                ensureParentDirectory(volume.getPath());
+            }
+        });
+
+        action.addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() throws VolumeAction.StepFailure {
+                create(volume, action.getAttempt());
+            }
+        });
+
+        // set FS ownership and permission on success
+        action.addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() throws VolumeAction.StepFailure {
+                setOwnershipAndPerm(volume);
+            }
+        });
+
+        if (volume.isAceEnabled()) {
+            action.addStep(new VolumeAction.Step() {
+
+                @Override
+                public void run() throws VolumeAction.StepFailure {
+                    setAces(volume);
+                }
+            });
+        }
+
+        return action;
+    }
+
+    /**
+     * volume action : modify whole volume ACEs via REST, then set public ACEs
+     * on FS level
+     */
+    private VolumeAction buildAceModAction(final MaprVolume volume) {
+
+        return new VolumeAction("ACE modification of volume "
+                + volume.getName(), vmConf.getFsActionAttempts())
+                .forVolume("aceModification", volume)
+                .addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() throws VolumeAction.StepFailure {
+                modifyVolumeAces(volume);
+            }
+        }).addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() throws VolumeAction.StepFailure {
+                setAces(volume);
+            }
+        });
+    }
+
+    /**
+     * purges one volume via REST. volume/remove isn't idempotent: if a
+     * previous attempt failed in transport, the volume may have been removed
+     * nevertheless, which is checked before removing it again
+     */
+    private void purge(MaprVolume volume, int attempt)
+            throws VolumeAction.StepFailure {
+
+        if (attempt > 1 && !volumeExists(volume)) {
+            LOG.info("volume " + volume.getName()
+                    + " already purged by previous attempt");
+            return;
+        }
 
         LOG.info("purging volume " + volume.getName());
 
@@ -359,65 +707,86 @@ class VolumeActionManager {
         sb.append("/rest/volume/remove?name=");
         sb.append(volume.getName());
 
-        if (callRest(sb.toString())) {
-            LOG.info("purged volume " + volume.getName());
-        } else {
-            LOG.error("error when purging volume " + volume.getName());
-        }
+        callRest(sb.toString());
+        LOG.info("purged volume " + volume.getName());
     }
 
     /**
-     * volume action : create one volume
+     * creates one volume via REST. volume/create isn't idempotent: if a
+     * previous attempt failed in transport, the volume may have been created
+     * nevertheless, which is checked before creating it again. The same
+     * check is done on the first attempt if the volume may have been missed
+     * by a paged volume list
      */
-    private void create(MaprVolume volume) {
+    private void create(MaprVolume volume, int attempt)
+            throws VolumeAction.StepFailure {
+
+        if ((attempt > 1 || verifyCreates) && volumeExists(volume)) {
+            LOG.info("volume " + volume.getName() + (attempt > 1
+                    ? " already created by previous attempt"
+                    : " exists, but was missing from paged volume list"));
+            return;
+        }
 
         LOG.info("creating volume " + volume.getName() + " on path " + 
                 volume.getPath());
 
-        // ensure base directory for mounting the volume
-        this.ensureParentDirectory(volume.getPath());
-
         // build and call REST URL
-        final String vcUrl = buildVolumeCreateURL(volume);
+        callRest(buildVolumeCreateURL(volume));
+    }
 
-        if (callRest(vcUrl)) {
-            // set FS ownership and permission on success
-            setOwnershipAndPerm(volume);
+    /**
+     * function implementing REST call. transport failures are retryable,
+     * REST error responses are not
+     */
+    private void callRest(String surl) throws VolumeAction.StepFailure {
+
+        if (!getRestStatus(surl)) {
+            throw new VolumeAction.StepFailure("REST error response for URL "
+                    + surl, false);
         }
+
+        LOG.info("REST call successful");
     }
 
     /**
-     * function implementing REST call
+     * checks via REST whether a volume exists, i.e. volume/info returns
+     * status OK. transport failures are retryable
      */
-    private boolean callRest(String surl) {
+    private boolean volumeExists(MaprVolume volume)
+            throws VolumeAction.StepFailure {
+        return getRestStatus(buildVolumeInfoURL(volume));
+    }
 
-        URL url = null;
-        try {
-            url = new URL(surl);
-        } catch (MalformedURLException e) {
-            LOG.error("malformed URL : " + surl + " : " + e);
-            return false;
-        }
+    /**
+     * function implementing REST call, returns whether the response status
+     * is OK. transport failures are retryable
+     */
+    private boolean getRestStatus(String surl)
+            throws VolumeAction.StepFailure {
 
         // execute REST and validate the response
-        InputStream is = null;
+        final boolean status;
         try {
-            LOG.info("calling URL " + url.toString());
-            is = url.openConnection().getInputStream();
-            if (MaprRestParser.getResponseStatus(is)) {
-                LOG.info("REST call successful");
-                return true;
-            } else {
-                VolumeManager.raiseAlarm("REST error response for URL " + surl);
-            }
+            LOG.info("calling URL " + surl);
+            status = VolumeManager.getRestClient().get(surl,
+                    new RestClient.ResponseHandler<Boolean>() {
+
+                @Override
+                public Boolean handle(InputStream is) throws IOException {
+                    return Boolean.valueOf(MaprRestParser.getResponseStatus(is));
+                }
+            }).booleanValue();
         } catch (Exception e) {
-            LOG.error("exception when calling URL " + url.toString() + " : " 
+            LOG.error("exception when calling URL " + surl + " : " 
                     + e);
             // switch target REST node for next attempt
             VolumeManager.failoverRestNode();
-            VolumeManager.raiseAlarm("REST error when calling URL " + surl);
+            throw new VolumeAction.StepFailure("REST error when calling URL "
+                    + surl, true);
         }
-        return false;
+
+        return status;
     }
 
     /**
@@ -425,31 +794,20 @@ class VolumeActionManager {
      */
     private List<String> getAcesWithRest(String surl) {
 
-        if (vmConf.getRestThrottlingInterval() != 0) {
-            try {
-                Thread.sleep(vmConf.getRestThrottlingInterval());
-            } catch (InterruptedException ie) {
-                LOG.warn("Thread.sleep() interrupted: " + ie);
-            }
-        }
-
-        URL url = null;
-        try {
-            url = new URL(surl);
-        } catch (MalformedURLException e) {
-            LOG.error("malformed URL : " + surl + " : " + e);
-            return null;
-        }
-
         // execute REST and validate the response
-        InputStream is = null;
         List<String> aces = null;
         try {
-            LOG.info("calling URL " + url.toString());
-            is = url.openConnection().getInputStream();
-            aces = MaprAceParser.parse(is);
+            LOG.info("calling URL " + surl);
+            aces = VolumeManager.getRestClient().get(surl,
+                    new RestClient.ResponseHandler<List<String>>() {
+
+                @Override
+                public List<String> handle(InputStream is) throws IOException {
+                    return MaprAceParser.parse(is);
+                }
+            });
         } catch (Exception e) {
-            LOG.error("exception when calling URL " + url.toString() + " : "
+            LOG.error("exception when calling URL " + surl + " : "
                     + e);
             // switch target REST node for next attempt
             VolumeManager.failoverRestNode();
@@ -462,123 +820,87 @@ class VolumeActionManager {
     /**
      * ensures volume mount base directory
      */
-    private boolean ensureParentDirectory(String path) {
+    private void ensureParentDirectory(String path)
+            throws VolumeAction.StepFailure {
 
         LOG.info("ensuring volume mount base directory");
 
-        boolean parentDirectoryStatus = false;
-        long maxAttempts = vmConf.getFsActionAttempts();
+        final File file = new File(path);
+        final String dir = file.getParent();
 
-        // execute FS actions
-        for (long a = 1; a <= maxAttempts; a++) {
-            LOG.info("DFS operation batch attempt " + a + " of " + maxAttempts);
-            try {
-                final File file = new File(path);
-                final String dir = file.getParent();
-
-                if (!fs.exists(new Path(dir))) {
-                    LOG.info("creating directory " + dir);
-                    parentDirectoryStatus = fs.mkdirs(new Path(dir), 
-                            new FsPermission("755"));
-                } else {
-                    LOG.info("parent directory " + dir + " exists");
-                    parentDirectoryStatus = true;
-                }
-                LOG.info("ensured volume mount base directory");
-                break;
-            } catch (IOException ie) {
-                LOG.error("failure performing MapR-FS operation: " + ie);
-                if (a == maxAttempts) {
-                    VolumeManager.raiseAlarm("FS operation failure on " + path);
-                } else {
-                    LOG.info("Sleeping 5 msec before next attempt ...");
-                    try {
-                        Thread.sleep(FS_ACTION_RETRY_DELAY);
-                    } catch (InterruptedException inte) {
-                        LOG.info("caught interrupted exception" + inte);
-                    }
+        try {
+            if (!fs.exists(dir)) {
+                LOG.info("creating directory " + dir);
+                if (!fs.mkdirs(dir, "755")) {
+                    throw new IOException("mkdirs returned false");
                 }
+            } else {
+                LOG.info("parent directory " + dir + " exists");
             }
+        } catch (IOException ie) {
+            LOG.error("failure performing MapR-FS operation: " + ie);
+            throw new VolumeAction.StepFailure("FS operation failure on "
+                    + path, true);
         }
 
-        return parentDirectoryStatus;
+        LOG.info("ensured volume mount base directory");
     }
 
     /**
      * sets directory ownership and permissions
      */
-    private void setOwnershipAndPerm(MaprVolume volume) {
+    private void setOwnershipAndPerm(MaprVolume volume)
+            throws VolumeAction.StepFailure {
 
         LOG.info("changing ownership of " + volume.getPath() + " to " + 
                 volume.getOwner() + ":" + volume.getGroup() + 
                 " and permission to " + volume.getPermission());
 
-        long maxAttempts = vmConf.getFsActionAttempts();
-
-        // execute FS actions
-        for (long a = 1; a <= maxAttempts; a++) {
-            LOG.info("DFS operation batch attempt " + a + " of " + maxAttempts);
-            try {
-                fs.setOwner(new Path(volume.getPath()), volume.getOwner(), 
-                        volume.getGroup());
-                LOG.info("changed ownership of " + volume.getPath() + " to " + 
-                        volume.getOwner() + ":" + volume.getGroup());
-                fs.setPermission(new Path(volume.getPath()), 
-                        new FsPermission(volume.getPermission()));
-                LOG.info("changed permission of " + volume.getPath() + " to " + 
-                        volume.getPermission());
-                if (volume.isAceEnabled()) {
-                    setAces(volume, false);
-                }
-                break;
-            } catch (Exception ie) {
-                LOG.error("failure performing MapR-FS operation: " + ie);
-                if (a == maxAttempts) {
-                    VolumeManager.raiseAlarm("FS operation failure on " + volume.getPath());
-                } else {
-                    LOG.info("Sleeping 5 sec before next attempt ...");
-                    try {
-                        Thread.sleep(FS_ACTION_RETRY_DELAY);
-                    } catch (InterruptedException inte) {
-                        LOG.info("caught interrupted exception" + inte);
-                    }
-                }
-            }
+        try {
+            fs.setOwner(volume.getPath(), volume.getOwner(),
+                    volume.getGroup());
+            LOG.info("changed ownership of " + volume.getPath() + " to " + 
+                    volume.getOwner() + ":" + volume.getGroup());
+            fs.setPermission(volume.getPath(), volume.getPermission());
+            LOG.info("changed permission of " + volume.getPath() + " to " + 
+                    volume.getPermission());
+        } catch (Exception ie) {
+            LOG.error("failure performing MapR-FS operation: " + ie);
+            throw new VolumeAction.StepFailure("FS operation failure on "
+                    + volume.getPath(), true);
         }
     }
 
     /**
-     * set MapR ACE on the volume
+     * modify whole volume ACEs via REST
      */
-    private void setAces(MaprVolume volume, boolean withRest) throws IOException {
-
-        if (!volume.isAceEnabled()) {
-            LOG.warn("ACE setting attempt on a volume with no ACE enabled. Ignoring.");
-            return;
-        }
-
-        boolean result = true;
+    private void modifyVolumeAces(MaprVolume volume)
+            throws VolumeAction.StepFailure {
 
         LOG.info("Setting ACEs on " + volume.getPath() + " [readAce='" + volume.getReadAce() +
                 "' writeAce='" + volume.getWriteAce() + "']");
 
-        // modify volume via REST for whole volume ACEs if requested
-        if (withRest) {
-            String url = buildVolumeAceModURL(volume);
-            result = callRest(url);
+        callRest(buildVolumeAceModURL(volume));
+    }
+
+    /**
+     * set public MapR ACEs on FS level, access is controlled by whole volume
+     * ACEs
+     */
+    private void setAces(MaprVolume volume) throws VolumeAction.StepFailure {
+
+        if (!volume.isAceEnabled()) {
+            LOG.warn("ACE setting attempt on a volume with no ACE enabled. Ignoring.");
+            return;
         }
 
-        // set public ACEs on FS level only if whole volume ACEs setting was OK
-        if (result) {
-            try {
-                ((MapRFileSystem)fs).setAces(new Path(volume.getPath()), this.publicAces);
-                LOG.info("Setting public ACEs on FS level successful");
-            } catch (IOException ioe){
-                LOG.error("Error when setting MapR ACEs");
-                throw ioe;
-            }
-        } else {
-            LOG.info("FS level ACE setting skipped due to whole volume REST setting failure.");
+        try {
+            fs.setPublicAces(volume.getPath());
+            LOG.info("Setting public ACEs on FS level successful");
+        } catch (IOException ioe){
+            LOG.error("Error when setting MapR ACEs: " + ioe);
+            throw new VolumeAction.StepFailure("FS ACE setting failure on "
+                    + volume.getPath(), true);
         }
     }
 
@@ -663,76 +985,27 @@ class VolumeActionManager {
         return sb.toString();
     }
 
-    /**
-     * initialize MapR FS
-     */
-    private FileSystem getMapRFS() {
-        org.apache.hadoop.conf.Configuration conf = new org.apache.hadoop.conf.Configuration();
-        conf.set("fs.defaultFS", MAPRFS_URI);
-        conf.set("fs.maprfs.impl", "com.mapr.fs.MapRFileSystem");
-
-        try {
-            LOG.info("Initializing MapR Native FS ...");
-            FileSystem filesys = FileSystem.get(URI.create(MAPRFS_URI), conf);
-            LOG.info("MapR Native FS initialization successful");
-            return filesys;
-        } catch (IOException ioe){
-            LOG.error("Failure when initializing MapR FS : " + ioe);
-            return null;
-        }
-    }
-
-   /**
-     * initialize ACE array
-     */
-    private ArrayList<MapRFileAce> buildPublicAces() throws IOException {
-
-        ArrayList<MapRFileAce> aces = new ArrayList<MapRFileAce>();
-
-        MapRFileAce ace = new MapRFileAce(MapRFileAce.AccessType.READFILE);
-        ace.setBooleanExpression(publicAce);
-        aces.add(ace);
-
-        ace = new MapRFileAce (MapRFileAce.AccessType.WRITEFILE);
-        ace.setBooleanExpression(publicAce);
-        aces.add(ace);
-
-        ace = new MapRFileAce (MapRFileAce.AccessType.EXECUTEFILE);
-        ace.setBooleanExpression(publicAce);
-        aces.add(ace);
-
-        ace = new MapRFileAce (MapRFileAce.AccessType.READDIR);
-        ace.setBooleanExpression(publicAce);
-        aces.add(ace);
-
-        ace = new MapRFileAce (MapRFileAce.AccessType.ADDCHILD);
-        ace.setBooleanExpression(publicAce);
-        aces.add(ace);
-
-        ace = new MapRFileAce (MapRFileAce.AccessType.DELETECHILD);
-        ace.setBooleanExpression(publicAce);
-        aces.add(ace);
-
-        ace = new MapRFileAce (MapRFileAce.AccessType.LOOKUPDIR);
-        ace.setBooleanExpression(publicAce);
-        aces.add(ace);
-
-        return aces;
-    }
-
-    // Check if ACE has to be modified due to configuration change
-    private boolean isAceToBeModified(MaprVolume volume, VolumeGroupConfiguration vgconf) {
+    // Check if ACE has to be modified due to configuration change. ACEs
+    // listed along with the cluster volume are compared directly, other
+    // volumes are looked up with a volume info call
+    private boolean isAceToBeModified(MaprVolume volume, MaprVolume clusterVolume) {
 
         boolean result = false;
         List<String> aces = null;
 
-        // retrieve pair of whole volume ACEs via REST
-        try {
-            aces = this.getAcesWithRest(buildVolumeInfoURL(volume));
-            LOG.info("readAce on volume " + volume.getName() + " : [" + aces.get(0) + "]");
-            LOG.info("writeAce on volume " + volume.getName() + " : [" + aces.get(1) + "]");
-        } catch (Exception e) {
-             LOG.error("Error when parsing JSON input on volume info data: " + e);
+        if (clusterVolume.getReadAce() != null && clusterVolume.getWriteAce() != null) {
+            aces = new ArrayList<String>(2);
+            aces.add(clusterVolume.getReadAce());
+            aces.add(clusterVolume.getWriteAce());
+        } else {
+            // retrieve pair of whole volume ACEs via REST
+            try {
+                aces = this.getAcesWithRest(buildVolumeInfoURL(volume));
+                LOG.info("readAce on volume " + volume.getName() + " : [" + aces.get(0) + "]");
+                LOG.info("writeAce on volume " + volume.getName() + " : [" + aces.get(1) + "]");
+            } catch (Exception e) {
+                 LOG.error("Error when parsing JSON input on volume info data: " + e);
+            }
         }
 
         // enforce ACE setting in case ACEs are configured but not set on the volume
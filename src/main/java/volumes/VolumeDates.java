@@ -0,0 +1,130 @@
+package volumes;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Date arithmetic for volume name appenders.
+ * <p>
+ * Appenders are dates in yyyyMMdd form. They are handled as integers of the
+ * same digits (e.g. 20190301), which keep the chronological order, so that
+ * neither formatting nor parsing through SimpleDateFormat is needed. All
+ * computations use the default time zone, as volume names always did.
+ * <p>
+ * This class is thread-safe.
+ */
+final class VolumeDates {
+
+    /**
+     * per-thread calendar used for computations
+     */
+    private static final ThreadLocal<Calendar> CALENDAR =
+            new ThreadLocal<Calendar>() {
+
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
+
+    private VolumeDates() {
+    }
+
+    /**
+     * computes the appender of the interval shifted by offset intervals from
+     * the one containing now: the date of the day for daily volumes, the first
+     * day of the month for monthly and of the year for yearly volumes. returns
+     * -1 for interval Calendar.ERA, i.e. volumes without appender
+     */
+    static int appender(final long now, final int interval, final int offset) {
+
+        if (interval == Calendar.ERA) {
+            return -1;
+        }
+
+        final Calendar cal = CALENDAR.get();
+        cal.setTimeInMillis(now);
+        cal.add(interval, offset);
+
+        final int year = cal.get(Calendar.YEAR);
+        switch (interval) {
+            case Calendar.MONTH:
+                return toInt(year, cal.get(Calendar.MONTH) + 1, 1);
+            case Calendar.YEAR:
+                return toInt(year, 1, 1);
+            default:
+                return toInt(year, cal.get(Calendar.MONTH) + 1,
+                        cal.get(Calendar.DAY_OF_MONTH));
+        }
+    }
+
+    /**
+     * computes the date of the day containing now, in yyyyMMdd form
+     */
+    static int today(final long now) {
+        return appender(now, Calendar.DATE, 0);
+    }
+
+    /**
+     * converts date in yyyyMMdd form to the start of that day
+     */
+    static Date toDate(final int date) {
+
+        final Calendar cal = CALENDAR.get();
+        cal.clear();
+        cal.set(date / 10000, date / 100 % 100 - 1, date % 100);
+        return cal.getTime();
+    }
+
+    /**
+     * parses the digits following the last '_' of the given volume name
+     * without creating intermediate strings. returns -1 if the name doesn't
+     * end with '_' followed by 1 to 9 digits
+     */
+    static int parseSuffix(final String volumeName) {
+
+        int value = 0;
+        int factor = 1;
+        int i = volumeName.length() - 1;
+        for (; i >= 0; i--) {
+            final char c = volumeName.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (factor > 100000000) {
+                return -1;
+            }
+            value += (c - '0') * factor;
+            factor *= 10;
+        }
+
+        if (factor == 1 || i < 0 || volumeName.charAt(i) != '_') {
+            return -1;
+        }
+        return value;
+    }
+
+    /**
+     * parses appender string in yyyyMMdd form, returns -1 if invalid
+     */
+    static int parse(final String appender) {
+
+        if (appender.length() != 8) {
+            return -1;
+        }
+
+        int value = 0;
+        for (int i = 0; i < appender.length(); i++) {
+            final char c = appender.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int toInt(final int year, final int month, final int day) {
+        return year * 10000 + month * 100 + day;
+    }
+}
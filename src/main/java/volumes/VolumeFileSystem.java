@@ -0,0 +1,37 @@
+package volumes;
+
+import java.io.IOException;
+
+/**
+ * File system operations needed by volume actions on volume mount points
+ * and their parent directories. Paths are absolute cluster paths.
+ */
+interface VolumeFileSystem {
+
+    /**
+     * check if the given path exists
+     */
+    boolean exists(String path) throws IOException;
+
+    /**
+     * creates the given directory and missing parents with the given octal
+     * permission, e.g. "755"; returns false if the directory wasn't created
+     */
+    boolean mkdirs(String path, String permission) throws IOException;
+
+    /**
+     * sets owner and group of the given path
+     */
+    void setOwner(String path, String owner, String group) throws IOException;
+
+    /**
+     * sets octal permission of the given path, e.g. "755"
+     */
+    void setPermission(String path, String permission) throws IOException;
+
+    /**
+     * sets public ACEs on the given path, access is then controlled by whole
+     * volume ACEs
+     */
+    void setPublicAces(String path) throws IOException;
+}
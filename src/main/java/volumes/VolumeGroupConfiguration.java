@@ -1,5 +1,7 @@
 package volumes;
 
+import java.util.Arrays;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -139,11 +141,32 @@ class VolumeGroupConfiguration {
         return cluster;
     }
 
+    /**
+     * compiled path format, created on first use
+     */
+    private volatile PathFormatter pathFormatter;
+
     /**
      * set path format
      */
     public void setPathFormat(String p) {
         pathformat = p;
+        pathFormatter = null;
+    }
+
+    /**
+     * retrieve compiled path format, shared by all threads
+     *
+     * @throws IllegalArgumentException
+     *             if the path format is invalid
+     */
+    public PathFormatter getPathFormatter() {
+        PathFormatter f = pathFormatter;
+        if (f == null) {
+            f = new PathFormatter(pathformat);
+            pathFormatter = f;
+        }
+        return f;
     }
 
     /**
@@ -390,4 +413,43 @@ class VolumeGroupConfiguration {
     public String getPermission() {
         return permission;
     }
+
+    /**
+     * two configurations are equal if all properties are equal, i.e. they
+     * produce the same target volumes
+     */
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof VolumeGroupConfiguration)) {
+            return false;
+        }
+
+        final VolumeGroupConfiguration other = (VolumeGroupConfiguration) o;
+        return minReplication == other.minReplication
+                && replication == other.replication
+                && aeType == other.aeType
+                && isAceEnabled == other.isAceEnabled
+                && schedule == other.schedule
+                && retention == other.retention
+                && aheadFactor == other.aheadFactor
+                && Arrays.equals(properties(), other.properties());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(properties()) + retention * 17 + aheadFactor;
+    }
+
+    /**
+     * string properties for equals() and hashCode()
+     */
+    private String[] properties() {
+        return new String[] { cluster, pathformat, name, replicationType,
+                owner, group, ae, readAce, writeAce, topology, interval,
+                permission };
+    }
 }
@@ -0,0 +1,105 @@
+package volumes;
+
+import java.util.Map;
+
+/**
+ * Index of volume group names classifying cluster volume names.
+ * <p>
+ * A volume belongs to a VG if its name, stripped of a trailing '_' followed
+ * by digits (the date appender), equals the VG name. Names are matched
+ * against a character trie of the VG names without regular expressions or
+ * intermediate strings, so that the many cluster volumes unrelated to any VG
+ * are rejected after a few character comparisons.
+ * <p>
+ * An index is immutable and thread-safe.
+ */
+final class VolumeGroupIndex {
+
+    /**
+     * trie node, children are kept in small parallel arrays since the
+     * fan-out of VG names is low
+     */
+    private static final class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private VolumeGroupConfiguration vgc;
+
+        Node child(final char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(final char c) {
+            Node child = child(c);
+            if (child == null) {
+                final int n = keys.length;
+                final char[] k = new char[n + 1];
+                final Node[] ch = new Node[n + 1];
+                System.arraycopy(keys, 0, k, 0, n);
+                System.arraycopy(children, 0, ch, 0, n);
+                k[n] = c;
+                child = new Node();
+                ch[n] = child;
+                keys = k;
+                children = ch;
+            }
+            return child;
+        }
+    }
+
+    /**
+     * root of the trie
+     */
+    private final Node root = new Node();
+
+    /**
+     * Constructor
+     *
+     * @param vgMap
+     *            volume group configurations by VG name
+     */
+    VolumeGroupIndex(final Map<String, VolumeGroupConfiguration> vgMap) {
+
+        for (Map.Entry<String, VolumeGroupConfiguration> entry : vgMap.entrySet()) {
+            final String name = entry.getKey();
+            Node node = root;
+            for (int i = 0; i < name.length(); i++) {
+                node = node.addChild(name.charAt(i));
+            }
+            node.vgc = entry.getValue();
+        }
+    }
+
+    /**
+     * retrieve configuration of the VG the volume belongs to, null if none
+     */
+    VolumeGroupConfiguration match(final String volumeName) {
+
+        final int end = nameEnd(volumeName);
+        Node node = root;
+        for (int i = 0; i < end && node != null; i++) {
+            node = node.child(volumeName.charAt(i));
+        }
+        return node == null ? null : node.vgc;
+    }
+
+    /**
+     * computes the length of the VG name part of a volume name, i.e. the
+     * index of a trailing '_' followed by digits only, or the length of the
+     * name if there is no such suffix
+     */
+    static int nameEnd(final String volumeName) {
+
+        int i = volumeName.length() - 1;
+        while (i >= 0 && volumeName.charAt(i) >= '0'
+                && volumeName.charAt(i) <= '9') {
+            i--;
+        }
+        return i >= 0 && volumeName.charAt(i) == '_' ? i : volumeName.length();
+    }
+}
@@ -0,0 +1,187 @@
+package volumes;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Builds /rest/volume/list URLs. The request asks the CLDB for the needed
+ * columns only and, where possible, restricts the list to volumes whose names
+ * start with one of the given prefixes (volume group names), so that neither
+ * unused attributes nor unrelated volumes are serialized.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class VolumeListRequestBuilder {
+
+    /**
+     * The log object used for debugging and reporting.
+     */
+    private static final Log LOG =
+            LogFactory.getLog(VolumeListRequestBuilder.class);
+
+    /**
+     * maximum length of the filter expression, longer filters are dropped
+     * to stay well below web server URL length limits
+     */
+    static final int MAX_FILTER_LENGTH = 4096;
+
+    /**
+     * REST endpoint in format 'https://host:port'
+     */
+    private final String endPoint;
+
+    /**
+     * columns to retrieve, all columns if empty
+     */
+    private final List<String> columns = new ArrayList<String>();
+
+    /**
+     * volume name prefixes to filter on, sorted and de-duplicated
+     */
+    private final TreeSet<String> namePrefixes = new TreeSet<String>();
+
+    /**
+     * index of the first volume to retrieve
+     */
+    private int start = 0;
+
+    /**
+     * maximum number of volumes to retrieve, unlimited if 0
+     */
+    private int limit = 0;
+
+    /**
+     * Constructor
+     */
+    VolumeListRequestBuilder(final String endPoint) {
+        this.endPoint = endPoint;
+    }
+
+    /**
+     * add column to retrieve
+     */
+    VolumeListRequestBuilder column(final String column) {
+        this.columns.add(column);
+        return this;
+    }
+
+    /**
+     * add volume name prefixes to filter on
+     */
+    VolumeListRequestBuilder namePrefixes(final Collection<String> prefixes) {
+        this.namePrefixes.addAll(prefixes);
+        return this;
+    }
+
+    /**
+     * set index of the first volume to retrieve
+     */
+    VolumeListRequestBuilder start(final int start) {
+        this.start = start;
+        return this;
+    }
+
+    /**
+     * set maximum number of volumes to retrieve (page size), 0 for all
+     */
+    VolumeListRequestBuilder limit(final int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * builds filter expression in MapR REST syntax, e.g.
+     * [volumename==vg1*]or[volumename==vg2*]
+     * returns null if no filter can be applied
+     */
+    String buildFilter() {
+
+        if (namePrefixes.isEmpty()) {
+            return null;
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (String prefix : namePrefixes) {
+            if (sb.length() > 0) {
+                sb.append("or");
+            }
+            sb.append('[');
+            sb.append(MaprVolumeParser.VOLUME_NAME_KEY);
+            sb.append("==");
+            sb.append(prefix);
+            sb.append("*]");
+
+            if (sb.length() > MAX_FILTER_LENGTH) {
+                LOG.info("volume list filter for " + namePrefixes.size()
+                        + " volume groups exceeds " + MAX_FILTER_LENGTH
+                        + " characters, listing volumes unfiltered");
+                return null;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * builds URL string for volume list retrieval
+     */
+    String build() {
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append(endPoint);
+        sb.append("/rest/volume/list");
+
+        char separator = '?';
+
+        if (!columns.isEmpty()) {
+            final StringBuilder cols = new StringBuilder();
+            for (String column : columns) {
+                if (cols.length() > 0) {
+                    cols.append(',');
+                }
+                cols.append(column);
+            }
+            sb.append(separator);
+            sb.append("columns=");
+            sb.append(encode(cols.toString()));
+            separator = '&';
+        }
+
+        final String filter = buildFilter();
+        if (filter != null) {
+            sb.append(separator);
+            sb.append("filter=");
+            sb.append(encode(filter));
+            separator = '&';
+        }
+
+        if (limit > 0) {
+            sb.append(separator);
+            sb.append("start=");
+            sb.append(start);
+            sb.append("&limit=");
+            sb.append(limit);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * URL-encodes request parameter value
+     */
+    private static String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(uee);
+        }
+    }
+}
@@ -10,18 +10,16 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.File;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.io.InputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.Iterator;
-import java.util.Date;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -38,14 +36,18 @@ import java.net.URI;
  * VolumeManager main application class
  * Logic flow:
  * (1) read options, load and validate configuration
- * (2) enter main loop, authenticate through kerberos
+ * (2) enter main loop, authenticate through kerberos; credentials are
+ *     refreshed in the background from then on (see CredentialRefresher)
  * (3)   retrieve current volume list using MapR REST API and convert it to
  *       the list of MapR volumes
  * (4)   build volume actions (create/purge/...) by applying configuration rules
  *       upon the list obtained in step (3)
- * (5)   execute volume actions one by one
- * (6)   check if kerberos ticket expired, goto step (2) if the case
- * (7)   sleep and go to step (3)
+ * (5)   execute volume actions, independent volumes concurrently
+ * (6)   check if kerberos ticket expired, request an immediate refresh and
+ *       skip reconciles until it succeeded if the case
+ * (7)   sleep until the next tick, reload configuration if modified, and go
+ *       to step (3) if a reconcile is due (see ReconcileScheduler), else
+ *       repeat step (7)
  */
 class VolumeManager {
 
@@ -69,11 +71,6 @@ class VolumeManager {
      */
     private static volatile String localHostName = null;
 
-    /**
-     * REST node index for internal array
-     */
-    private static int restNodeIndex = 0;
-
     /**
      * REST failure counter
      */
@@ -89,11 +86,56 @@ class VolumeManager {
      */
     private static boolean shutdown = false;
 
+    /**
+     * shared REST client, re-created on configuration reload
+     */
+    private static RestClient restClient = null;
+
+    /**
+     * REST node selector, re-created on configuration reload if its settings
+     * changed, so that node health is kept otherwise
+     */
+    private static RestNodeSelector restNodeSelector = null;
+
+    /**
+     * settings the REST node selector was created with
+     */
+    private static String restNodeSelectorSettings = null;
+
+    /**
+     * REST rate limiter, null for unlimited; re-created on configuration
+     * reload if its settings changed, so that the adapted rate is kept
+     * otherwise
+     */
+    private static RestRateLimiter restRateLimiter = null;
+
+    /**
+     * settings the REST rate limiter was created with
+     */
+    private static String restRateLimiterSettings = null;
+
+    /**
+     * decides when volumes are reconciled
+     */
+    private static volatile ReconcileScheduler scheduler =
+            new ReconcileScheduler(null);
+
+    /**
+     * watcher of configuration directories, null if they're polled
+     */
+    private static ConfigWatcher configWatcher = null;
+
     /**
      * volume action manager
      */
     private static VolumeActionManager vam = new VolumeActionManager();
 
+    /**
+     * latencies of recent volume list calls, used for hedging
+     */
+    private static final LatencyTracker volumeListLatency =
+            new LatencyTracker(50, 10);
+
     /**
      * volume list retrieval alarm
      */
@@ -119,6 +161,7 @@ class VolumeManager {
 
         // initialize application configuration
         initConf(configDir);
+        scheduler = new ReconcileScheduler(configDir);
 
         if (!vmconf.isValid()) {
             LOG.fatal("configuration is invalid, check errors. exiting.");
@@ -128,6 +171,15 @@ class VolumeManager {
         // set reference to applicaiton config for action manager
         vam.setVMConf(vmconf);
 
+        // push configuration changes into the main loop
+        startConfigWatcher();
+
+        // expose metrics via JMX and, if configured, a local endpoint
+        MetricsDynamicMBean.register();
+        if (vmconf.getMetricsPort() > 0) {
+            MetricsServer.start(vmconf.getMetricsPort());
+        }
+
         // enter main loop
         runMainLoop();
 
@@ -167,14 +219,17 @@ class VolumeManager {
         LOG.info("loading configuration from " + configDir.getAbsolutePath() +
                 " ...");
         vmconf = new VolumeManagerConfiguration(configDir);
+        resetRestClient();
     }
 
     /**
      * reload configuration
      */
     public static void reloadConf() {
-        LOG.info("re-loading configuration");
-        initConf(configDir);
+        LOG.info("re-loading configuration from " + configDir.getAbsolutePath()
+                + " ...");
+        vmconf = new VolumeManagerConfiguration(configDir, vmconf);
+        resetRestClient();
     }
 
     /**
@@ -182,6 +237,131 @@ class VolumeManager {
      */
     public static void setConf(VolumeManagerConfiguration conf) {
         vmconf = conf;
+        resetRestClient();
+    }
+
+    /**
+     * retrieve REST client shared by all REST calls
+     */
+    public static synchronized RestClient getRestClient() {
+        if (restClient == null) {
+            restClient = new RestClient(vmconf.getRestConnectTimeout(),
+                    vmconf.getRestReadTimeout(),
+                    vmconf.getRestMaxConnections(), getRestRateLimiter(),
+                    getRestNodeSelector());
+        }
+        return restClient;
+    }
+
+    /**
+     * retrieve REST rate limiter shared by all REST calls, null for
+     * unlimited
+     */
+    private static synchronized RestRateLimiter getRestRateLimiter() {
+        final String settings = vmconf.getRestRateLimit() + ","
+                + vmconf.getRestRateBurst();
+        if (!settings.equals(restRateLimiterSettings)) {
+            restRateLimiter = vmconf.getRestRateLimit() > 0
+                    ? new RestRateLimiter(vmconf.getRestRateLimit(),
+                            vmconf.getRestRateBurst())
+                    : null;
+            restRateLimiterSettings = settings;
+        }
+        return restRateLimiter;
+    }
+
+    /**
+     * retrieve REST node selector shared by all REST calls
+     */
+    private static synchronized RestNodeSelector getRestNodeSelector() {
+        final String settings = vmconf.getRestNodes() + ","
+                + vmconf.getMaprRestScheme() + "," + vmconf.getMaprRestPort()
+                + "," + vmconf.getRestProbeInterval() + ","
+                + vmconf.getRestConnectTimeout();
+        if (restNodeSelector != null
+                && !settings.equals(restNodeSelectorSettings)) {
+            LOG.info("REST node settings changed, node health is reset");
+            restNodeSelector.shutdown();
+            restNodeSelector = null;
+        }
+        if (restNodeSelector == null) {
+            restNodeSelector = new RestNodeSelector(vmconf.getRestNodes(),
+                    vmconf.getMaprRestScheme(), vmconf.getMaprRestPort(),
+                    vmconf.getRestProbeInterval(),
+                    vmconf.getRestConnectTimeout());
+            restNodeSelectorSettings = settings;
+        }
+        return restNodeSelector;
+    }
+
+    /**
+     * drop REST client so that it's re-created with current configuration;
+     * node selector and rate limiter are kept unless their settings changed
+     */
+    private static synchronized void resetRestClient() {
+        restClient = null;
+    }
+
+    /**
+     * (re)starts watching configuration directories if enabled and the VG
+     * configuration directory changed; they're polled if watching is
+     * disabled or not possible
+     */
+    private static void startConfigWatcher() {
+
+        if (configWatcher != null) {
+            if (vmconf.isConfigWatch() && configWatcher.getVgDir().equals(
+                    vmconf.getVgConfigDir().getAbsoluteFile())) {
+                return;
+            }
+            configWatcher.close();
+            configWatcher = null;
+        }
+
+        if (!vmconf.isConfigWatch()) {
+            LOG.info("configuration directories will be polled in every loop");
+            return;
+        }
+
+        final ConfigWatcher watcher = new ConfigWatcher(configDir,
+                vmconf.getVgConfigDir(), ConfigWatcher.SETTLE_DELAY,
+                new ConfigWatcher.Listener() {
+
+            @Override
+            public void changed(final String reason) {
+                triggerReconcile(reason);
+            }
+        });
+        if (watcher.start()) {
+            configWatcher = watcher;
+        }
+    }
+
+    /**
+     * check if configuration has been modified since it was loaded, as
+     * reported by the watcher, or by scanning the configuration directories
+     * if they're not watched
+     */
+    private static boolean hasConfigurationChanged() {
+
+        if (configWatcher == null) {
+            return vmconf.hasConfigurationExpired();
+        }
+
+        if (configWatcher.isFailed()) {
+            configWatcher.close();
+            configWatcher = null;
+            return true;
+        }
+
+        return configWatcher.consumeChange();
+    }
+
+    /**
+     * requests a reconcile as soon as possible
+     */
+    public static void triggerReconcile(final String reason) {
+        scheduler.trigger(reason);
     }
 
     /**
@@ -250,34 +430,20 @@ class VolumeManager {
     }
 
     /**
-     * this method is used to switch target REST node in case of failure for
-     * fault tolerance
+     * this method is called after a failed REST call for fault tolerance; the
+     * failure has already been recorded by the REST client, so the next
+     * endpoint selection avoids the failed node
      */
     public static void failoverRestNode() {
-        final String currentNode = getRestNode();
-        restNodeIndex = (restNodeIndex + 1) % vmconf.getRestNodes().size();
-        LOG.info("failed over REST node from " + currentNode + " to "
-                + getRestNode());
-    }
-
-    /**
-     * retrieve REST node name to target
-     */
-    private static String getRestNode() {
-        return vmconf.getRestNodes().get(restNodeIndex);
+        LOG.info("next REST call will target " + getRestEndPoint());
     }
 
     /**
-     * retrieve REST endpoint to target, in format 'https://host:port'
+     * retrieve endpoint of the healthiest REST node, in format
+     * 'https://host:port'
      */
     public static String getRestEndPoint() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("https://");
-        sb.append(getRestNode());
-        sb.append(":");
-        sb.append(vmconf.getMaprRestPort());
-
-        return sb.toString();
+        return getRestNodeSelector().select();
     }
 
     /**
@@ -287,48 +453,104 @@ class VolumeManager {
 
         LOG.info("running main application loop");
 
-        while (shutdown != true) {
+        final CredentialRefresher refresher = new CredentialRefresher(
+                new CredentialRefresher.Login() {
 
-            // instantiate volume manager and login
-            LOG.info("attempting kerberos login");
-            final VolumeManager volumeManager = new VolumeManager();
-            LoginContext lc = volumeManager.loginWithKerberos();
-
-            // sleep and re-iterate the loop if login failed
-            if (lc == null) {
-                doSleep();
-                continue;
+            @Override
+            public LoginContext login() {
+                LOG.info("attempting kerberos login");
+                return new VolumeManager().loginWithKerberos();
             }
+        }, vmconf.getKerberosRefreshFraction(),
+                CredentialRefresher.MIN_RETRY_DELAY);
 
-            // enter main loop
-            final Subject subject = lc.getSubject();
-            runPrivileged(subject);
+        // sleep and retry as long as the initial login fails
+        while (shutdown != true && !refresher.login()) {
+            doSleep();
         }
+
+        runPrivilegedLoop(refresher);
+        refresher.shutdown();
     }
 
     /**
-     * retrieve volume data using MapR REST interface
+     * retrieve volume data using MapR REST interface, one page of at most
+     * limit volumes starting at index start, the whole list if limit is 0.
+     * volumes are appended to the given list; returns the number of items in
+     * the response, or -1 on failure
      */
-    private static InputStream retrieveVolumeData() {
+    private static int retrieveVolumeData(int start, int limit,
+            final List<MaprVolume> volumes) {
 
         LOG.info("retrieving MapR volume data");
 
-        // build REST URL
-        InputStream is = null;
-        URL maprUrl = null;
-        try {
-            maprUrl = new URL(VolumeManager.getRestEndPoint() +
-                    "/rest/volume/list");
-        } catch (MalformedURLException e) {
-            LOG.error("malformed URL generated internally: " +
-                    VolumeManager.getRestEndPoint() + "/rest/volume/list");
-            return is;
+        // build REST URL, only volume name and mount directory are needed
+        final String endPoint = VolumeManager.getRestEndPoint();
+        final VolumeListRequestBuilder builder =
+                new VolumeListRequestBuilder(endPoint)
+                .column(MaprVolumeParser.VOLUME_NAME_KEY)
+                .column(MaprVolumeParser.VOLUME_MOUNTDIR_KEY)
+                .start(start)
+                .limit(limit);
+
+        if (vmconf.isRestListFilter()) {
+            builder.namePrefixes(vmconf.getVgMap().keySet());
         }
 
+        // whole volume ACEs are verified for VGs added or modified since the
+        // last successful reconcile, retrieve them in bulk along with the list
+        if (vmconf.hasChangedAceEnabledVolumeGroups()) {
+            builder.column(MaprVolumeParser.VOLUME_ACES_KEY);
+        }
+
+        final String url = builder.build();
+
+        // each response is parsed into its own page, so that a hedged call
+        // doesn't interfere with the primary one
+        final RestClient.ResponseHandler<VolumeListPage> handler =
+                new RestClient.ResponseHandler<VolumeListPage>() {
+
+            @Override
+            public VolumeListPage handle(final InputStream is) throws IOException {
+                final long start = System.nanoTime();
+                final FlightRecorderEvents.Event event = FlightRecorderEvents
+                        .begin(FlightRecorderEvents.Type.VOLUME_LIST_PARSE);
+                final VolumeListPage page = new VolumeListPage();
+                page.items = MaprVolumeParser.parse(is, page.volumes);
+                Metrics.timer(Metrics.VOLUME_LIST_PARSE).stop(start);
+                event.set("items", Integer.valueOf(page.items)).commit();
+                return page;
+            }
+        };
+
         // execute REST call
+        final FlightRecorderEvents.Event event =
+                FlightRecorderEvents.begin(FlightRecorderEvents.Type.VOLUME_LIST);
+        event.set("restNode", endPoint)
+                .set("offset", Integer.valueOf(start))
+                .set("limit", Integer.valueOf(limit));
+        int items = -1;
         try {
-            LOG.info("calling URL " + maprUrl.toString());
-            is = maprUrl.openConnection().getInputStream();
+            LOG.info("calling URL " + url);
+            final long startTime = System.nanoTime();
+            final long hedgeDelay = getHedgeDelay();
+            event.set("hedged", Boolean.valueOf(hedgeDelay >= 0));
+            final String hedgeEndPoint = hedgeDelay >= 0
+                    ? getRestNodeSelector().select(endPoint) : endPoint;
+
+            final VolumeListPage page;
+            if (hedgeEndPoint.equals(endPoint)) {
+                page = getRestClient().get(url, handler);
+            } else {
+                page = getRestClient().getHedged(url,
+                        hedgeEndPoint + url.substring(endPoint.length()),
+                        hedgeDelay, handler);
+            }
+            volumeListLatency.record((System.nanoTime() - startTime) / 1000000);
+            Metrics.timer(Metrics.VOLUME_LIST).stop(startTime);
+
+            volumes.addAll(page.volumes);
+            items = page.items;
             // reset REST failure counter
             restFailCount = 0;
 
@@ -343,28 +565,150 @@ class VolumeManager {
             }
         }
 
-        return is;
+        event.set("items", Integer.valueOf(Math.max(items, 0)))
+                .set("success", Boolean.valueOf(items >= 0))
+                .commit();
+        return items;
+    }
+
+    /**
+     * retrieve delay after which a volume list call is hedged, -1 if hedging
+     * is disabled or not enough calls have been measured yet
+     */
+    private static long getHedgeDelay() {
+        final double p = vmconf.getRestListHedgePercentile();
+        return p > 0 ? volumeListLatency.percentile(p) : -1;
+    }
+
+    /**
+     * volume list page parsed from a single response
+     */
+    private static final class VolumeListPage {
+
+        private final List<MaprVolume> volumes = new ArrayList<MaprVolume>();
+        private int items;
     }
 
     /**
-     * convert REST input JSON data into list of volumes currently listed on
-     * the MapR cluster
+     * retrieve the list of volumes currently listed on the MapR cluster page
+     * by page, hand each page over to volume action manager and execute the
+     * resulting volume actions once the list is complete; returns false if
+     * any step failed
      */
-    private static void processVolumeData(InputStream is) {
+    private static boolean processVolumeData() {
 
         LOG.info("processing MapR volume data");
 
-        try {
-            List<MaprVolume> volumes = MaprVolumeParser.parse(is);
-            LOG.info("retrieved " + volumes.size() +
-                    " volume items from REST input stream");
-            if (volumes.size() != 0) {
-                vam.prepare(vmconf, volumes);
-                vam.execute();
+        final long prepareStart = System.nanoTime();
+        final FlightRecorderEvents.Event prepareEvent =
+                FlightRecorderEvents.begin(FlightRecorderEvents.Type.PLAN);
+        if (!vam.prepareTargets(vmconf)) {
+            return false;
+        }
+        Metrics.timer(Metrics.PREPARE).stop(prepareStart);
+        commitPlan(prepareEvent, "targets", 0);
+        long deltaNanos = 0;
+
+        final int pageSize = vmconf.getRestListPageSize();
+        final List<MaprVolume> page = new ArrayList<MaprVolume>();
+        int start = 0;
+        int total = 0;
+
+        while (true) {
+
+            // the list may legitimately be empty when filtered by VG names,
+            // hence only the response status decides whether to proceed
+            page.clear();
+            final int items = retrieveVolumeData(start, pageSize, page);
+            if (items < 0) {
+                LOG.error("error while retrieving cluster volume data");
+                return false;
             }
-        } catch (IOException e) {
-            LOG.error("error when reading from input stream: " + e);
+
+            final long deltaStart = System.nanoTime();
+            final FlightRecorderEvents.Event deltaEvent =
+                    FlightRecorderEvents.begin(FlightRecorderEvents.Type.PLAN);
+            vam.addVolumes(page);
+            deltaNanos += System.nanoTime() - deltaStart;
+            commitPlan(deltaEvent, "delta", page.size());
+            total += page.size();
+
+            // last page reached
+            if (pageSize == 0 || items < pageSize) {
+                break;
+            }
+
+            start += pageSize;
         }
+
+        LOG.info("retrieved " + total + " volume items from REST input stream");
+
+        final long deltaStart = System.nanoTime();
+        final FlightRecorderEvents.Event deltaEvent =
+                FlightRecorderEvents.begin(FlightRecorderEvents.Type.PLAN);
+        vam.finishDeltaLists();
+        deltaNanos += System.nanoTime() - deltaStart;
+        commitPlan(deltaEvent, "delta", 0);
+        Metrics.timer(Metrics.DELTA_LISTS).record(deltaNanos);
+
+        final long executeStart = System.nanoTime();
+        final boolean success = vam.execute();
+        Metrics.timer(Metrics.EXECUTE).stop(executeStart);
+        return success;
+    }
+
+    /**
+     * records a planning step as JFR event, with the sizes of delta lists
+     * generated so far
+     */
+    private static void commitPlan(final FlightRecorderEvents.Event event,
+            final String phase, final int volumes) {
+        event.set("phase", phase)
+                .set("volumeGroups", Integer.valueOf(vmconf.getVgMap().size()))
+                .set("volumes", Integer.valueOf(volumes))
+                .set("creates", Integer.valueOf(vam.getCreateList().size()))
+                .set("purges", Integer.valueOf(vam.getPurgeList().size()))
+                .set("aceModifications", Integer.valueOf(vam.getAceModList().size()))
+                .commit();
+    }
+
+    /**
+     * reconciles cluster volumes once with the current configuration;
+     * returns false if any step failed
+     */
+    static boolean reconcile() {
+
+        final long start = System.nanoTime();
+        final FlightRecorderEvents.Event event =
+                FlightRecorderEvents.begin(FlightRecorderEvents.Type.RECONCILE);
+        final boolean success = processVolumeData();
+        Metrics.timer(Metrics.RECONCILE).stop(start);
+        event.set("success", Boolean.valueOf(success))
+                .set("creates", Integer.valueOf(vam.getCreateList().size()))
+                .set("purges", Integer.valueOf(vam.getPurgeList().size()))
+                .set("aceModifications", Integer.valueOf(vam.getAceModList().size()))
+                .commit();
+
+        if (success) {
+            Metrics.gauge(Metrics.LAST_RECONCILE).set(
+                    System.currentTimeMillis() / 1000);
+        } else {
+            Metrics.counter(Metrics.RECONCILE_FAILURES).inc();
+        }
+
+        // clear VG change flags, unless reconcile is repeated
+        if (success) {
+            vmconf.clearVgChanges();
+        }
+
+        return success;
+    }
+
+    /**
+     * retrieve volume action manager
+     */
+    static VolumeActionManager getVolumeActionManager() {
+        return vam;
     }
 
     /**
@@ -404,25 +748,6 @@ class VolumeManager {
         LOG.info("cleaning up ...");
     }
 
-    /**
-     * helper function to sleep for configured period of time
-     */
-    private static void doSleep(Date start) {
-
-        Date now = new Date(System.currentTimeMillis());
-
-        try {
-            long tts = vmconf.getLoopInterval() - (now.getTime() -
-                    start.getTime());
-            LOG.info("sleeping " + tts/1000 + " sec ...");
-            if (tts > 0) {
-                Thread.sleep(vmconf.getLoopInterval() );
-            }
-        } catch (InterruptedException ie) {
-            LOG.error("error in Thread.sleep() : " + ie.getMessage());
-        }
-    }
-
     /**
      * helper function to sleep for configured period of time
      */
@@ -440,59 +765,61 @@ class VolumeManager {
     }
 
     /**
-     * main loop function executed in kerberos login context
+     * reconciles volumes in the given kerberos login context
      */
-    private static void runPrivileged(final Subject subject) {
+    private static boolean reconcilePrivileged(final Subject subject) {
 
-        Subject.doAs(subject, new PrivilegedAction<Void>() {
+        return Subject.doAs(subject, new PrivilegedAction<Boolean>() {
 
             @Override
-            public Void run() {
-
-                runPrivilegedLoop(subject);
-                return null;
-
+            public Boolean run() {
+                return Boolean.valueOf(reconcile());
             }
-        });
+        }).booleanValue();
     }
 
     /**
-     * main loop body executed in kerberos login context
+     * main loop body, each reconcile is executed in the kerberos login
+     * context current at its start
      */
-    private static void runPrivilegedLoop(Subject subject) {
+    private static void runPrivilegedLoop(final CredentialRefresher refresher) {
 
         while (true) {
             if (shutdown) {
                 return;
             }
 
-            // check if kerberos ticket has expired
-            if (hasTicketExpired(subject, System.currentTimeMillis())) {
-                return;
+            // credentials are refreshed ahead of expiry in the background;
+            // if they expired nonetheless, e.g. because the KDC has been
+            // unreachable, don't reconcile until a refresh succeeded
+            final Subject subject = refresher.getSubject();
+            final boolean expired =
+                    hasTicketExpired(subject, System.currentTimeMillis());
+            if (expired) {
+                refresher.refreshNow();
             }
 
             // check if configuration has expired
-            if (vmconf.hasConfigurationExpired()) {
+            if (hasConfigurationChanged()) {
                 LOG.info("configuration will be reloaded");
                 reloadConf();
                 vam.setVMConf(vmconf);
+                startConfigWatcher();
+                scheduler.trigger("configuration reloaded");
             }
 
-            Date start = new Date(System.currentTimeMillis());
-            InputStream is = retrieveVolumeData();
-
-            if (is != null) {
-                processVolumeData(is);
-            } else {
-                LOG.error("error while retrieving cluster volume data");
+            if (!expired && scheduler.isDue(System.currentTimeMillis())) {
+                final boolean success = reconcilePrivileged(subject);
+                scheduler.reconciled(success, vmconf.getVgMap().values(),
+                        System.currentTimeMillis(),
+                        vmconf.getLoopFullInterval());
             }
 
-            // clear config reload flag
-            if (vmconf.hasConfigReloaded()) {
-                vmconf.clearConfigReloaded();
+            try {
+                scheduler.await(vmconf.getLoopInterval());
+            } catch (InterruptedException ie) {
+                LOG.error("error in Thread.sleep() : " + ie.getMessage());
             }
-
-            doSleep(start);
         }
     }
     /**
@@ -503,7 +830,6 @@ class VolumeManager {
         LOG.info("raising MapR alarm with REST call: " + MAPR_ALARM_KEY + ", description: [" + description + "]");
 
         // build REST URL
-        URL restUrl = null;
         StringBuilder url = new StringBuilder();
 
         try {
@@ -514,10 +840,6 @@ class VolumeManager {
             url.append(getHostName());
             url.append("&description=");
             url.append(URLEncoder.encode(description, "UTF-8"));
-            restUrl = new URL(url.toString());
-        } catch (MalformedURLException e) {
-            LOG.error("malformed URL generated internally: " + url.toString());
-            return;
         } catch (UnsupportedEncodingException uee) {
             LOG.error("Can not encode plain URL '" + url.toString() + "' into REST");
             return;
@@ -525,8 +847,8 @@ class VolumeManager {
 
         // execute REST call
         try {
-            LOG.info("calling URL " + restUrl.toString());
-            restUrl.openConnection().getInputStream();
+            LOG.info("calling URL " + url.toString());
+            getRestClient().get(url.toString());
         } catch (IOException e) {
             LOG.error("REST call error: " + e);
             // switch target REST node for next attempt
@@ -2,10 +2,15 @@ package volumes;
 
 import getent.Getent;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.io.File;
 import java.io.FilenameFilter;
 
@@ -17,9 +22,7 @@ import java.io.IOException;
 import java.util.Properties;
 
 import java.util.Calendar;
-
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.Date;
 
 import org.apache.hadoop.fs.permission.FsPermission;
 
@@ -58,14 +61,48 @@ class VolumeManagerConfiguration {
             "volume.mapr.rest.nodes";
     public static final String MAPR_REST_PORT_KEY =
             "volume.mapr.rest.port";
+    public static final String MAPR_REST_SCHEME_KEY =
+            "volume.mapr.rest.scheme";
     public static final String MAPR_LOOP_INTERVAL_KEY =
             "volume.loop.interval";
+    public static final String MAPR_LOOP_FULL_INTERVAL_KEY =
+            "volume.loop.full.interval";
     public static final String VG_CONFIG_DIR_KEY =
             "volume.groups.config.dir";
     public static final String FS_ACTION_ATTEMPTS =
             "volume.fs.action.attempts";
     public static final String REST_THROTTLING_INTERVAL =
             "volume.rest.throttling.interval";
+    public static final String REST_LIST_FILTER =
+            "volume.rest.list.filter";
+    public static final String REST_LIST_PAGE_SIZE =
+            "volume.rest.list.page.size";
+    public static final String REST_LIST_HEDGE_PERCENTILE =
+            "volume.rest.list.hedge.percentile";
+    public static final String REST_CONNECT_TIMEOUT =
+            "volume.rest.connect.timeout";
+    public static final String REST_READ_TIMEOUT =
+            "volume.rest.read.timeout";
+    public static final String REST_MAX_CONNECTIONS =
+            "volume.rest.max.connections";
+    public static final String REST_RATE_LIMIT =
+            "volume.rest.rate.limit";
+    public static final String REST_RATE_BURST =
+            "volume.rest.rate.burst";
+    public static final String REST_PROBE_INTERVAL =
+            "volume.rest.probe.interval";
+    public static final String ACTION_CONCURRENCY =
+            "volume.action.concurrency";
+    public static final String ACTION_RETRY_DELAY =
+            "volume.action.retry.delay";
+    public static final String METRICS_PORT =
+            "volume.metrics.port";
+    public static final String KERBEROS_REFRESH_FRACTION =
+            "volume.kerberos.refresh.fraction";
+    public static final String CONFIG_WATCH =
+            "volume.config.watch";
+    public static final String GETENT_MODE =
+            "volume.getent.mode";
 
     /**
      * Volume group configuration properties
@@ -110,11 +147,21 @@ class VolumeManagerConfiguration {
      */
     private String maprRestPort;
 
+    /**
+     * MapR REST URL scheme
+     */
+    private String maprRestScheme = "https";
+
     /**
      * main loop sleep interval
      */
     private long loopInterval;
 
+    /**
+     * maximum time between two full reconciles, 0 for every loop interval
+     */
+    private long loopFullInterval;
+
     /**
      * configuration directory from where configuration has been loaded
      */
@@ -135,11 +182,138 @@ class VolumeManagerConfiguration {
      */
     private long restThrottlingInterval;
 
+    /**
+     * filter volume list by volume group names on the server side
+     */
+    private boolean restListFilter;
+
+    /**
+     * number of volumes retrieved per volume list call, 0 for all at once
+     */
+    private int restListPageSize;
+
+    /**
+     * latency percentile after which a volume list call is hedged, 0 disables
+     * hedging
+     */
+    private double restListHedgePercentile;
+
+    /**
+     * REST connect timeout in milliseconds
+     */
+    private int restConnectTimeout;
+
+    /**
+     * REST read timeout in milliseconds
+     */
+    private int restReadTimeout;
+
+    /**
+     * maximum number of pooled REST connections per node
+     */
+    private int restMaxConnections;
+
+    /**
+     * maximum REST call rate in calls per second, 0 for unlimited
+     */
+    private double restRateLimit;
+
+    /**
+     * number of REST calls passing the rate limiter without delay
+     */
+    private int restRateBurst;
+
+    /**
+     * interval in milliseconds of REST node health probes, 0 disables them
+     */
+    private long restProbeInterval;
+
+    /**
+     * number of volume actions executed concurrently
+     */
+    private int actionConcurrency;
+
+    /**
+     * delay before the first retry of a failed volume action step
+     */
+    private long actionRetryDelay;
+
+    /**
+     * loopback port of the metrics endpoint, 0 if disabled
+     */
+    private int metricsPort;
+
+    /**
+     * fraction of the Kerberos ticket lifetime after which credentials are
+     * refreshed
+     */
+    private double kerberosRefreshFraction;
+
+    /**
+     * indicates whether configuration directories are watched for changes
+     * rather than scanned in every loop
+     */
+    private boolean configWatch;
+
+    /**
+     * getent lookup mode validating VG owners and groups
+     */
+    private Getent.Mode getentMode = Getent.Mode.TARGETED;
+
     /**
      * map of volume group configuration elements
      */
     private Map<String, VolumeGroupConfiguration> vgMap;
 
+    /**
+     * VG file as loaded, so that unchanged files aren't parsed again on
+     * reload
+     */
+    private static final class VgFile {
+
+        private final long lastModified;
+        private final long length;
+
+        /**
+         * VG loaded from the file, null if the file is invalid
+         */
+        private final VolumeGroupConfiguration vgc;
+
+        private VgFile(final File file, final VolumeGroupConfiguration vgc) {
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.vgc = vgc;
+        }
+
+        /**
+         * check if the file is unchanged since it was loaded
+         */
+        private boolean isCurrent(final File file) {
+            return file.lastModified() == lastModified
+                    && file.length() == length;
+        }
+    }
+
+    /**
+     * number of VG files loaded by a single fork-join task
+     */
+    private static final int VG_LOAD_BATCH = 16;
+
+    /**
+     * pool loading VG files in parallel, created on first use
+     */
+    private static ForkJoinPool vgLoadPool = null;
+
+    /**
+     * VG files loaded by path
+     */
+    private Map<String, VgFile> vgFiles = new HashMap<String, VgFile>();
+
+    /**
+     * names of VGs added or modified and not yet reconciled successfully
+     */
+    private Set<String> changedVgs = new HashSet<String>();
+
     /**
      * map of supported calendar intervals
      */
@@ -157,27 +331,47 @@ class VolumeManagerConfiguration {
     private static long lastModified = 0;
 
     /**
-     * The Java wrapper for the Unix getent command.
+     * caching period of getent entries in seconds
      */
-    private final Getent getent = new Getent(120);
+    private static final int GETENT_CACHING_PERIOD = 120;
 
     /**
-     * config reload indicator
+     * The Java wrapper for the Unix getent command, shared by configurations
+     * so that entries remain cached across reloads
      */
-    private boolean hasConfigReloaded;
+    private static Getent sharedGetent = null;
+
+    /**
+     * The Java wrapper for the Unix getent command.
+     */
+    private final Getent getent;
 
     /**
      * Constructor
      */
     VolumeManagerConfiguration(File confDir) {
+        this(confDir, null);
+    }
+
+    /**
+     * Constructor reloading configuration: VG files unchanged since the
+     * previous configuration was loaded are not parsed again, and only VGs
+     * added or modified since then are flagged as changed (along with those
+     * still flagged in the previous configuration)
+     *
+     * @param previous
+     *            previous configuration, null to load all VGs as changed
+     */
+    VolumeManagerConfiguration(File confDir,
+            VolumeManagerConfiguration previous) {
 
         this.isValid = true;
         populateCalendarIntervalMap();
         this.conf = VolumeManagerConfiguration.loadConfiguration(confDir);
         parseConfiguration(this.conf);
+        this.getent = getSharedGetent(getentMode);
         // load all VGs to be managed
-        loadVolumeGroups();
-        this.hasConfigReloaded = true;
+        loadVolumeGroups(previous);
     }
 
     /**
@@ -236,6 +430,20 @@ class VolumeManagerConfiguration {
         return maprRestPort;
     }
 
+    /**
+     * set MapR REST URL scheme
+     */
+    public void setMaprRestScheme(String scheme) {
+        this.maprRestScheme = scheme;
+    }
+
+    /**
+     * retrieve MapR REST URL scheme
+     */
+    public String getMaprRestScheme() {
+        return maprRestScheme;
+    }
+
     /**
      * set applicaiton main loop interval
      */
@@ -250,6 +458,21 @@ class VolumeManagerConfiguration {
         return loopInterval;
     }
 
+    /**
+     * set maximum time between two full reconciles, 0 for every loop interval
+     */
+    public void setLoopFullInterval(long msec) {
+        this.loopFullInterval = msec;
+    }
+
+    /**
+     * retrieve maximum time between two full reconciles, 0 for every loop
+     * interval
+     */
+    public long getLoopFullInterval() {
+        return loopFullInterval;
+    }
+
     /**
      * set directory containing volume manager configuration
      */
@@ -306,6 +529,223 @@ class VolumeManagerConfiguration {
         return restThrottlingInterval;
     }
 
+    /**
+     * set latency percentile after which a volume list call is hedged, 0
+     * disables hedging
+     */
+    public void setRestListHedgePercentile(double p) {
+        this.restListHedgePercentile = p;
+    }
+
+    /**
+     * get latency percentile after which a volume list call is hedged, 0
+     * disables hedging
+     */
+    public double getRestListHedgePercentile() {
+        return restListHedgePercentile;
+    }
+
+    /**
+     * set maximum REST call rate in calls per second, 0 for unlimited
+     */
+    public void setRestRateLimit(double r) {
+        this.restRateLimit = r;
+    }
+
+    /**
+     * get maximum REST call rate in calls per second, 0 for unlimited
+     */
+    public double getRestRateLimit() {
+        return restRateLimit;
+    }
+
+    /**
+     * set number of REST calls passing the rate limiter without delay
+     */
+    public void setRestRateBurst(int b) {
+        this.restRateBurst = b;
+    }
+
+    /**
+     * get number of REST calls passing the rate limiter without delay
+     */
+    public int getRestRateBurst() {
+        return restRateBurst;
+    }
+
+    /**
+     * set interval of REST node health probes, 0 disables them
+     */
+    public void setRestProbeInterval(long i) {
+        this.restProbeInterval = i;
+    }
+
+    /**
+     * get interval of REST node health probes, 0 disables them
+     */
+    public long getRestProbeInterval() {
+        return restProbeInterval;
+    }
+
+    /**
+     * enable/disable server-side volume list filtering by VG names
+     */
+    public void setRestListFilter(boolean enabled) {
+        this.restListFilter = enabled;
+    }
+
+    /**
+     * check if volume list is to be filtered by VG names on the server side
+     */
+    public boolean isRestListFilter() {
+        return restListFilter;
+    }
+
+    /**
+     * set number of volumes retrieved per volume list call
+     */
+    public void setRestListPageSize(int size) {
+        this.restListPageSize = size;
+    }
+
+    /**
+     * retrieve number of volumes retrieved per volume list call, 0 if the
+     * whole list is retrieved at once
+     */
+    public int getRestListPageSize() {
+        return restListPageSize;
+    }
+
+    /**
+     * set REST connect timeout in milliseconds
+     */
+    public void setRestConnectTimeout(int msec) {
+        this.restConnectTimeout = msec;
+    }
+
+    /**
+     * retrieve REST connect timeout in milliseconds
+     */
+    public int getRestConnectTimeout() {
+        return restConnectTimeout;
+    }
+
+    /**
+     * set REST read timeout in milliseconds
+     */
+    public void setRestReadTimeout(int msec) {
+        this.restReadTimeout = msec;
+    }
+
+    /**
+     * retrieve REST read timeout in milliseconds
+     */
+    public int getRestReadTimeout() {
+        return restReadTimeout;
+    }
+
+    /**
+     * set maximum number of pooled REST connections per node
+     */
+    public void setRestMaxConnections(int max) {
+        this.restMaxConnections = max;
+    }
+
+    /**
+     * retrieve maximum number of pooled REST connections per node
+     */
+    public int getRestMaxConnections() {
+        return restMaxConnections;
+    }
+
+    /**
+     * set number of volume actions executed concurrently
+     */
+    public void setActionConcurrency(int c) {
+        this.actionConcurrency = c;
+    }
+
+    /**
+     * retrieve number of volume actions executed concurrently
+     */
+    public int getActionConcurrency() {
+        return actionConcurrency;
+    }
+
+    /**
+     * set delay before the first retry of a failed volume action step
+     */
+    public void setActionRetryDelay(long msec) {
+        this.actionRetryDelay = msec;
+    }
+
+    /**
+     * retrieve delay before the first retry of a failed volume action step,
+     * subsequent retries back off exponentially
+     */
+    public long getActionRetryDelay() {
+        return actionRetryDelay;
+    }
+
+    /**
+     * set loopback port of the metrics endpoint
+     */
+    public void setMetricsPort(int port) {
+        this.metricsPort = port;
+    }
+
+    /**
+     * retrieve loopback port of the metrics endpoint, 0 if disabled
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * set fraction of the Kerberos ticket lifetime after which credentials
+     * are refreshed
+     */
+    public void setKerberosRefreshFraction(double fraction) {
+        this.kerberosRefreshFraction = fraction;
+    }
+
+    /**
+     * retrieve fraction of the Kerberos ticket lifetime after which
+     * credentials are refreshed
+     */
+    public double getKerberosRefreshFraction() {
+        return kerberosRefreshFraction;
+    }
+
+    /**
+     * enable or disable watching of configuration directories
+     */
+    public void setConfigWatch(boolean enabled) {
+        this.configWatch = enabled;
+    }
+
+    /**
+     * check if configuration directories are watched for changes rather
+     * than scanned in every loop
+     */
+    public boolean isConfigWatch() {
+        return configWatch;
+    }
+
+    /**
+     * set getent lookup mode validating VG owners and groups
+     */
+    public void setGetentMode(Getent.Mode mode) {
+        this.getentMode = mode;
+    }
+
+    /**
+     * retrieve getent lookup mode validating VG owners and groups
+     */
+    public Getent.Mode getGetentMode() {
+        return getentMode;
+    }
+
     /**
      * retrieve the map of volume group configration elements
      */
@@ -314,17 +754,52 @@ class VolumeManagerConfiguration {
     }
 
     /**
-     * get indicator of config reload event
+     * check if at least one volume group has ACEs enabled
+     */
+    public boolean hasAceEnabledVolumeGroups() {
+        for (VolumeGroupConfiguration vgc : vgMap.values()) {
+            if (vgc.isAceEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * check if the given VG has been added or modified and not reconciled
+     * successfully since
      */
-    public boolean hasConfigReloaded() {
-        return this.hasConfigReloaded;
+    public boolean hasVgChanged(String name) {
+        return changedVgs.contains(name);
     }
 
     /**
-     * set indicator of config reload event
+     * check if any ACE-enabled VG has been added or modified and not
+     * reconciled successfully since
      */
-    public void clearConfigReloaded() {
-        this.hasConfigReloaded = false;
+    public boolean hasChangedAceEnabledVolumeGroups() {
+        for (String name : changedVgs) {
+            final VolumeGroupConfiguration vgc = vgMap.get(name);
+            if (vgc != null && vgc.isAceEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * retrieve names of VGs added or modified and not reconciled
+     * successfully since
+     */
+    public Set<String> getChangedVgs() {
+        return Collections.unmodifiableSet(changedVgs);
+    }
+
+    /**
+     * clear change flags of all VGs after a successful reconcile
+     */
+    public void clearVgChanges() {
+        changedVgs.clear();
     }
 
     /**
@@ -416,6 +891,15 @@ class VolumeManagerConfiguration {
         // REST port
         setMaprRestPort(conf.get(MAPR_REST_PORT_KEY, "8443"));
 
+        // REST scheme, plain http is meant for local REST simulators only
+        final String scheme = conf.get(MAPR_REST_SCHEME_KEY, "https");
+        if (!"https".equals(scheme) && !"http".equals(scheme)) {
+            LOG.warn("unsupported REST scheme " + scheme + ", using https");
+            setMaprRestScheme("https");
+        } else {
+            setMaprRestScheme(scheme);
+        }
+
         // main loop sleep interval
         final String interval = conf.get(MAPR_LOOP_INTERVAL_KEY, "60000");
         long i = Long.parseLong(interval);
@@ -426,6 +910,15 @@ class VolumeManagerConfiguration {
         }
         setLoopInterval(i);
 
+        // full reconcile interval, 0 reconciles in every loop
+        final String fullInterval = conf.get(MAPR_LOOP_FULL_INTERVAL_KEY, "3600000");
+        long fi = Long.parseLong(fullInterval);
+        if (fi < 0) {
+            LOG.warn(MAPR_LOOP_FULL_INTERVAL_KEY + " can't be negative number. Volumes will be reconciled in every loop.");
+            fi = 0;
+        }
+        setLoopFullInterval(fi);
+
         // volume groups config directory
         final String vgconfigdir = conf.get(VG_CONFIG_DIR_KEY,
                 "/opt/mapr/volume-manager/conf/vg.d");
@@ -448,13 +941,140 @@ class VolumeManagerConfiguration {
             intvl = 0;
         }
         setRestThrottlingInterval(intvl);
+
+        // REST rate limit, derived from the legacy throttling interval unless
+        // configured explicitly
+        final String defaultRate = intvl > 0
+                ? Double.toString(1000.0 / intvl) : "20";
+        double rate = Double.parseDouble(conf.get(REST_RATE_LIMIT, defaultRate));
+        if (rate < 0) {
+            LOG.warn(REST_RATE_LIMIT + " can't be negative number. Rate limiting will be disabled.");
+            rate = 0;
+        }
+        setRestRateLimit(rate);
+
+        int burst = conf.getInt(REST_RATE_BURST, intvl > 0 ? 1 : 10);
+        if (burst < 1) {
+            LOG.info("REST rate burst configured too small, setting minimum of 1");
+            burst = 1;
+        }
+        setRestRateBurst(burst);
+
+        // server-side volume list filtering
+        final String filter = conf.get(REST_LIST_FILTER, "true");
+        setRestListFilter("true".equals(filter) || "yes".equals(filter));
+
+        // volume list page size
+        int pageSize = conf.getInt(REST_LIST_PAGE_SIZE, 0);
+        if (pageSize < 0) {
+            LOG.warn(REST_LIST_PAGE_SIZE + " can't be negative number. Paging will be disabled.");
+            pageSize = 0;
+        }
+        setRestListPageSize(pageSize);
+
+        // volume list hedging percentile
+        double hedge = Double.parseDouble(conf.get(REST_LIST_HEDGE_PERCENTILE, "0"));
+        if (hedge < 0 || hedge >= 100) {
+            LOG.warn(REST_LIST_HEDGE_PERCENTILE + " must be between 0 and 100. Hedging will be disabled.");
+            hedge = 0;
+        }
+        setRestListHedgePercentile(hedge);
+
+        // REST timeouts, 0 means infinite
+        int connectTimeout = conf.getInt(REST_CONNECT_TIMEOUT, 10000);
+        if (connectTimeout < 0) {
+            LOG.warn(REST_CONNECT_TIMEOUT + " can't be negative number. Timeout will be infinite.");
+            connectTimeout = 0;
+        }
+        setRestConnectTimeout(connectTimeout);
+
+        int readTimeout = conf.getInt(REST_READ_TIMEOUT, 120000);
+        if (readTimeout < 0) {
+            LOG.warn(REST_READ_TIMEOUT + " can't be negative number. Timeout will be infinite.");
+            readTimeout = 0;
+        }
+        setRestReadTimeout(readTimeout);
+
+        // REST connection pool size
+        int maxConnections = conf.getInt(REST_MAX_CONNECTIONS, 8);
+        if (maxConnections < 1) {
+            LOG.info("number of REST connections configured too small, setting minimum of 1");
+            maxConnections = 1;
+        }
+        setRestMaxConnections(maxConnections);
+
+        // REST node health probe interval
+        final String probeInterval = conf.get(REST_PROBE_INTERVAL, "30000");
+        long pi = Long.parseLong(probeInterval);
+        if (pi < 0) {
+            LOG.warn(REST_PROBE_INTERVAL + " can't be negative number. Health probes will be disabled.");
+            pi = 0;
+        }
+        setRestProbeInterval(pi);
+
+        // volume action concurrency
+        int concurrency = conf.getInt(ACTION_CONCURRENCY, 4);
+        if (concurrency < 1) {
+            LOG.info("volume action concurrency configured too small, setting minimum of 1");
+            concurrency = 1;
+        }
+        setActionConcurrency(concurrency);
+
+        // retry delay of failed volume action steps
+        final String retryDelay = conf.get(ACTION_RETRY_DELAY, "5000");
+        long rd = Long.parseLong(retryDelay);
+        if (rd < 0) {
+            LOG.warn(ACTION_RETRY_DELAY + " can't be negative number. Retries will not be delayed.");
+            rd = 0;
+        }
+        setActionRetryDelay(rd);
+
+        // metrics endpoint port
+        int metricsPort = conf.getInt(METRICS_PORT, 0);
+        if (metricsPort < 0 || metricsPort > 65535) {
+            LOG.warn(METRICS_PORT + " must be a port number. Metrics endpoint will be disabled.");
+            metricsPort = 0;
+        }
+        setMetricsPort(metricsPort);
+
+        // Kerberos credential refresh
+        double refresh = Double.parseDouble(conf.get(KERBEROS_REFRESH_FRACTION, "0.8"));
+        if (refresh <= 0 || refresh > 1) {
+            LOG.warn(KERBEROS_REFRESH_FRACTION + " must be greater than 0 and at most 1. Using 0.8.");
+            refresh = 0.8;
+        }
+        setKerberosRefreshFraction(refresh);
+
+        // watching of configuration directories, polled otherwise
+        final String watch = conf.get(CONFIG_WATCH, "true");
+        setConfigWatch("true".equals(watch) || "yes".equals(watch));
+
+        // getent lookup of VG owners and groups
+        final String getentMode = conf.get(GETENT_MODE, "targeted");
+        if ("full".equals(getentMode)) {
+            setGetentMode(Getent.Mode.FULL);
+        } else {
+            if (!"targeted".equals(getentMode)) {
+                LOG.warn(GETENT_MODE + " must be full or targeted. Using targeted.");
+            }
+            setGetentMode(Getent.Mode.TARGETED);
+        }
     }
 
     /**
      * loads volumes groups by iterating through each file of respective
-     * configuration directory
+     * configuration directory, all VGs are flagged as changed
      */
     public void loadVolumeGroups() {
+        loadVolumeGroups(null);
+    }
+
+    /**
+     * loads volumes groups by iterating through each file of respective
+     * configuration directory; files unchanged since they were loaded into
+     * the given previous configuration are not parsed again
+     */
+    void loadVolumeGroups(VolumeManagerConfiguration previous) {
 
         LOG.info("loading volume groups from directory " +
                 getVgConfigDir().getPath());
@@ -472,62 +1092,254 @@ class VolumeManagerConfiguration {
                     " files to load in VG config directory");
         }
 
-        // iterate through each file and load volume group configuration from it
+        // files loaded previously, only if the directory is the same
+        final Map<String, VgFile> loaded = previous != null
+                && getVgConfigDir().equals(previous.getVgConfigDir())
+                ? previous.vgFiles : Collections.<String, VgFile>emptyMap();
+
+        // load and validate files concurrently, each into its own slot
+        final VgFile[] results = new VgFile[files.length];
+        final VgLoadTask task = new VgLoadTask(files, loaded, results, 0,
+                files.length);
+        if (files.length <= VG_LOAD_BATCH) {
+            task.compute();
+        } else {
+            getVgLoadPool().invoke(task);
+        }
+
+        // merge in file order, the first of VGs with the same name wins
         vgMap = new HashMap<String, VolumeGroupConfiguration>();
+        vgFiles = new HashMap<String, VgFile>();
+        int parsed = 0;
 
-        for (File file : files) {
+        for (int i = 0; i < files.length; i++) {
 
-            LOG.info("loading volume from from file " + file.getPath());
+            final File file = files[i];
+            final VgFile vgFile = results[i];
 
             // preserve last modification time
-            if (file.lastModified() > lastModified) {
-                this.lastModified = file.lastModified();
+            final long modified = vgFile != null
+                    ? vgFile.lastModified : file.lastModified();
+            if (modified > lastModified) {
+                VolumeManagerConfiguration.lastModified = modified;
             }
 
-            try {
-                if (file.isFile()) {
-                    VolumeGroupConfiguration vgc = null;
-                    vgc = loadVolumeGroupConfiguration(file);
-                    if (vgc != null) {
-                        if (vgMap.get(vgc.getName()) != null) {
-                            LOG.warn("duplicate vg name in file " +
-                                    file.getPath() + ", discarding this vg");
-                        } else {
-                            vgMap.put(vgc.getName(), vgc);
-                            LOG.info("loaded vg '" + vgc.getName() +
-                                    "' from file " + file.getPath());
-                        }
-                    }
+            if (vgFile == null) {
+                continue;
+            }
+            if (vgFile != loaded.get(file.getPath())) {
+                parsed++;
+            }
+            vgFiles.put(file.getPath(), vgFile);
+
+            final VolumeGroupConfiguration vgc = vgFile.vgc;
+            if (vgc != null) {
+                if (vgMap.get(vgc.getName()) != null) {
+                    LOG.warn("duplicate vg name in file " +
+                            file.getPath() + ", discarding this vg");
                 } else {
+                    vgMap.put(vgc.getName(), vgc);
+                    LOG.info("loaded vg '" + vgc.getName() +
+                            "' from file " + file.getPath());
+                }
+            }
+        }
+
+        // flag VGs added or modified, and those not reconciled yet
+        changedVgs = new HashSet<String>();
+        for (VolumeGroupConfiguration vgc : vgMap.values()) {
+            final VolumeGroupConfiguration prev =
+                    previous != null && previous.vgMap != null
+                    ? previous.vgMap.get(vgc.getName()) : null;
+            if (prev == null || !prev.equals(vgc)
+                    || previous.changedVgs.contains(vgc.getName())) {
+                changedVgs.add(vgc.getName());
+            }
+        }
+
+        LOG.info("loaded " + vgMap.size() + " volume groups from " +
+                getVgConfigDir().getPath() + ", " + parsed + " of "
+                + files.length + " files parsed, " + changedVgs.size()
+                + " volume groups changed");
+    }
+
+    /**
+     * retrieve getent wrapper of the given mode shared by configurations
+     */
+    private static synchronized Getent getSharedGetent(Getent.Mode mode) {
+        if (sharedGetent == null || sharedGetent.getMode() != mode) {
+            if (sharedGetent != null) {
+                sharedGetent.shutdown();
+            }
+            sharedGetent = new Getent(GETENT_CACHING_PERIOD, mode);
+        }
+        return sharedGetent;
+    }
+
+    /**
+     * retrieve pool loading VG files in parallel
+     */
+    private static synchronized ForkJoinPool getVgLoadPool() {
+        if (vgLoadPool == null) {
+            vgLoadPool = new ForkJoinPool(
+                    Runtime.getRuntime().availableProcessors());
+        }
+        return vgLoadPool;
+    }
+
+    /**
+     * Task loading a range of VG files, each into the respective element of
+     * the result array; ranges larger than VG_LOAD_BATCH are split.
+     */
+    private final class VgLoadTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File[] files;
+        private final Map<String, VgFile> loaded;
+        private final VgFile[] results;
+        private final int from;
+        private final int to;
+
+        private VgLoadTask(final File[] files,
+                final Map<String, VgFile> loaded, final VgFile[] results,
+                final int from, final int to) {
+            this.files = files;
+            this.loaded = loaded;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > VG_LOAD_BATCH) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new VgLoadTask(files, loaded, results, from, mid),
+                        new VgLoadTask(files, loaded, results, mid, to));
+                return;
+            }
+
+            // read files first, so that owners and groups of the batch are
+            // retrieved by a single getent lookup each; files unchanged since
+            // loaded previously are reused, unless they were invalid, but
+            // their owner and group are validated again
+            final Properties[] props = new Properties[to - from];
+            final Set<String> owners = new HashSet<String>();
+            final Set<String> groups = new HashSet<String>();
+            for (int i = from; i < to; i++) {
+
+                final File file = files[i];
+                if (!file.isFile()) {
                     LOG.warn("skipping " + file.getPath() +
                             " as it is not a file");
+                    continue;
+                }
+
+                final VgFile vgFile = loaded.get(file.getPath());
+                if (vgFile != null && vgFile.vgc != null
+                        && vgFile.isCurrent(file)) {
+                    results[i] = vgFile;
+                    owners.add(vgFile.vgc.getOwner());
+                    groups.add(vgFile.vgc.getGroup());
+                    continue;
+                }
+
+                LOG.info("loading volume from from file " + file.getPath());
+                Properties prop;
+                try {
+                    prop = loadVgProperties(file);
+                } catch (Exception se) {
+                    // e.g. malformed unicode escape
+                    LOG.warn("unable to load file " + file.getPath()
+                            + " : " + se);
+                    prop = null;
+                }
+                if (prop == null) {
+                    results[i] = new VgFile(file, null);
+                    continue;
+                }
+                props[i - from] = prop;
+                if (prop.getProperty(VG_PROP_OWNER) != null) {
+                    owners.add(prop.getProperty(VG_PROP_OWNER));
+                }
+                if (prop.getProperty(VG_PROP_GROUP) != null) {
+                    groups.add(prop.getProperty(VG_PROP_GROUP));
+                }
+            }
+
+            getent.lookupUsers(owners);
+            getent.lookupGroups(groups);
+
+            for (int i = from; i < to; i++) {
+                if (props[i - from] == null) {
+                    if (results[i] != null && results[i].vgc != null
+                            && !isOwnerValid(results[i].vgc)) {
+                        results[i] = new VgFile(files[i], null);
+                    }
+                    continue;
+                }
+                try {
+                    results[i] = new VgFile(files[i],
+                            loadVolumeGroupConfiguration(props[i - from]));
+                } catch (Exception se) {
+                    LOG.warn("unable to load file " + files[i].getPath()
+                            + " : " + se);
                 }
-            } catch (Exception se) {
-                LOG.warn("unable to load file " + file.getPath() + " : " + se);
             }
         }
+    }
 
-        LOG.info("loaded " + vgMap.size() + " volume groups from " +
-                getVgConfigDir().getPath());
+    /**
+     * check if owner and group of a VG loaded previously still exist
+     */
+    private boolean isOwnerValid(final VolumeGroupConfiguration vgc) {
+
+        if (this.getent.getUserByName(vgc.getOwner()) == null) {
+            LOG.error("unable to retrieve user '" + vgc.getOwner() +
+                    "' of vg '" + vgc.getName() +
+                    "' using getent - does user exist?");
+            return false;
+        }
+
+        if (this.getent.getGroupByName(vgc.getGroup()) == null) {
+            LOG.error("unable to retrieve group '" + vgc.getGroup() +
+                    "' of vg '" + vgc.getName() +
+                    "' using getent - does group exist?");
+            return false;
+        }
+
+        return true;
     }
 
     /**
-     * load volume group configuration from properties file
+     * load properties from VG file, null if it can't be read
      */
-    private VolumeGroupConfiguration loadVolumeGroupConfiguration(File file) {
+    private static Properties loadVgProperties(File file) {
 
         LOG.info("loading VG properties from file : " + file);
 
-        // load properties from the config file
         Properties prop = new Properties();
         try {
             FileInputStream fis = new FileInputStream(file);
-            prop.load(fis);
-            fis.close();
+            try {
+                prop.load(fis);
+            } finally {
+                fis.close();
+            }
         } catch (IOException e) {
             LOG.error("error when loading properties: " + e);
             return null;
         }
+        return prop;
+    }
+
+    /**
+     * load volume group configuration from properties of a VG file
+     */
+    private VolumeGroupConfiguration loadVolumeGroupConfiguration(
+            Properties prop) {
 
         /**
          * following section validates and sets configuration properties based
@@ -549,10 +1361,9 @@ class VolumeManagerConfiguration {
             return null;
         }
 
-        // check validity of path format
+        // check validity of path format, compiling it once for all volumes
         try {
-            DateFormat sdf = new SimpleDateFormat(vgc.getPathFormat());
-            sdf.format(System.currentTimeMillis());
+            vgc.getPathFormatter().format(new Date());
             LOG.debug("pathformat validated");
         } catch (IllegalArgumentException iae) {
             logInvalidPropertyWithException(VG_PROP_PATHFORMAT,
@@ -854,7 +1665,12 @@ class VolumeManagerConfiguration {
 
         // retrieve list of all files in configuration directory
         final File[] files = getVgConfigDir().listFiles();
-        
+        if (files == null) {
+            LOG.warn("vg config directory " + getVgConfigDir().getPath() +
+                    " doesn't exist");
+            return false;
+        }
+
         for (File file : files) {
             if (file.lastModified() > lastModified) {
                 LOG.info("Configuration file is new or updated: " + file.getPath());
@@ -22,6 +22,7 @@ LIB_DIR=$BASE_DIR/lib
 LOGS_DIR=$BASE_DIR/logs
 CONF_DIR=$BASE_DIR/conf
 PID_FILE=/tmp/volume-manager.pid
+JFR_FILE=$LOGS_DIR/volume-manager.jfr
 
 # Determine MapR home
 if [ -z ${MAPR_HOME+x} ]; then
@@ -50,8 +51,14 @@ case $ACTION in
 		LOG_FILE=$LOGS_DIR/volume-manager.log
 		OUT_FILE=$LOGS_DIR/volume-manager.out
 
+		# Continuous flight recording, kept on disk for the last 24 hours
+		JFR_OPTS=
+		if [ "$VOLUME_MANAGER_JFR" = "true" ]; then
+			JFR_OPTS="-XX:StartFlightRecording=name=volume-manager,settings=default,disk=true,maxage=24h,maxsize=250m,dumponexit=true,filename=$JFR_FILE"
+		fi
+
 		# Start the volume manager
-		$JAVA_HOME/bin/java -Dlog.file="$LOG_FILE" -Dlog4j.configuration=file://"$CONF_DIR"/log4j.properties -Djavax.net.ssl.trustStore=$MAPR_HOME/conf/ssl_truststore -Xms128m -Xmx128m -Djava.library.path=/opt/mapr/hadoop/hadoop-2.7.0/lib/native -classpath "$CLASSPATH" volumes.VolumeManager --configDir "$CONF_DIR"  > "$OUT_FILE" 2>&1 < /dev/null &
+		$JAVA_HOME/bin/java -Dlog.file="$LOG_FILE" -Dlog4j.configuration=file://"$CONF_DIR"/log4j.properties -Djavax.net.ssl.trustStore=$MAPR_HOME/conf/ssl_truststore -Xms128m -Xmx128m $JFR_OPTS -Djava.library.path=/opt/mapr/hadoop/hadoop-2.7.0/lib/native -classpath "$CLASSPATH" volumes.VolumeManager --configDir "$CONF_DIR"  > "$OUT_FILE" 2>&1 < /dev/null &
 		PID=$!
 		echo $PID > $PID_FILE
 		echo "Started Volume Manager with PID $PID"
@@ -86,8 +93,38 @@ case $ACTION in
 		exit 1
 	;;
 
+	(reconcile)
+		# Picked up by the main loop at its next tick
+		touch "$CONF_DIR"/reconcile.trigger
+		if [ $? -ne 0 ]; then
+			echo "Unable to trigger reconcile of volumes"
+			exit 1
+		fi
+		echo "Triggered reconcile of volumes"
+	;;
+
+	(jfrdump)
+		# Dump the continuous flight recording of the running process
+		if [ -f "$PID_FILE" ]; then
+			PID=`cat "$PID_FILE"`
+			if [ -z "$JAVA_HOME" ] && [ -f $MAPR_HOME/conf/env.sh ]; then
+				. $MAPR_HOME/conf/env.sh
+			fi
+			DUMP_FILE=$LOGS_DIR/volume-manager-`date +%Y%m%d-%H%M%S`.jfr
+			$JAVA_HOME/bin/jcmd $PID JFR.dump name=volume-manager filename="$DUMP_FILE" > /dev/null 2>&1
+			if [ $? -eq 0 ]; then
+				echo "Dumped flight recording to $DUMP_FILE"
+				exit 0
+			fi
+			echo "Unable to dump flight recording of Volume Manager with PID $PID"
+			exit 1
+		fi
+		echo "Volume Manager is not running"
+		exit 1
+	;;
+
 	(*)
-		echo "Please specify either start, stop, or status"
+		echo "Please specify either start, stop, status, reconcile, or jfrdump"
 		exit 1
 	;;
 esac
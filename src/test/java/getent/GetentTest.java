@@ -0,0 +1,247 @@
+package getent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for Getent
+ */
+public class GetentTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GetentTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new GetentTest("testFull"));
+        suite.addTest(new GetentTest("testFullRefresh"));
+        suite.addTest(new GetentTest("testFullIdle"));
+        suite.addTest(new GetentTest("testFullStale"));
+        suite.addTest(new GetentTest("testTargeted"));
+        suite.addTest(new GetentTest("testTargetedUncached"));
+        suite.addTest(new GetentTest("testTargetedExpiry"));
+        return suite;
+    }
+
+    /**
+     * fake getent: prints the entries of the given database matching the
+     * keys by name or ID, all entries without keys, and records its keys;
+     * fails if file "fail" exists
+     */
+    private static final String SCRIPT = "#!/bin/sh\n"
+            + "dir=$(dirname \"$0\")\n"
+            + "db=$1\n"
+            + "shift\n"
+            + "echo \"$db $*\" >> \"$dir/calls\"\n"
+            + "[ -e \"$dir/fail\" ] && exit 1\n"
+            + "[ $# -eq 0 ] && exec cat \"$dir/$db\"\n"
+            + "rc=0\n"
+            + "for key in \"$@\"; do\n"
+            + "  awk -F: -v k=\"$key\" '$1 == k || $3 == k { print; f = 1 } "
+            + "END { exit !f }' \"$dir/$db\" || rc=2\n"
+            + "done\n"
+            + "exit $rc\n";
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("getent").toFile();
+        write("group", "root:x:0:\nstaff:x:50:alice\nusers:x:100:\n");
+        write("passwd", "root:x:0:0:root:/root:/bin/sh\n"
+                + "alice:x:1000:100::/home/alice:/bin/sh\n"
+                + "bob:x:1001:50::/home/bob:/bin/sh\n");
+        final File script = new File(dir, "getent");
+        write("getent", SCRIPT);
+        assertTrue(script.setExecutable(true));
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    public void testFull() throws Exception {
+
+        final Getent getent = getent(60, Getent.Mode.FULL);
+        final User alice = getent.getUserByName("alice");
+        assertEquals(1000, alice.getUID());
+        assertEquals("users", alice.getPrimaryGroup().getName());
+        assertTrue(alice.getGroups().contains(getent.getGroupByName("staff")));
+        assertNull(getent.getUserByName("nobody"));
+        assertEquals("bob", getent.getUserByUID(1001).getName());
+
+        assertEquals(Arrays.asList("group ", "passwd "), calls());
+    }
+
+    // directory is retrieved again in the background, the previous one is
+    // kept if that fails
+    public void testFullRefresh() throws Exception {
+
+        final Getent getent = getent(1, Getent.Mode.FULL);
+        try {
+            assertNotNull(getent.getUserByName("alice"));
+            assertNull(getent.getUserByName("carol"));
+
+            write("fail", "");
+            final long failing = System.currentTimeMillis() + 10000;
+            while (calls().size() < 6 && System.currentTimeMillis() < failing) {
+                assertNotNull(getent.getUserByName("alice"));
+                Thread.sleep(20);
+            }
+            assertTrue(calls().size() >= 6);
+
+            assertTrue(new File(dir, "fail").delete());
+            write("passwd", "alice:x:1000:100::/home/alice:/bin/sh\n"
+                    + "carol:x:1002:100::/home/carol:/bin/sh\n");
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (getent.getUserByName("carol") == null
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertNotNull(getent.getUserByName("carol"));
+            assertNull(getent.getUserByName("bob"));
+        } finally {
+            getent.shutdown();
+        }
+    }
+
+    // directory not read is not retrieved again until the next lookup
+    public void testFullIdle() throws Exception {
+
+        final Getent getent = getent(1, Getent.Mode.FULL);
+        try {
+            assertNotNull(getent.getUserByName("alice"));
+            Thread.sleep(2500);
+            assertEquals(2, calls().size());
+
+            assertNotNull(getent.getUserByName("bob"));
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (calls().size() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(4, calls().size());
+        } finally {
+            getent.shutdown();
+        }
+    }
+
+    // expired directory is served while it is retrieved again in the
+    // background after being idle
+    public void testFullStale() throws Exception {
+
+        final Getent getent = getent(1, Getent.Mode.FULL);
+        try {
+            assertNotNull(getent.getUserByName("bob"));
+            Thread.sleep(2500);
+
+            write("passwd", "alice:x:1000:100::/home/alice:/bin/sh\n");
+            assertNotNull(getent.getUserByName("bob"));
+
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (getent.getUserByName("bob") != null
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertNull(getent.getUserByName("bob"));
+            assertNotNull(getent.getUserByName("alice"));
+        } finally {
+            getent.shutdown();
+        }
+    }
+
+    // names are looked up in batches, found entries are cached
+    public void testTargeted() throws Exception {
+
+        final Getent getent = getent(60, Getent.Mode.TARGETED);
+        getent.lookupUsers(Arrays.asList("alice", "bob", "alice"));
+        getent.lookupGroups(Arrays.asList("staff", "root"));
+        final List<String> calls = calls();
+        assertEquals(3, calls.size());
+        assertTrue(calls.get(0), calls.get(0).matches("passwd (alice bob|bob alice)"));
+        assertTrue(calls.get(1), calls.get(1).matches("group (100 50|50 100)"));
+
+        final User alice = getent.getUserByName("alice");
+        assertEquals(1000, alice.getUID());
+        assertEquals("users", alice.getPrimaryGroup().getName());
+        assertSame(alice, getent.getUserByUID(1000));
+        assertEquals(50, getent.getGroupByName("staff").getGID());
+        assertEquals("root", getent.getGroupByGID(0).getName());
+        assertEquals(3, calls().size());
+
+        // missing entries are looked up again
+        assertNull(getent.getUserByName("nobody"));
+        assertNull(getent.getUserByName("nobody"));
+        assertEquals(5, calls().size());
+    }
+
+    public void testTargetedUncached() throws Exception {
+
+        final Getent getent = getent(0, Getent.Mode.TARGETED);
+        assertEquals(0, getent.getGroupByName("root").getGID());
+        assertEquals(0, getent.getGroupByName("root").getGID());
+        assertEquals(Arrays.asList("group root", "group root"), calls());
+    }
+
+    // expired entries are evicted if no longer found, kept if getent fails
+    public void testTargetedExpiry() throws Exception {
+
+        final Getent getent = getent(1, Getent.Mode.TARGETED);
+        assertNotNull(getent.getUserByName("alice"));
+        assertNotNull(getent.getUserByName("bob"));
+
+        write("passwd", "alice:x:1000:100::/home/alice:/bin/sh\n");
+        Thread.sleep(1100);
+        assertNull(getent.getUserByName("bob"));
+        assertNull(getent.getUserByUID(1001));
+        assertNotNull(getent.getUserByName("alice"));
+
+        write("fail", "");
+        Thread.sleep(1100);
+        assertNotNull(getent.getUserByName("alice"));
+    }
+
+    private Getent getent(int cachingPeriod, Getent.Mode mode) {
+        final String cmd = new File(dir, "getent").getPath();
+        return new Getent(cachingPeriod, cmd + " group", cmd + " passwd",
+                mode);
+    }
+
+    private List<String> calls() throws IOException {
+        return Files.readAllLines(new File(dir, "calls").toPath(),
+                StandardCharsets.UTF_8);
+    }
+
+    private void write(String name, String content) throws IOException {
+        final FileOutputStream out = new FileOutputStream(new File(dir, name));
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
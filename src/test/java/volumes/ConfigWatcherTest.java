@@ -0,0 +1,125 @@
+package volumes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for ConfigWatcher
+ */
+public class ConfigWatcherTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ConfigWatcherTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new ConfigWatcherTest("testVgChanges"));
+        suite.addTest(new ConfigWatcherTest("testConfDirChanges"));
+        suite.addTest(new ConfigWatcherTest("testVgDirRemoved"));
+        return suite;
+    }
+
+    private File confDir;
+    private File vgDir;
+    private ConfigWatcher watcher;
+    private final BlockingQueue<String> reasons = new LinkedBlockingQueue<String>();
+
+    @Override
+    protected void setUp() throws Exception {
+        confDir = VolumeGroupFixture.createConfDir(2);
+        vgDir = new File(confDir, "vg.d");
+        watcher = new ConfigWatcher(confDir, vgDir, 50,
+                new ConfigWatcher.Listener() {
+
+            @Override
+            public void changed(String reason) {
+                reasons.add(reason);
+            }
+        });
+        assertTrue(watcher.start());
+    }
+
+    @Override
+    protected void tearDown() {
+        watcher.close();
+        new File(confDir, ReconcileScheduler.TRIGGER_FILE).delete();
+        new File(confDir, "log4j.properties").delete();
+        new File(confDir, "other.xml").delete();
+        VolumeGroupFixture.deleteConfDir(confDir);
+    }
+
+    // edits of several VG files are reported once
+    public void testVgChanges() throws Exception {
+
+        assertFalse(watcher.consumeChange());
+
+        touch(new File(vgDir, "new_vg"));
+        touch(new File(vgDir, VolumeGroupFixture.vgName(0)));
+        assertTrue(new File(vgDir, VolumeGroupFixture.vgName(1)).delete());
+
+        assertNotNull(reasons.poll(10, TimeUnit.SECONDS));
+        assertTrue(watcher.consumeChange());
+        assertFalse(watcher.consumeChange());
+
+        assertNull(reasons.poll(200, TimeUnit.MILLISECONDS));
+        assertFalse(watcher.isFailed());
+    }
+
+    // only XML files count as configuration, the trigger file merely wakes
+    // up the main loop
+    public void testConfDirChanges() throws Exception {
+
+        touch(new File(confDir, "log4j.properties"));
+        touch(new File(confDir, ReconcileScheduler.TRIGGER_FILE));
+
+        final String reason = reasons.poll(10, TimeUnit.SECONDS);
+        assertNotNull(reason);
+        assertTrue(reason, reason.contains(ReconcileScheduler.TRIGGER_FILE));
+        assertFalse(watcher.consumeChange());
+
+        touch(new File(confDir, "other.xml"));
+        assertNotNull(reasons.poll(10, TimeUnit.SECONDS));
+        assertTrue(watcher.consumeChange());
+    }
+
+    public void testVgDirRemoved() throws Exception {
+
+        VolumeGroupFixture.deleteConfDir(confDir);
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!watcher.isFailed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(watcher.isFailed());
+        assertTrue(watcher.consumeChange());
+    }
+
+    private static void touch(File file) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write('\n');
+        } finally {
+            out.close();
+        }
+    }
+}
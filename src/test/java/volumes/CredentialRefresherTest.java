@@ -0,0 +1,219 @@
+package volumes;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.AppConfigurationEntry.LoginModuleControlFlag;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for CredentialRefresher
+ */
+public class CredentialRefresherTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public CredentialRefresherTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new CredentialRefresherTest("testRefreshDelay"));
+        suite.addTest(new CredentialRefresherTest("testRefresh"));
+        suite.addTest(new CredentialRefresherTest("testRetry"));
+        return suite;
+    }
+
+    /**
+     * login module adding a Kerberos ticket with the lifetime in
+     * milliseconds given by option "lifetime", removed again on logout
+     */
+    public static class TicketLoginModule implements LoginModule {
+
+        private Subject subject;
+        private long lifetime;
+        private KerberosTicket ticket;
+
+        @Override
+        public void initialize(Subject subject, CallbackHandler handler,
+                Map<String, ?> sharedState, Map<String, ?> options) {
+            this.subject = subject;
+            this.lifetime = Long.parseLong((String) options.get("lifetime"));
+        }
+
+        @Override
+        public boolean login() {
+            final long now = System.currentTimeMillis();
+            ticket = ticket(now, now + lifetime);
+            return true;
+        }
+
+        @Override
+        public boolean commit() {
+            subject.getPrivateCredentials().add(ticket);
+            return true;
+        }
+
+        @Override
+        public boolean abort() {
+            return true;
+        }
+
+        @Override
+        public boolean logout() {
+            subject.getPrivateCredentials().remove(ticket);
+            return true;
+        }
+    }
+
+    /**
+     * login issuing tickets of the given lifetime, failing the given number
+     * of times after the first login
+     */
+    private static final class TestLogin implements CredentialRefresher.Login {
+
+        private final Configuration conf;
+        private final AtomicInteger logins = new AtomicInteger();
+        private final AtomicInteger failures;
+
+        TestLogin(long lifetime, int failures) {
+            final Map<String, String> options = new HashMap<String, String>();
+            options.put("lifetime", String.valueOf(lifetime));
+            final AppConfigurationEntry entry = new AppConfigurationEntry(
+                    TicketLoginModule.class.getName(),
+                    LoginModuleControlFlag.REQUIRED, options);
+            this.conf = new Configuration() {
+
+                @Override
+                public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+                    return new AppConfigurationEntry[] { entry };
+                }
+            };
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public LoginContext login() {
+            if (logins.getAndIncrement() > 0 && failures.getAndDecrement() > 0) {
+                return null;
+            }
+            try {
+                final LoginContext lc = new LoginContext("test", new Subject(),
+                        null, conf);
+                lc.login();
+                return lc;
+            } catch (LoginException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static KerberosTicket ticket(long start, long end) {
+        final KerberosPrincipal client = new KerberosPrincipal("vm@EXAMPLE.COM");
+        final KerberosPrincipal server =
+                new KerberosPrincipal("krbtgt/EXAMPLE.COM@EXAMPLE.COM");
+        return new KerberosTicket(new byte[1], client, server, new byte[16], 17,
+                null, new Date(start), new Date(start), new Date(end), null,
+                null);
+    }
+
+    public void testRefreshDelay() {
+
+        final Subject subject = new Subject();
+        assertEquals(-1, CredentialRefresher.refreshDelay(subject, 0, 0.8));
+
+        subject.getPrivateCredentials().add(ticket(1000, 11000));
+        assertEquals(9000, CredentialRefresher.refreshDelay(subject, 0, 0.8));
+        assertEquals(4000, CredentialRefresher.refreshDelay(subject, 5000, 0.8));
+        assertEquals(0, CredentialRefresher.refreshDelay(subject, 20000, 0.8));
+
+        // earliest expiring ticket decides
+        subject.getPrivateCredentials().add(ticket(1000, 6000));
+        assertEquals(5000, CredentialRefresher.refreshDelay(subject, 0, 0.8));
+    }
+
+    // Subject is replaced ahead of expiry, the previous one is logged out
+    // once expired
+    public void testRefresh() throws Exception {
+
+        final TestLogin login = new TestLogin(600, 0);
+        final CredentialRefresher refresher =
+                new CredentialRefresher(login, 0.5, 10);
+        try {
+            assertTrue(refresher.login());
+            final Subject first = refresher.getSubject();
+            assertEquals(1, first.getPrivateCredentials(KerberosTicket.class).size());
+
+            final Subject second = awaitNewSubject(refresher, first);
+            assertNotNull(second);
+            assertEquals(1, second.getPrivateCredentials(KerberosTicket.class).size());
+
+            // previous Subject remains usable until its ticket expired
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (!first.getPrivateCredentials().isEmpty()
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Collections.emptySet(), first.getPrivateCredentials());
+        } finally {
+            refresher.shutdown();
+        }
+    }
+
+    // failed refreshes are retried, the current Subject is kept meanwhile
+    public void testRetry() throws Exception {
+
+        final TestLogin login = new TestLogin(200, 3);
+        final CredentialRefresher refresher =
+                new CredentialRefresher(login, 0.5, 20);
+        try {
+            assertTrue(refresher.login());
+            final Subject first = refresher.getSubject();
+
+            final Subject second = awaitNewSubject(refresher, first);
+            assertNotNull(second);
+            assertTrue(login.logins.get() >= 5);
+        } finally {
+            refresher.shutdown();
+        }
+        assertNull(refresher.getSubject());
+    }
+
+    private static Subject awaitNewSubject(CredentialRefresher refresher,
+            Subject previous) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            final Subject subject = refresher.getSubject();
+            if (subject != previous) {
+                return subject;
+            }
+            Thread.sleep(10);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,103 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for FlightRecorderEvents
+ */
+public class FlightRecorderEventsTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FlightRecorderEventsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new FlightRecorderEventsTest("testAvailability"));
+        suite.addTest(new FlightRecorderEventsTest("testNotRecording"));
+        suite.addTest(new FlightRecorderEventsTest("testRecording"));
+        return suite;
+    }
+
+    // events are available exactly if the JVM provides the JFR event API
+    public void testAvailability() {
+
+        boolean api;
+        try {
+            Class.forName("jdk.jfr.EventFactory");
+            api = true;
+        } catch (ClassNotFoundException e) {
+            api = false;
+        }
+        assertEquals(api, FlightRecorderEvents.isAvailable());
+    }
+
+    public void testNotRecording() {
+
+        for (FlightRecorderEvents.Type type : FlightRecorderEvents.Type.values()) {
+            FlightRecorderEvents.begin(type).set("success", Boolean.TRUE).commit();
+        }
+    }
+
+    // all event types and fields are set while a recording is running,
+    // without disabling events
+    public void testRecording() throws Exception {
+
+        final Class<?> recordingClass;
+        try {
+            recordingClass = Class.forName("jdk.jfr.Recording");
+        } catch (ClassNotFoundException e) {
+            return;
+        }
+
+        final Object recording = recordingClass.newInstance();
+        recordingClass.getMethod("start").invoke(recording);
+        try {
+            FlightRecorderEvents.begin(FlightRecorderEvents.Type.RECONCILE)
+                    .set("success", Boolean.TRUE)
+                    .set("creates", Integer.valueOf(1))
+                    .set("purges", Integer.valueOf(2))
+                    .set("aceModifications", Integer.valueOf(3))
+                    .commit();
+            FlightRecorderEvents.begin(FlightRecorderEvents.Type.VOLUME_LIST)
+                    .set("restNode", "https://node1:8443")
+                    .set("offset", Integer.valueOf(0))
+                    .set("limit", Integer.valueOf(100))
+                    .set("items", Integer.valueOf(100))
+                    .set("hedged", Boolean.FALSE)
+                    .set("success", Boolean.TRUE)
+                    .commit();
+            FlightRecorderEvents.begin(FlightRecorderEvents.Type.PLAN)
+                    .set("phase", "delta")
+                    .set("volumeGroups", Integer.valueOf(1))
+                    .set("unknown", "ignored")
+                    .commit();
+            FlightRecorderEvents.begin(FlightRecorderEvents.Type.VOLUME_ACTION)
+                    .set("action", "create")
+                    .set("volume", "vg_20200101")
+                    .set("volumeGroup", "vg")
+                    .set("restNode", null)
+                    .set("attempt", Integer.valueOf(1))
+                    .set("outcome", "succeeded")
+                    .commit();
+        } finally {
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("close").invoke(recording);
+        }
+
+        assertTrue(FlightRecorderEvents.isAvailable());
+    }
+}
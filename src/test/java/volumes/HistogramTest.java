@@ -0,0 +1,99 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for Histogram
+ */
+public class HistogramTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public HistogramTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new HistogramTest("testBuckets"));
+        suite.addTest(new HistogramTest("testPercentiles"));
+        suite.addTest(new HistogramTest("testEmpty"));
+        suite.addTest(new HistogramTest("testCumulativeCounts"));
+        return suite;
+    }
+
+    // each value lies in its bucket, buckets are contiguous
+    public void testBuckets() {
+
+        final long[] values = { 0, 1, 31, 32, 33, 63, 64, 65, 1000, 123456789L,
+                Long.MAX_VALUE / 3, Long.MAX_VALUE };
+        for (long v : values) {
+            final int i = Histogram.index(v);
+            assertTrue(v <= Histogram.upperBound(i));
+            if (i > 0) {
+                assertTrue(v > Histogram.upperBound(i - 1));
+            }
+            // relative error of at most 1/32
+            assertTrue(Histogram.upperBound(i) - v <= v / 32);
+        }
+        assertEquals(Long.MAX_VALUE,
+                Histogram.upperBound(Histogram.index(Long.MAX_VALUE)));
+    }
+
+    public void testPercentiles() {
+
+        final Histogram h = new Histogram();
+        for (long v = 1; v <= 10000; v++) {
+            h.record(v);
+        }
+
+        assertEquals(10000, h.getCount());
+        assertEquals(10000L * 10001 / 2, h.getSum());
+        assertEquals(10000, h.getMax());
+
+        assertEquals(5000, h.percentile(50), 5000 / 32);
+        assertEquals(9900, h.percentile(99), 9900 / 32);
+        assertTrue(h.percentile(50) >= 5000);
+        assertEquals(10000, h.percentile(100));
+        assertEquals(1, h.percentile(0));
+    }
+
+    public void testEmpty() {
+
+        final Histogram h = new Histogram();
+        assertEquals(0, h.percentile(99));
+        assertEquals(0, h.getMax());
+
+        h.record(-5);
+        assertEquals(1, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+
+    public void testCumulativeCounts() {
+
+        final Histogram h = new Histogram();
+        for (long v = 1; v <= 1000; v++) {
+            h.record(v);
+        }
+
+        final long[] counts = h.cumulativeCounts(new long[] { 0, 10, 100, 640, 5000 });
+        assertEquals(0, counts[0]);
+        assertEquals(10, counts[1]);
+        assertEquals(100, counts[2], 100 / 32);
+        assertTrue(counts[2] >= 100);
+        // bucket bound
+        assertEquals(Histogram.upperBound(Histogram.index(640)), counts[3]);
+        assertEquals(1000, counts[4]);
+    }
+}
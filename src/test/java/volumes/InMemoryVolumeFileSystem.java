@@ -0,0 +1,231 @@
+package volumes;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory stand-in for MapR-FS holding directories with owner, group,
+ * permission and public ACE flag. Each operation can be delayed and failed
+ * at random, and operations are counted by type so that the file system
+ * round trips of volume actions can be measured.
+ */
+class InMemoryVolumeFileSystem implements VolumeFileSystem {
+
+    /**
+     * operation types counted
+     */
+    enum Op {
+        EXISTS, MKDIRS, SET_OWNER, SET_PERMISSION, SET_PUBLIC_ACES
+    }
+
+    /**
+     * directory as held by the file system
+     */
+    static final class Dir {
+
+        volatile String owner = "mapr";
+        volatile String group = "mapr";
+        volatile String permission;
+        volatile boolean publicAces = false;
+
+        private Dir(String permission) {
+            this.permission = permission;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Dir> dirs =
+            new ConcurrentHashMap<String, Dir>();
+
+    private final AtomicLongArray ops = new AtomicLongArray(Op.values().length);
+
+    private final AtomicLongArray failures =
+            new AtomicLongArray(Op.values().length);
+
+    private final AtomicInteger failNext = new AtomicInteger();
+
+    private final Random random = new Random();
+
+    private volatile long latencyNanos = 0;
+
+    private volatile double failureRate = 0;
+
+    InMemoryVolumeFileSystem() {
+        dirs.put("/", new Dir("755"));
+    }
+
+    /**
+     * delay every operation by the given time in microseconds
+     */
+    void setLatencyMicros(long micros) {
+        this.latencyNanos = micros * 1000;
+    }
+
+    /**
+     * share of operations failing with an IOException
+     */
+    void setFailureRate(double rate) {
+        this.failureRate = rate;
+    }
+
+    /**
+     * fail the next given number of operations, regardless of failure rate
+     */
+    void failNext(int count) {
+        failNext.set(count);
+    }
+
+    /**
+     * mounts a volume at the given path, as done by MapR on volume creation;
+     * returns false if the parent directory doesn't exist
+     */
+    boolean mount(String path) {
+        if (!dirs.containsKey(parent(path))) {
+            return false;
+        }
+        dirs.putIfAbsent(path, new Dir("755"));
+        return true;
+    }
+
+    /**
+     * unmounts the volume mounted at the given path
+     */
+    void unmount(String path) {
+        dirs.remove(path);
+    }
+
+    /**
+     * retrieve directory at the given path, null if there is none
+     */
+    Dir getDir(String path) {
+        return dirs.get(path);
+    }
+
+    /**
+     * retrieve number of operations of the given type, failed ones included
+     */
+    long getOpCount(Op op) {
+        return ops.get(op.ordinal());
+    }
+
+    /**
+     * retrieve number of operations of all types, failed ones included
+     */
+    long getOpCount() {
+        long total = 0;
+        for (int i = 0; i < ops.length(); i++) {
+            total += ops.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * retrieve number of failed operations of all types
+     */
+    long getFailureCount() {
+        long total = 0;
+        for (int i = 0; i < failures.length(); i++) {
+            total += failures.get(i);
+        }
+        return total;
+    }
+
+    void resetCounts() {
+        for (int i = 0; i < ops.length(); i++) {
+            ops.set(i, 0);
+            failures.set(i, 0);
+        }
+    }
+
+    /**
+     * removes all directories but the root
+     */
+    void clear() {
+        dirs.keySet().retainAll(Collections.singleton("/"));
+    }
+
+    @Override
+    public boolean exists(String path) throws IOException {
+        enter(Op.EXISTS, path);
+        return dirs.containsKey(path);
+    }
+
+    @Override
+    public boolean mkdirs(String path, String permission) throws IOException {
+        enter(Op.MKDIRS, path);
+        for (String p = path; !dirs.containsKey(p); p = parent(p)) {
+            dirs.putIfAbsent(p, new Dir(permission));
+        }
+        return true;
+    }
+
+    @Override
+    public void setOwner(String path, String owner, String group)
+            throws IOException {
+        enter(Op.SET_OWNER, path);
+        final Dir dir = get(path);
+        dir.owner = owner;
+        dir.group = group;
+    }
+
+    @Override
+    public void setPermission(String path, String permission)
+            throws IOException {
+        enter(Op.SET_PERMISSION, path);
+        get(path).permission = permission;
+    }
+
+    @Override
+    public void setPublicAces(String path) throws IOException {
+        enter(Op.SET_PUBLIC_ACES, path);
+        get(path).publicAces = true;
+    }
+
+    private Dir get(String path) throws FileNotFoundException {
+        final Dir dir = dirs.get(path);
+        if (dir == null) {
+            throw new FileNotFoundException(path);
+        }
+        return dir;
+    }
+
+    /**
+     * counts, delays and possibly fails an operation
+     */
+    private void enter(Op op, String path) throws IOException {
+
+        ops.incrementAndGet(op.ordinal());
+
+        // waiting like for a network round trip, without using CPU
+        final long latency = latencyNanos;
+        if (latency > 0) {
+            final long end = System.nanoTime() + latency;
+            for (long left = latency; left > 0; left = end - System.nanoTime()) {
+                LockSupport.parkNanos(left);
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted");
+                }
+            }
+        }
+
+        boolean fail = false;
+        for (int n = failNext.get(); n > 0 && !fail; n = failNext.get()) {
+            fail = failNext.compareAndSet(n, n - 1);
+        }
+        if (fail || (failureRate > 0 && random.nextDouble() < failureRate)) {
+            failures.incrementAndGet(op.ordinal());
+            throw new IOException("simulated " + op + " failure on " + path);
+        }
+    }
+
+    private static String parent(String path) {
+        final int slash = path.lastIndexOf('/');
+        return slash <= 0 ? "/" : path.substring(0, slash);
+    }
+}
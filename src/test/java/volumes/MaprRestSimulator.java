@@ -0,0 +1,535 @@
+package volumes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded stand-in for the MapR REST interface, for load and scale tests.
+ * Volumes are kept in memory; volume/list, volume/create, volume/remove,
+ * volume/modify, volume/info and alarm/raise are served in the response
+ * format of the MapR REST API as far as the volume manager parses it.
+ * Responses can be delayed and failed at random, and the cluster can be
+ * populated with any number of unrelated volumes.
+ */
+class MaprRestSimulator {
+
+    /**
+     * volume as held by the simulator
+     */
+    private static final class SimVolume {
+
+        private final String name;
+        private final String path;
+        private volatile String readAce;
+        private volatile String writeAce;
+
+        private SimVolume(String name, String path, String readAce,
+                String writeAce) {
+            this.name = name;
+            this.path = path;
+            this.readAce = readAce;
+            this.writeAce = writeAce;
+        }
+    }
+
+    /**
+     * ACE MapR applies to volumes created without whole volume ACEs
+     */
+    private static final String DEFAULT_ACE = "p";
+
+    private final HttpServer server;
+
+    private final ExecutorService pool;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ConcurrentSkipListMap<String, SimVolume> volumes =
+            new ConcurrentSkipListMap<String, SimVolume>();
+
+    private final ConcurrentHashMap<String, AtomicLong> requests =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    private final Random random = new Random();
+
+    private volatile long latency = 0;
+
+    private volatile long latencyJitter = 0;
+
+    private volatile double serverErrorRate = 0;
+
+    private volatile double restErrorRate = 0;
+
+    private volatile double lostResponseRate = 0;
+
+    private volatile int listShift = 0;
+
+    private volatile InMemoryVolumeFileSystem fs = null;
+
+    /**
+     * creates a simulator on an ephemeral localhost port, serving requests
+     * with the given number of threads
+     */
+    MaprRestSimulator(int threads) throws IOException {
+
+        // response headers and body are written separately, without
+        // TCP_NODELAY each response waits for the delayed ACK of the client
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicLong count = new AtomicLong();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "rest-simulator-"
+                        + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        server.setExecutor(pool);
+
+        server.createContext("/rest", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+
+    /**
+     * retrieve port the simulator listens on
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * delay every response by the given time plus a random jitter of up to
+     * the given time, in milliseconds
+     */
+    void setLatency(long latency, long jitter) {
+        this.latency = latency;
+        this.latencyJitter = jitter;
+    }
+
+    /**
+     * share of requests answered with HTTP 503
+     */
+    void setServerErrorRate(double rate) {
+        this.serverErrorRate = rate;
+    }
+
+    /**
+     * share of volume create, remove and modify requests answered with
+     * status ERROR
+     */
+    void setRestErrorRate(double rate) {
+        this.restErrorRate = rate;
+    }
+
+    /**
+     * share of volume create and remove requests executed, but answered with
+     * HTTP 503 as if the response had been lost
+     */
+    void setLostResponseRate(double rate) {
+        this.lostResponseRate = rate;
+    }
+
+    /**
+     * number of volumes skipped at the start of each volume list page but
+     * the first, as if volumes listed before had been removed meanwhile
+     */
+    void setListShift(int shift) {
+        this.listShift = shift;
+    }
+
+    /**
+     * file system standing in for MapR-FS: volumes are mounted on creation,
+     * which fails if the parent directory doesn't exist, and unmounted on
+     * removal. null leaves mount points alone
+     */
+    void setFileSystem(InMemoryVolumeFileSystem fs) {
+        this.fs = fs;
+    }
+
+    /**
+     * adds the given number of volumes unrelated to any volume group
+     */
+    void populate(int count) {
+        for (int i = 0; i < count; i++) {
+            final String name = VolumeListFixture.volumeName(i);
+            volumes.put(name, new SimVolume(name, "/apps/" + name,
+                    DEFAULT_ACE, DEFAULT_ACE));
+        }
+    }
+
+    /**
+     * adds a volume mounted at the given path
+     */
+    void addVolume(String name, String path) {
+        volumes.put(name, new SimVolume(name, path, DEFAULT_ACE, DEFAULT_ACE));
+    }
+
+    boolean hasVolume(String name) {
+        return volumes.containsKey(name);
+    }
+
+    int getVolumeCount() {
+        return volumes.size();
+    }
+
+    /**
+     * retrieve number of requests served for the given path below /rest,
+     * e.g. "volume/create"
+     */
+    long getRequestCount(String path) {
+        final AtomicLong count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * retrieve number of requests served in total
+     */
+    long getRequestCount() {
+        long total = 0;
+        for (AtomicLong count : requests.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    void resetRequestCounts() {
+        requests.clear();
+    }
+
+    /**
+     * removes all volumes
+     */
+    void clear() {
+        volumes.clear();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+
+        final String path = exchange.getRequestURI().getPath()
+                .substring("/rest".length()).replaceFirst("^/", "");
+        count(path);
+
+        final long delay = latency + (latencyJitter > 0
+                ? (long) (random.nextDouble() * latencyJitter) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        // "/rest" itself is probed by the node selector
+        if (path.isEmpty()) {
+            respond(exchange, 200, "{}");
+            return;
+        }
+
+        if (random.nextDouble() < serverErrorRate) {
+            respond(exchange, 503, "simulated server error");
+            return;
+        }
+
+        final Map<String, String> params =
+                parseQuery(exchange.getRequestURI().getRawQuery());
+        final ObjectNode response;
+
+        if ("volume/list".equals(path)) {
+            response = list(params);
+        } else if ("volume/info".equals(path)) {
+            response = info(params);
+        } else if ("volume/create".equals(path)) {
+            response = create(params);
+        } else if ("volume/remove".equals(path)) {
+            response = remove(params);
+        } else if ("volume/modify".equals(path)) {
+            response = modify(params);
+        } else if ("alarm/raise".equals(path)) {
+            response = ok();
+        } else {
+            respond(exchange, 404, "unknown REST call " + path);
+            return;
+        }
+
+        if (("volume/create".equals(path) || "volume/remove".equals(path))
+                && random.nextDouble() < lostResponseRate) {
+            respond(exchange, 503, "simulated lost response");
+            return;
+        }
+
+        respond(exchange, 200, mapper.writeValueAsString(response));
+    }
+
+    private ObjectNode list(Map<String, String> params) {
+
+        final String columns = params.get("columns");
+        final List<String> cols = columns == null ? null
+                : Arrays.asList(columns.split(","));
+        final List<String> prefixes = parseFilter(params.get("filter"));
+        final int offset = params.containsKey("start")
+                ? Integer.parseInt(params.get("start")) : 0;
+        final int start = offset > 0 ? offset + listShift : 0;
+        final int limit = params.containsKey("limit")
+                ? Integer.parseInt(params.get("limit")) : Integer.MAX_VALUE;
+
+        // overlapping prefixes list a volume once, in name order
+        final List<SimVolume> matching;
+        if (prefixes == null) {
+            matching = new ArrayList<SimVolume>(volumes.values());
+        } else {
+            final TreeMap<String, SimVolume> selected =
+                    new TreeMap<String, SimVolume>();
+            for (String prefix : prefixes) {
+                selected.putAll(volumes.subMap(prefix, true,
+                        prefix + Character.MAX_VALUE, false));
+            }
+            matching = new ArrayList<SimVolume>(selected.values());
+        }
+
+        final ObjectNode response = ok();
+        final ArrayNode data = response.putArray("data");
+        for (int i = start; i < matching.size() && i - start < limit; i++) {
+            final SimVolume volume = matching.get(i);
+            final ObjectNode item = data.addObject();
+            if (cols == null || cols.contains(MaprVolumeParser.VOLUME_NAME_KEY)) {
+                item.put(MaprVolumeParser.VOLUME_NAME_KEY, volume.name);
+            }
+            if (cols == null || cols.contains(MaprVolumeParser.VOLUME_MOUNTDIR_KEY)) {
+                item.put(MaprVolumeParser.VOLUME_MOUNTDIR_KEY, volume.path);
+            }
+            if (cols == null || cols.contains(MaprVolumeParser.VOLUME_ACES_KEY)) {
+                putAces(item, volume);
+            }
+        }
+        response.put("total", matching.size());
+
+        return response;
+    }
+
+    private ObjectNode info(Map<String, String> params) {
+
+        final SimVolume volume = volumes.get(String.valueOf(params.get("name")));
+        if (volume == null) {
+            return error("No such volume " + params.get("name"));
+        }
+
+        final ObjectNode response = ok();
+        final ObjectNode item = response.putArray("data").addObject();
+        item.put(MaprVolumeParser.VOLUME_NAME_KEY, volume.name);
+        item.put(MaprVolumeParser.VOLUME_MOUNTDIR_KEY, volume.path);
+        putAces(item, volume);
+
+        return response;
+    }
+
+    private ObjectNode create(Map<String, String> params) {
+
+        if (random.nextDouble() < restErrorRate) {
+            return error("simulated volume create failure");
+        }
+
+        final String name = params.get("name");
+        final String path = params.get("path");
+        if (name == null || path == null) {
+            return error("name and path are required");
+        }
+
+        final SimVolume volume = new SimVolume(name, path,
+                value(params.get("readAce")), value(params.get("writeAce")));
+        if (volumes.putIfAbsent(name, volume) != null) {
+            return error("Volume Name " + name + ", Already In Use");
+        }
+
+        final InMemoryVolumeFileSystem mountFs = fs;
+        if (mountFs != null && !mountFs.mount(path)) {
+            volumes.remove(name);
+            return error("Volume mount for " + path + " failed, No such file or directory");
+        }
+
+        return ok();
+    }
+
+    private ObjectNode remove(Map<String, String> params) {
+
+        if (random.nextDouble() < restErrorRate) {
+            return error("simulated volume remove failure");
+        }
+
+        final SimVolume volume = volumes.remove(String.valueOf(params.get("name")));
+        if (volume == null) {
+            return error("No such volume " + params.get("name"));
+        }
+
+        final InMemoryVolumeFileSystem mountFs = fs;
+        if (mountFs != null) {
+            mountFs.unmount(volume.path);
+        }
+
+        return ok();
+    }
+
+    private ObjectNode modify(Map<String, String> params) {
+
+        if (random.nextDouble() < restErrorRate) {
+            return error("simulated volume modify failure");
+        }
+
+        final SimVolume volume = volumes.get(String.valueOf(params.get("name")));
+        if (volume == null) {
+            return error("No such volume " + params.get("name"));
+        }
+
+        if (params.containsKey("readAce")) {
+            volume.readAce = params.get("readAce");
+        }
+        if (params.containsKey("writeAce")) {
+            volume.writeAce = params.get("writeAce");
+        }
+
+        return ok();
+    }
+
+    private void putAces(ObjectNode item, SimVolume volume) {
+        final ObjectNode aces = item.putObject(MaprVolumeParser.VOLUME_ACES_KEY);
+        aces.put("readAce", volume.readAce);
+        aces.put("writeAce", volume.writeAce);
+    }
+
+    private ObjectNode ok() {
+        final ObjectNode response = mapper.createObjectNode();
+        response.put("timestamp", System.currentTimeMillis());
+        response.put("status", "OK");
+        return response;
+    }
+
+    private ObjectNode error(String desc) {
+        final ObjectNode response = mapper.createObjectNode();
+        response.put("timestamp", System.currentTimeMillis());
+        response.put("status", "ERROR");
+        response.putArray("errors").addObject().put("desc", desc);
+        return response;
+    }
+
+    private void count(String path) {
+        AtomicLong count = requests.get(path);
+        if (count == null) {
+            final AtomicLong created = new AtomicLong();
+            count = requests.putIfAbsent(path, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private static String value(String s) {
+        return s == null ? DEFAULT_ACE : s;
+    }
+
+    /**
+     * parses filter expressions in the form built by VolumeListRequestBuilder,
+     * e.g. [volumename==vg1*]or[volumename==vg2*], into name prefixes; null
+     * for no filter
+     */
+    static List<String> parseFilter(String filter) {
+
+        if (filter == null || filter.isEmpty()) {
+            return null;
+        }
+
+        if (!filter.startsWith("[") || !filter.endsWith("]")) {
+            throw new IllegalArgumentException("unsupported filter " + filter);
+        }
+
+        final List<String> prefixes = new ArrayList<String>();
+        final String head = MaprVolumeParser.VOLUME_NAME_KEY + "==";
+        for (String term : filter.substring(1, filter.length() - 1)
+                .split("\\]or\\[")) {
+            if (!term.startsWith(head) || !term.endsWith("*")) {
+                throw new IllegalArgumentException("unsupported filter " + filter);
+            }
+            prefixes.add(term.substring(head.length(), term.length() - 1));
+        }
+
+        return prefixes;
+    }
+
+    private static Map<String, String> parseQuery(String query)
+            throws UnsupportedEncodingException {
+
+        final Map<String, String> params = new HashMap<String, String>();
+        if (query == null) {
+            return params;
+        }
+
+        for (String param : query.split("&")) {
+            final int eq = param.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+            }
+        }
+
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body)
+            throws IOException {
+
+        final byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        final OutputStream os = exchange.getResponseBody();
+        try {
+            os.write(bytes);
+        } finally {
+            os.close();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package volumes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+
+/**
+ * Memory benchmark comparing streaming and tree-based volume list parsing.
+ * <p>
+ * For each mode the benchmark reports bytes allocated by the parsing thread
+ * (including generation of the synthetic payload, which is the same for both
+ * modes) and heap retained by the result. Running it with the production heap size
+ * shows that the streaming mode stays within bounds where the tree-based mode
+ * does not:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -Xmx128m -cp target/classes:target/test-classes:$(cat cp.txt) \
+ *     volumes.MaprVolumeParserBenchmark 10000 50000 100000
+ * </pre>
+ */
+public class MaprVolumeParserBenchmark {
+
+    /**
+     * allocation counter of the current thread
+     */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+
+        final String[] sizes = args.length > 0 ? args :
+                new String[] { "1000", "10000", "50000" };
+
+        for (String size : sizes) {
+            final int count = Integer.parseInt(size);
+            run("streaming", count, false);
+            run("tree     ", count, true);
+        }
+    }
+
+    private static void run(String mode, int count, boolean tree) {
+
+        final long tid = Thread.currentThread().getId();
+        System.gc();
+        final long heapBefore = usedHeap();
+        final long allocBefore = THREADS.getThreadAllocatedBytes(tid);
+        final long start = System.nanoTime();
+
+        try {
+            final List<MaprVolume> volumes = tree
+                    ? parseTree(VolumeListFixture.stream(count))
+                    : MaprVolumeParser.parse(VolumeListFixture.stream(count));
+
+            final long millis = (System.nanoTime() - start) / 1000000;
+            final long allocated = THREADS.getThreadAllocatedBytes(tid) - allocBefore;
+            System.gc();
+            final long retained = usedHeap() - heapBefore;
+
+            System.out.println(String.format(
+                    "%s volumes=%-7d time=%6d ms allocated=%8d KB retained=%7d KB (%d volumes)",
+                    mode, count, millis, allocated / 1024, retained / 1024,
+                    volumes.size()));
+        } catch (OutOfMemoryError oom) {
+            System.out.println(String.format("%s volumes=%-7d OutOfMemoryError "
+                    + "(max heap %d MB)", mode, count,
+                    Runtime.getRuntime().maxMemory() / 1024 / 1024));
+        } catch (Exception e) {
+            System.out.println(mode + " failed: " + e);
+        }
+    }
+
+    private static long usedHeap() {
+        final Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * converts JSON input stream into list of MaprVolume objects by reading
+     * the whole response into a JSON tree (reference implementation)
+     */
+    static List<MaprVolume> parseTree(final InputStream is)
+            throws IOException {
+
+        final List<MaprVolume> volumes = new ArrayList<MaprVolume>();
+
+        try {
+            final JsonNode rootNode = new ObjectMapper().readTree(is);
+
+            final JsonNode statusNode = rootNode.get("status");
+            if (statusNode == null
+                    || statusNode.getNodeType() != JsonNodeType.STRING
+                    || !"OK".equals(statusNode.asText())) {
+                return Collections.emptyList();
+            }
+
+            final JsonNode dataNode = rootNode.get("data");
+            if (dataNode == null
+                    || dataNode.getNodeType() != JsonNodeType.ARRAY) {
+                return Collections.emptyList();
+            }
+
+            for (final Iterator<JsonNode> it = dataNode.iterator(); it
+                    .hasNext();) {
+
+                final MaprVolume maprVolume = parseVolume(it.next());
+                if (maprVolume != null) {
+                    volumes.add(maprVolume);
+                }
+            }
+
+        } catch (JsonProcessingException e) {
+            throw new IOException(e);
+        }
+
+        return Collections.unmodifiableList(volumes);
+    }
+
+    /**
+     * convert JSON data into MapR volume data item
+     */
+    private static MaprVolume parseVolume(final JsonNode volumeNode) {
+
+        final JsonNode volumeNameNode =
+                volumeNode.get(MaprVolumeParser.VOLUME_NAME_KEY);
+        final JsonNode mountDirNode =
+                volumeNode.get(MaprVolumeParser.VOLUME_MOUNTDIR_KEY);
+        if (volumeNameNode == null
+                || volumeNameNode.getNodeType() != JsonNodeType.STRING
+                || mountDirNode == null
+                || mountDirNode.getNodeType() != JsonNodeType.STRING) {
+            return null;
+        }
+
+        final MaprVolume volume = new MaprVolume(volumeNameNode.asText());
+        volume.setMountDir(mountDirNode.asText());
+
+        return volume;
+    }
+}
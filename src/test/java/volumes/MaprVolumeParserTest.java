@@ -0,0 +1,131 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for MaprVolumeParser
+ */
+public class MaprVolumeParserTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public MaprVolumeParserTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new MaprVolumeParserTest("testStreamingSkipsNestedData"));
+        suite.addTest(new MaprVolumeParserTest("testStreamingStatusAfterData"));
+        suite.addTest(new MaprVolumeParserTest("testStreamingErrorStatus"));
+        suite.addTest(new MaprVolumeParserTest("testStreamingMissingData"));
+        suite.addTest(new MaprVolumeParserTest("testStreamingMatchesTree"));
+        suite.addTest(new MaprVolumeParserTest("testStreamingVolumeAces"));
+        return suite;
+    }
+
+    private static InputStream toStream(String json) throws Exception {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+
+    // nested objects and arrays around the needed fields are skipped
+    public void testStreamingSkipsNestedData() throws Exception {
+
+        final String json = "{\"status\":\"OK\",\"total\":3,\"data\":["
+                + "{\"acl\":{\"Principal\":[\"User mapr\"]},\"volumename\":\"a_20160101\","
+                + "\"aggrinfo\":{\"mountdir\":\"/wrong\"},\"mountdir\":\"/a\"},"
+                + "{\"volumename\":\"b\"},"
+                + "{\"mountdir\":\"\",\"volumename\":\"c\",\"used\":[1,[2,3]]}]}";
+
+        final List<MaprVolume> volumes = new ArrayList<MaprVolume>();
+        assertEquals(3, MaprVolumeParser.parse(toStream(json), volumes));
+        assertEquals(2, volumes.size());
+        assertEquals("a_20160101", volumes.get(0).getName());
+        assertEquals("/a", volumes.get(0).getMountDir());
+        assertEquals("c", volumes.get(1).getName());
+        assertEquals("", volumes.get(1).getMountDir());
+    }
+
+    // status field may be serialized after the data array
+    public void testStreamingStatusAfterData() throws Exception {
+
+        final String json = "{\"data\":[{\"volumename\":\"a\",\"mountdir\":\"/a\"}],"
+                + "\"status\":\"OK\"}";
+
+        assertEquals(1, MaprVolumeParser.parse(toStream(json)).size());
+    }
+
+    // volumes of an error response are discarded
+    public void testStreamingErrorStatus() throws Exception {
+
+        final String json = "{\"data\":[{\"volumename\":\"a\",\"mountdir\":\"/a\"}],"
+                + "\"status\":\"ERROR\",\"errors\":[{\"desc\":\"failure\"}]}";
+
+        final List<MaprVolume> volumes = new ArrayList<MaprVolume>();
+        volumes.add(new MaprVolume("existing"));
+        assertEquals(-1, MaprVolumeParser.parse(toStream(json), volumes));
+        assertEquals(1, volumes.size());
+        assertTrue(MaprVolumeParser.parse(toStream(json)).isEmpty());
+    }
+
+    // a response without data array is not a valid (empty) volume list
+    public void testStreamingMissingData() throws Exception {
+
+        final List<MaprVolume> volumes = new ArrayList<MaprVolume>();
+        assertEquals(-1, MaprVolumeParser.parse(toStream("{\"status\":\"OK\"}"),
+                volumes));
+        assertEquals(-1, MaprVolumeParser.parse(
+                toStream("{\"status\":\"OK\",\"data\":{}}"), volumes));
+        assertTrue(volumes.isEmpty());
+        assertEquals(0, MaprVolumeParser.parse(
+                toStream("{\"status\":\"OK\",\"data\":[]}"), volumes));
+    }
+
+    // streaming and tree-based parsers produce the same volume list
+    public void testStreamingMatchesTree() throws Exception {
+
+        final int count = 2000;
+        final List<MaprVolume> streamed =
+                MaprVolumeParser.parse(VolumeListFixture.stream(count));
+        final List<MaprVolume> tree =
+                MaprVolumeParserBenchmark.parseTree(toStream(VolumeListFixture.json(count)));
+
+        assertEquals(count, streamed.size());
+        assertEquals(tree.size(), streamed.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(tree.get(i).getName(), streamed.get(i).getName());
+            assertEquals(tree.get(i).getMountDir(), streamed.get(i).getMountDir());
+        }
+    }
+
+    // whole volume ACEs are kept if listed
+    public void testStreamingVolumeAces() throws Exception {
+
+        final String json = "{\"status\":\"OK\",\"data\":["
+                + "{\"volumename\":\"a\",\"mountdir\":\"/a\","
+                + "\"volumeAces\":{\"readAce\":\"g:silog | u:pdtrump\",\"writeAce\":\"u:silog\"}},"
+                + "{\"volumename\":\"b\",\"mountdir\":\"/b\"}]}";
+
+        final List<MaprVolume> volumes = MaprVolumeParser.parse(toStream(json));
+        assertEquals(2, volumes.size());
+        assertEquals("g:silog | u:pdtrump", volumes.get(0).getReadAce());
+        assertEquals("u:silog", volumes.get(0).getWriteAce());
+        assertNull(volumes.get(1).getReadAce());
+    }
+}
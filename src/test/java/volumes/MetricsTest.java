@@ -0,0 +1,127 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Unit test for Metrics, MetricsDynamicMBean and MetricsServer
+ */
+public class MetricsTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public MetricsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new MetricsTest("testScrape"));
+        suite.addTest(new MetricsTest("testJmx"));
+        suite.addTest(new MetricsTest("testServer"));
+        return suite;
+    }
+
+    public void testScrape() {
+
+        Metrics.timer("test.scrape").record(2000000000L);
+        Metrics.counter("test.scrape.events").add(3);
+        Metrics.gauge("test.scrape.level").set(7);
+
+        final String text = MetricsServer.scrape();
+
+        assertTrue(text.contains(
+                "# TYPE volume_manager_test_scrape_seconds histogram\n"));
+        assertTrue(text.contains(
+                "volume_manager_test_scrape_seconds_bucket{le=\"1\"} 0\n"));
+        assertTrue(text.contains(
+                "volume_manager_test_scrape_seconds_bucket{le=\"5\"} 1\n"));
+        assertTrue(text.contains(
+                "volume_manager_test_scrape_seconds_bucket{le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("volume_manager_test_scrape_seconds_sum 2.000000\n"));
+        assertTrue(text.contains("volume_manager_test_scrape_seconds_count 1\n"));
+        assertTrue(text.contains("volume_manager_test_scrape_seconds_max 2.000000\n"));
+        assertTrue(text.contains("volume_manager_test_scrape_events_total 3\n"));
+        assertTrue(text.contains("volume_manager_test_scrape_level 7\n"));
+    }
+
+    public void testJmx() throws Exception {
+
+        Metrics.timer("test.jmx").record(5000000L);
+        Metrics.counter("test.jmx.events").inc();
+
+        MetricsDynamicMBean.register();
+        // registering twice is harmless
+        MetricsDynamicMBean.register();
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(MetricsDynamicMBean.OBJECT_NAME);
+
+        assertEquals(Long.valueOf(1), server.getAttribute(name, "test.jmx.count"));
+        assertEquals(5.0, ((Double) server.getAttribute(name, "test.jmx.max"))
+                .doubleValue(), 0.001);
+        assertEquals(Long.valueOf(1), server.getAttribute(name, "test.jmx.events"));
+
+        boolean listed = false;
+        for (MBeanAttributeInfo info
+                : server.getMBeanInfo(name).getAttributes()) {
+            listed |= "test.jmx.p99".equals(info.getName());
+        }
+        assertTrue(listed);
+
+        try {
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            fail();
+        } catch (ReflectionException e) {
+            assertTrue(e.getTargetException() instanceof NoSuchMethodException);
+        }
+    }
+
+    public void testServer() throws Exception {
+
+        Metrics.counter("test.server.events").inc();
+
+        final MetricsServer server = MetricsServer.start(0);
+        assertNotNull(server);
+        try {
+            final HttpURLConnection conn = (HttpURLConnection) new URL(
+                    "http://localhost:" + server.getPort() + "/metrics")
+                    .openConnection();
+            assertEquals(200, conn.getResponseCode());
+
+            final InputStream is = conn.getInputStream();
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final byte[] buf = new byte[4096];
+            for (int n; (n = is.read(buf)) > 0;) {
+                body.write(buf, 0, n);
+            }
+            is.close();
+
+            assertTrue(body.toString("UTF-8").contains(
+                    "volume_manager_test_server_events_total 1\n"));
+        } finally {
+            server.stop();
+        }
+    }
+}
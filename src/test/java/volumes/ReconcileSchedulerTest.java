@@ -0,0 +1,124 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Unit test for ReconcileScheduler
+ */
+public class ReconcileSchedulerTest
+    extends TestCase
+{
+    static private VolumeManagerConfiguration basicTestConf;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ReconcileSchedulerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        basicTestConf = new VolumeManagerConfiguration(new File("./src/test/resources/conf.basic"));
+        TestSuite suite = new TestSuite();
+        suite.addTest(new ReconcileSchedulerTest("testNextBoundary"));
+        suite.addTest(new ReconcileSchedulerTest("testSchedule"));
+        suite.addTest(new ReconcileSchedulerTest("testTriggerFile"));
+        return suite;
+    }
+
+    // next boundary is the earliest day, month or year start of any VG
+    public void testNextBoundary() {
+
+        final Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2019, Calendar.MARCH, 14, 15, 30);
+        final long now = cal.getTimeInMillis();
+
+        final List<VolumeGroupConfiguration> vgs =
+                new ArrayList<VolumeGroupConfiguration>();
+        for (VolumeGroupConfiguration vgc : basicTestConf.getVgMap().values()) {
+            if (!"day".equals(vgc.getInterval())) {
+                vgs.add(vgc);
+            }
+        }
+        cal.clear();
+        cal.set(2019, Calendar.APRIL, 1);
+        assertEquals(cal.getTimeInMillis(),
+                ReconcileScheduler.nextBoundary(vgs, now));
+
+        cal.clear();
+        cal.set(2019, Calendar.MARCH, 15);
+        assertEquals(cal.getTimeInMillis(), ReconcileScheduler.nextBoundary(
+                basicTestConf.getVgMap().values(), now));
+
+        assertEquals(Long.MAX_VALUE, ReconcileScheduler.nextBoundary(
+                new ArrayList<VolumeGroupConfiguration>(), now));
+    }
+
+    // reconcile is due at boundary, full interval, trigger or after failure
+    public void testSchedule() {
+
+        final ReconcileScheduler scheduler = new ReconcileScheduler(null);
+        final long now = System.currentTimeMillis();
+        final long boundary = ReconcileScheduler.nextBoundary(
+                basicTestConf.getVgMap().values(), now);
+        assertTrue(scheduler.isDue(now));
+
+        scheduler.reconciled(true, basicTestConf.getVgMap().values(), now,
+                Long.MAX_VALUE - now);
+        assertFalse(scheduler.isDue(now + 1000));
+        assertFalse(scheduler.isDue(boundary - 1));
+        assertTrue(scheduler.isDue(boundary));
+
+        scheduler.reconciled(true, basicTestConf.getVgMap().values(), now, 1000);
+        assertFalse(scheduler.isDue(now + 999));
+        assertTrue(scheduler.isDue(now + 1000));
+
+        scheduler.trigger("test");
+        assertTrue(scheduler.isDue(now));
+
+        scheduler.reconciled(false, basicTestConf.getVgMap().values(), now,
+                3600000);
+        assertTrue(scheduler.isDue(now));
+    }
+
+    // trigger file requests reconcile once
+    public void testTriggerFile() throws Exception {
+
+        final File dir = File.createTempFile("reconcile", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        try {
+            final long now = System.currentTimeMillis();
+            final ReconcileScheduler scheduler = new ReconcileScheduler(dir);
+            scheduler.reconciled(true, basicTestConf.getVgMap().values(), now,
+                    3600000);
+            assertFalse(scheduler.isDue(now));
+
+            final File trigger = new File(dir, ReconcileScheduler.TRIGGER_FILE);
+            assertTrue(trigger.createNewFile());
+            assertTrue(scheduler.isDue(now));
+            assertFalse(trigger.exists());
+
+            scheduler.reconciled(true, basicTestConf.getVgMap().values(), now,
+                    3600000);
+            assertFalse(scheduler.isDue(now));
+        } finally {
+            new File(dir, ReconcileScheduler.TRIGGER_FILE).delete();
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit test for RestClient
+ */
+public class RestClientTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public RestClientTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new RestClientTest("testHedgedCall"));
+        suite.addTest(new RestClientTest("testHedgeNotNeeded"));
+        return suite;
+    }
+
+    private static final RestClient.ResponseHandler<String> BODY =
+            new RestClient.ResponseHandler<String>() {
+
+        @Override
+        public String handle(InputStream is) throws IOException {
+            return new BufferedReader(new InputStreamReader(is, "UTF-8"))
+                    .readLine();
+        }
+    };
+
+    // straggling primary call is overtaken by the hedged call
+    public void testHedgedCall() throws Exception {
+
+        final HttpServer slow = startServer("slow", 3000);
+        final HttpServer fast = startServer("fast", 0);
+        try {
+            final RestClient client = new RestClient(1000, 10000, 4, null, null);
+            final long start = System.currentTimeMillis();
+            final String body = client.getHedged(url(slow), url(fast), 100, BODY);
+
+            assertEquals("fast", body);
+            assertTrue(System.currentTimeMillis() - start < 2000);
+        } finally {
+            slow.stop(0);
+            fast.stop(0);
+        }
+    }
+
+    // no hedged call if the primary call answers within the delay
+    public void testHedgeNotNeeded() throws Exception {
+
+        final HttpServer primary = startServer("primary", 0);
+        final HttpServer hedge = startServer("hedge", 0);
+        try {
+            final RestClient client = new RestClient(1000, 10000, 4, null, null);
+            assertEquals("primary",
+                    client.getHedged(url(primary), url(hedge), 2000, BODY));
+        } finally {
+            primary.stop(0);
+            hedge.stop(0);
+        }
+    }
+
+    private static String url(final HttpServer server) {
+        return "http://localhost:" + server.getAddress().getPort()
+                + "/rest/volume/list";
+    }
+
+    private static HttpServer startServer(final String body, final long delay)
+            throws IOException {
+
+        final HttpServer server =
+                HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                final byte[] bytes = body.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, bytes.length);
+                final OutputStream os = exchange.getResponseBody();
+                os.write(bytes);
+                os.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,113 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit test for RestNodeSelector
+ */
+public class RestNodeSelectorTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public RestNodeSelectorTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new RestNodeSelectorTest("testSelectsFastestNode"));
+        suite.addTest(new RestNodeSelectorTest("testServerErrors"));
+        suite.addTest(new RestNodeSelectorTest("testProbeRecovery"));
+        return suite;
+    }
+
+    // a slow node loses its selection to a faster one
+    public void testSelectsFastestNode() {
+
+        final RestNodeSelector selector = new RestNodeSelector(
+                Arrays.asList("node1", "node2"), "https", "8443", 0, 1000);
+
+        assertEquals("https://node1:8443", selector.select());
+        selector.recordResponse("node1", 100, false);
+        // unmeasured node is tried next
+        assertEquals("https://node2:8443", selector.select());
+        selector.recordResponse("node2", 50, false);
+        assertEquals("https://node2:8443", selector.select());
+
+        // node2 becomes slow
+        for (int i = 0; i < 10; i++) {
+            selector.recordResponse("node2", 1000, false);
+        }
+        assertEquals("https://node1:8443", selector.select());
+        assertEquals("https://node2:8443", selector.select("https://node1:8443"));
+    }
+
+    // repeated 5xx take a node out of rotation, transport failures at once
+    public void testServerErrors() {
+
+        final RestNodeSelector selector = new RestNodeSelector(
+                Arrays.asList("node1", "node2"), "https", "8443", 0, 1000);
+        selector.recordResponse("node1", 10, false);
+        selector.recordResponse("node2", 100, false);
+
+        selector.recordResponse("node1", 10, true);
+        selector.recordResponse("node1", 10, true);
+        selector.recordResponse("node1", 10, true);
+        assertEquals("https://node2:8443", selector.select());
+
+        selector.recordFailure("node2", new ConnectException("refused"));
+        // all down, still returns a node
+        assertNotNull(selector.select());
+    }
+
+    // probe brings a responding node back, even if it answers 401
+    public void testProbeRecovery() throws Exception {
+
+        final HttpServer server =
+                HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(401, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        try {
+            final String port = Integer.toString(server.getAddress().getPort());
+            final RestNodeSelector selector = new RestNodeSelector(
+                    Arrays.asList("localhost", "127.0.0.1"), "http", port, 0,
+                    1000);
+            selector.recordResponse("127.0.0.1", 500, false);
+            selector.recordFailure("localhost", new ConnectException("refused"));
+            assertEquals("http://127.0.0.1:" + port, selector.select());
+
+            assertEquals(1, selector.probe());
+            assertEquals("http://localhost:" + port, selector.select());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
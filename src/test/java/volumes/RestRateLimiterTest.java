@@ -0,0 +1,79 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for RestRateLimiter
+ */
+public class RestRateLimiterTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public RestRateLimiterTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new RestRateLimiterTest("testBurstAndRate"));
+        suite.addTest(new RestRateLimiterTest("testAdaptiveRate"));
+        return suite;
+    }
+
+    // burst passes immediately, further calls are spaced by the rate
+    public void testBurstAndRate() throws Exception {
+
+        final RestRateLimiter limiter = new RestRateLimiter(20, 5);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+        }
+        assertTrue((System.nanoTime() - start) / 1000000 < 40);
+
+        start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+        // 4 calls at 20 calls/s take at least 200 ms
+        assertTrue((System.nanoTime() - start) / 1000000 >= 180);
+    }
+
+    // rate halves on overload, recovers additively, stays within bounds
+    public void testAdaptiveRate() {
+
+        final RestRateLimiter limiter = new RestRateLimiter(100, 1);
+
+        limiter.onSuccess();
+        assertEquals(100.0, limiter.getRate(), 0.001);
+
+        limiter.onOverload();
+        assertEquals(50.0, limiter.getRate(), 0.001);
+        limiter.onOverload();
+        assertEquals(25.0, limiter.getRate(), 0.001);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.onOverload();
+        }
+        assertEquals(5.0, limiter.getRate(), 0.001);
+
+        limiter.onSuccess();
+        assertEquals(10.0, limiter.getRate(), 0.001);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess();
+        }
+        assertEquals(100.0, limiter.getRate(), 0.001);
+    }
+}
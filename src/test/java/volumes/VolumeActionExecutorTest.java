@@ -0,0 +1,166 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit test for VolumeActionExecutor and RetryScheduler
+ */
+public class VolumeActionExecutorTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public VolumeActionExecutorTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new VolumeActionExecutorTest("testBackoff"));
+        suite.addTest(new VolumeActionExecutorTest("testRetryDoesNotBlock"));
+        suite.addTest(new VolumeActionExecutorTest("testStepOrder"));
+        suite.addTest(new VolumeActionExecutorTest("testUnexpectedFailure"));
+        return suite;
+    }
+
+    // backoff grows exponentially, stays within jitter range and is capped
+    public void testBackoff() {
+
+        final RetryScheduler<Object> scheduler = new RetryScheduler<Object>(100, 400);
+        for (int i = 0; i < 100; i++) {
+            final long first = scheduler.backoff(2);
+            final long second = scheduler.backoff(3);
+            final long capped = scheduler.backoff(10);
+            assertTrue(first >= 50 && first <= 100);
+            assertTrue(second >= 100 && second <= 200);
+            assertTrue(capped >= 200 && capped <= 400);
+        }
+    }
+
+    // a failing action is parked while the other actions complete
+    public void testRetryDoesNotBlock() {
+
+        final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+        final List<VolumeAction> actions = new ArrayList<VolumeAction>();
+
+        final int[] failures = { 2 };
+        actions.add(new VolumeAction("flaky", 3).addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() throws VolumeAction.StepFailure {
+                if (failures[0]-- > 0) {
+                    throw new VolumeAction.StepFailure("flaky failure", true);
+                }
+                completed.add("flaky");
+            }
+        }));
+
+        for (int i = 0; i < 5; i++) {
+            final String name = "vol" + i;
+            actions.add(new VolumeAction(name, 3).addStep(new VolumeAction.Step() {
+
+                @Override
+                public void run() {
+                    completed.add(name);
+                }
+            }));
+        }
+
+        // a single worker must not wait for the flaky action's retry delay
+        final VolumeActionExecutor executor = new VolumeActionExecutor(1, 200);
+        final long start = System.currentTimeMillis();
+        executor.runPhase("test", actions);
+        final long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(6, completed.size());
+        assertEquals("flaky", completed.get(5));
+        assertTrue(elapsed >= 100 && elapsed < 2000);
+        executor.shutdown();
+    }
+
+    // steps of an action run in order, also when retried on a worker pool
+    public void testStepOrder() {
+
+        final List<String> steps = Collections.synchronizedList(new ArrayList<String>());
+        final boolean[] failed = { false };
+
+        final VolumeAction action = new VolumeAction("ordered", 3);
+        action.addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() {
+                steps.add("mkdir");
+            }
+        }).addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() throws VolumeAction.StepFailure {
+                if (!failed[0]) {
+                    failed[0] = true;
+                    throw new VolumeAction.StepFailure("create failure", true);
+                }
+                steps.add("create");
+            }
+        }).addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() {
+                steps.add("chown");
+            }
+        });
+
+        final VolumeActionExecutor executor = new VolumeActionExecutor(4, 10);
+        executor.runPhase("test", Collections.singletonList(action));
+        executor.shutdown();
+
+        assertEquals(3, steps.size());
+        assertEquals("mkdir", steps.get(0));
+        assertEquals("create", steps.get(1));
+        assertEquals("chown", steps.get(2));
+    }
+
+    // an action throwing unexpectedly is failed, remaining steps are skipped
+    public void testUnexpectedFailure() {
+
+        VolumeManager.setConf(new VolumeManagerConfiguration(
+                new File("./src/test/resources/conf.basic")));
+
+        final List<String> steps = Collections.synchronizedList(new ArrayList<String>());
+        final VolumeAction action = new VolumeAction("throwing", 3);
+        action.addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() {
+                throw new IllegalStateException("unexpected");
+            }
+        }).addStep(new VolumeAction.Step() {
+
+            @Override
+            public void run() {
+                steps.add("chown");
+            }
+        });
+
+        final VolumeActionExecutor executor = new VolumeActionExecutor(2, 10);
+        executor.runPhase("test", Collections.singletonList(action));
+        executor.shutdown();
+
+        assertTrue(action.isFailed());
+        assertTrue(steps.isEmpty());
+    }
+}
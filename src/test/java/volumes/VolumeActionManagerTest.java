@@ -7,6 +7,8 @@ import junit.framework.TestSuite;
 import java.io.File;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Date;
 import java.text.SimpleDateFormat;
 
@@ -55,6 +57,9 @@ public class VolumeActionManagerTest
         suite.addTest(new VolumeActionManagerTest("testRetentionForever"));
         suite.addTest(new VolumeActionManagerTest("testDefAetype"));
         suite.addTest(new VolumeActionManagerTest("testDefSchedule"));
+        suite.addTest(new VolumeActionManagerTest("testPagedDeltaLists"));
+        suite.addTest(new VolumeActionManagerTest("testGroupByPathDepth"));
+        suite.addTest(new VolumeActionManagerTest("testIncrementalTargetMap"));
         return suite;
     }
 
@@ -171,4 +176,93 @@ public class VolumeActionManagerTest
         String vcUrl = vam.buildVolumeCreateURL(vol);
         assertTrue(!vcUrl.contains("schedule=0"));
     }
+
+    // volume list processed in pages gives the same result as a single list
+    public void testPagedDeltaLists() {
+
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
+        Date date = new Date(System.currentTimeMillis());
+        String today = sdf.format(date.getTime());
+        String one_week_ago = sdf.format(date.getTime() - 86400*7*1000);
+
+        ArrayList<MaprVolume> page1 = new ArrayList<MaprVolume>();
+        page1.add(new MaprVolume("unrelated_volume"));
+        page1.add(new MaprVolume("auto_test_daily_" + today));
+        ArrayList<MaprVolume> page2 = new ArrayList<MaprVolume>();
+        page2.add(new MaprVolume("auto_test_daily_" + one_week_ago));
+        // listed again as the list changed between pages
+        page2.add(new MaprVolume("auto_test_daily_" + today));
+
+        assertTrue(vam.prepareTargets(basicTestConf));
+        vam.addVolumes(page1);
+        vam.addVolumes(page2);
+        vam.finishDeltaLists();
+        assertTrue(vam.getCreateList().size() == 14);
+        assertTrue(vam.getPurgeList().size() == 1);
+    }
+
+    // nested mount paths are created in later waves than their parents
+    public void testGroupByPathDepth() {
+
+        ArrayList<MaprVolume> list = new ArrayList<MaprVolume>();
+        MaprVolume child = new MaprVolume("child");
+        child.setPath("/data/2016/01");
+        MaprVolume parent = new MaprVolume("parent");
+        parent.setPath("/data/2016");
+        MaprVolume sibling = new MaprVolume("sibling");
+        sibling.setPath("/logs/2016");
+        list.add(child);
+        list.add(parent);
+        list.add(sibling);
+
+        final List<List<MaprVolume>> waves = VolumeActionManager.groupByPathDepth(list);
+        assertEquals(2, waves.size());
+        assertEquals(2, waves.get(0).size());
+        assertTrue(waves.get(0).contains(parent));
+        assertTrue(waves.get(0).contains(sibling));
+        assertEquals(child, waves.get(1).get(0));
+    }
+
+    // target map is kept between iterations and updated incrementally
+    public void testIncrementalTargetMap() {
+
+        final VolumeActionManager manager = new VolumeActionManager();
+        final SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
+        final Calendar cal = Calendar.getInstance();
+        final Date now = cal.getTime();
+
+        manager.updateTargetMap(basicTestConf.getVgMap(), now);
+        final Map<String, MaprVolume> first =
+                new HashMap<String, MaprVolume>(manager.targetVolMap);
+        assertEquals(15, first.size());
+
+        // reloaded, unchanged configuration keeps volume instances
+        manager.updateTargetMap(new VolumeManagerConfiguration(
+                new File("./src/test/resources/conf.basic")).getVgMap(), now);
+        assertEquals(first.size(), manager.targetVolMap.size());
+        for (Map.Entry<String, MaprVolume> entry : first.entrySet()) {
+            assertSame(entry.getValue(), manager.targetVolMap.get(entry.getKey()));
+        }
+
+        // next day, daily window moves by one
+        final String today = sdf.format(cal.getTime());
+        cal.add(Calendar.DATE, -2);
+        final String oldest = sdf.format(cal.getTime());
+        cal.add(Calendar.DATE, 5);
+        final String newest = sdf.format(cal.getTime());
+        cal.add(Calendar.DATE, -2);
+        manager.updateTargetMap(basicTestConf.getVgMap(), cal.getTime());
+        assertEquals(15, manager.targetVolMap.size());
+        assertFalse(manager.targetVolMap.containsKey("auto_test_daily_" + oldest));
+        assertTrue(manager.targetVolMap.containsKey("auto_test_daily_" + newest));
+        assertSame(first.get("auto_test_daily_" + today),
+                manager.targetVolMap.get("auto_test_daily_" + today));
+
+        // modified VGs replace all their targets
+        manager.updateTargetMap(retentionTestConf.getVgMap(), now);
+        for (Map.Entry<String, MaprVolume> entry : first.entrySet()) {
+            assertNotSame(entry.getValue(),
+                    manager.targetVolMap.get(entry.getKey()));
+        }
+    }
 }
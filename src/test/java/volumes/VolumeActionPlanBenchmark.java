@@ -0,0 +1,80 @@
+package volumes;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH throughput of planning volume actions: building the target map and
+ * the delta lists from a cluster volume list (see 'benchmark' profile in
+ * pom.xml). 'firstPlan' starts from an empty target map like the first main
+ * loop iteration, 'steadyPlan' reuses it like all later iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class VolumeActionPlanBenchmark {
+
+    @Param({ "10", "1000" })
+    private int vgs;
+
+    @Param({ "1000", "10000", "100000" })
+    private int volumes;
+
+    private File confDir;
+    private VolumeManagerConfiguration conf;
+    private List<MaprVolume> clusterVolumes;
+    private VolumeActionManager steady;
+
+    @Setup
+    public void setup() throws Exception {
+        confDir = VolumeGroupFixture.createConfDir(vgs);
+        conf = new VolumeManagerConfiguration(confDir);
+        clusterVolumes = VolumeGroupFixture.clusterVolumes(conf, volumes);
+        steady = newManager();
+    }
+
+    @TearDown
+    public void tearDown() {
+        VolumeGroupFixture.deleteConfDir(confDir);
+    }
+
+    @Benchmark
+    public VolumeActionManager firstPlan() {
+        return plan(newManager());
+    }
+
+    @Benchmark
+    public VolumeActionManager steadyPlan() {
+        return plan(steady);
+    }
+
+    private VolumeActionManager newManager() {
+        final VolumeActionManager vam = new VolumeActionManager();
+        vam.setVMConf(conf);
+        return vam;
+    }
+
+    private VolumeActionManager plan(VolumeActionManager vam) {
+        vam.updateTargetMap(conf.getVgMap(), new Date());
+        vam.genDeltaLists(conf.getVgMap(), clusterVolumes);
+        return vam;
+    }
+}
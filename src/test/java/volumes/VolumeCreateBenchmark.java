@@ -0,0 +1,127 @@
+package volumes;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH time of executing the creation of all volumes of 10 VGs (110 volumes)
+ * against MaprRestSimulator and InMemoryVolumeFileSystem, with FS operations
+ * taking 'fsLatencyMicros' each and failing at 'fsFailureRate', executed
+ * with 'concurrency' workers and retried after 10 ms (see 'benchmark'
+ * profile in pom.xml). The 'creates', 'fsOps', 'fsFailures' and
+ * 'missingVolumes' counters give the FS round trips per volume creation and
+ * the volumes not created after all attempts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VolumeCreateBenchmark {
+
+    @Param({ "1", "8" })
+    private int concurrency;
+
+    @Param({ "1000" })
+    private long fsLatencyMicros;
+
+    @Param({ "0", "0.05", "0.2" })
+    private double fsFailureRate;
+
+    /**
+     * counters reported along with the time
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long creates;
+        public long missingVolumes;
+        public long fsOps;
+        public long fsFailures;
+    }
+
+    private File confDir;
+    private VolumeManagerConfiguration conf;
+    private MaprRestSimulator sim;
+    private InMemoryVolumeFileSystem fs;
+    private VolumeActionManager vam;
+
+    @Setup
+    public void setup() throws Exception {
+
+        sim = new MaprRestSimulator(16);
+        sim.start();
+        fs = new InMemoryVolumeFileSystem();
+        fs.setLatencyMicros(fsLatencyMicros);
+        fs.setFailureRate(fsFailureRate);
+        sim.setFileSystem(fs);
+
+        final Map<String, String> props = new HashMap<String, String>();
+        props.put(VolumeManagerConfiguration.MAPR_REST_NODES_KEY, "localhost");
+        props.put(VolumeManagerConfiguration.MAPR_REST_PORT_KEY,
+                String.valueOf(sim.getPort()));
+        props.put(VolumeManagerConfiguration.MAPR_REST_SCHEME_KEY, "http");
+        props.put(VolumeManagerConfiguration.REST_RATE_LIMIT, "0");
+        props.put(VolumeManagerConfiguration.REST_PROBE_INTERVAL, "0");
+        props.put(VolumeManagerConfiguration.ACTION_CONCURRENCY,
+                String.valueOf(concurrency));
+        props.put(VolumeManagerConfiguration.ACTION_RETRY_DELAY, "10");
+        confDir = VolumeGroupFixture.createConfDir(10, props);
+        conf = new VolumeManagerConfiguration(confDir);
+        VolumeManager.setConf(conf);
+
+        vam = new VolumeActionManager();
+        vam.setVMConf(conf);
+        vam.setFileSystem(fs);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sim.stop();
+        VolumeGroupFixture.deleteConfDir(confDir);
+    }
+
+    /**
+     * empty cluster: all target volumes are to be created
+     */
+    @Setup(Level.Invocation)
+    public void emptyCluster() {
+        sim.clear();
+        fs.clear();
+        fs.resetCounts();
+        vam.prepare(conf, Collections.<MaprVolume>emptyList());
+    }
+
+    @Benchmark
+    public boolean createAll(Counters counters) {
+
+        final boolean success = vam.execute();
+
+        final int creates = vam.getCreateList().size();
+        counters.creates += creates;
+        counters.missingVolumes += creates - sim.getVolumeCount();
+        counters.fsOps += fs.getOpCount();
+        counters.fsFailures += fs.getFailureCount();
+        return success;
+    }
+}
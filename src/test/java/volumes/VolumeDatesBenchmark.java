@@ -0,0 +1,102 @@
+package volumes;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH comparison of the date handling formerly done with a new
+ * SimpleDateFormat per call ('legacy' methods, copied from the previous
+ * implementation) and the cached formatter and integer date arithmetic
+ * ('cached' methods):
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) \
+ *     volumes.VolumeDatesBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VolumeDatesBenchmark {
+
+    private static final String PATH_FORMAT =
+            "'/projects/silog/data/year='yyyy/'month='MM/'day='dd";
+
+    private final PathFormatter formatter = new PathFormatter(PATH_FORMAT);
+    private final String appender = "20190301";
+    private final String volumeName = "silog_data_sialt_20190301";
+    private final long now = System.currentTimeMillis();
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(VolumeDatesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    // volume name appender of a daily VG, 7 days ahead
+
+    @Benchmark
+    public String legacyAppender() {
+        final SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
+        final Calendar cal = Calendar.getInstance();
+        cal.setTime(new Date(now));
+        cal.add(Calendar.DATE, 7);
+        return sdf.format(cal.getTime());
+    }
+
+    @Benchmark
+    public String cachedAppender() {
+        return Integer.toString(VolumeDates.appender(now, Calendar.DATE, 7));
+    }
+
+    // mount path of a volume from its appender
+
+    @Benchmark
+    public String legacyPath() throws ParseException {
+        final DateFormat df = new SimpleDateFormat("yyyyMMdd");
+        final Date date = df.parse(appender);
+        return new SimpleDateFormat(PATH_FORMAT).format(date.getTime());
+    }
+
+    @Benchmark
+    public String cachedPath() {
+        return formatter.format(VolumeDates.parse(appender));
+    }
+
+    // purge check of a cluster volume
+
+    @Benchmark
+    public boolean legacyPurgeCheck() {
+        final String[] splits = volumeName.split("_");
+        final String date = splits[splits.length - 1];
+        final SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
+        final Calendar cal = Calendar.getInstance();
+        cal.setTime(new Date(now));
+        final String today = sdf.format(cal.getTime());
+        return Integer.valueOf(today) > Integer.valueOf(date);
+    }
+
+    @Benchmark
+    public boolean cachedPurgeCheck() {
+        return VolumeDates.today(now) > VolumeDates.parseSuffix(volumeName);
+    }
+}
@@ -0,0 +1,126 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit test for VolumeDates and PathFormatter
+ */
+public class VolumeDatesTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public VolumeDatesTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new VolumeDatesTest("testAppenderMatchesSimpleDateFormat"));
+        suite.addTest(new VolumeDatesTest("testParseSuffix"));
+        suite.addTest(new VolumeDatesTest("testPathFormatterThreadSafe"));
+        return suite;
+    }
+
+    // appenders equal those formerly computed with SimpleDateFormat
+    public void testAppenderMatchesSimpleDateFormat() {
+
+        final SimpleDateFormat daily = new SimpleDateFormat("yyyyMMdd");
+        final SimpleDateFormat monthly = new SimpleDateFormat("yyyyMM01");
+        final SimpleDateFormat yearly = new SimpleDateFormat("yyyy0101");
+
+        final Calendar start = Calendar.getInstance();
+        start.set(2015, Calendar.DECEMBER, 25, 23, 59);
+        for (int day = 0; day < 800; day += 3) {
+            final Calendar now = (Calendar) start.clone();
+            now.add(Calendar.DATE, day);
+            for (int offset = -40; offset <= 40; offset += 7) {
+                assertEquals(expected(daily, now, Calendar.DATE, offset),
+                        VolumeDates.appender(now.getTimeInMillis(), Calendar.DATE, offset));
+                assertEquals(expected(monthly, now, Calendar.MONTH, offset),
+                        VolumeDates.appender(now.getTimeInMillis(), Calendar.MONTH, offset));
+                assertEquals(expected(yearly, now, Calendar.YEAR, offset),
+                        VolumeDates.appender(now.getTimeInMillis(), Calendar.YEAR, offset));
+            }
+        }
+        assertEquals(-1, VolumeDates.appender(System.currentTimeMillis(), Calendar.ERA, 0));
+        assertEquals(daily.format(VolumeDates.toDate(20160229)), "20160229");
+    }
+
+    // volume name suffixes are parsed like Integer.valueOf on the last split
+    public void testParseSuffix() {
+
+        assertEquals(20190301, VolumeDates.parseSuffix("vg_20190301"));
+        assertEquals(20190301, VolumeDates.parseSuffix("vg_x_20190301"));
+        assertEquals(123, VolumeDates.parseSuffix("vg_123"));
+        assertEquals(-1, VolumeDates.parseSuffix("vg_"));
+        assertEquals(-1, VolumeDates.parseSuffix("20190301"));
+        assertEquals(-1, VolumeDates.parseSuffix("vg_2019a301"));
+        assertEquals(-1, VolumeDates.parseSuffix("vg_12345678901"));
+        assertEquals(20190301, VolumeDates.parse("20190301"));
+        assertEquals(-1, VolumeDates.parse("2019031"));
+    }
+
+    // formatter is shared safely across threads
+    public void testPathFormatterThreadSafe() throws Exception {
+
+        final PathFormatter formatter = new PathFormatter("'/data/'yyyy/MM/dd");
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                results.add(pool.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() {
+                        final SimpleDateFormat sdf =
+                                new SimpleDateFormat("'/data/'yyyy/MM/dd");
+                        for (int i = 0; i < 2000; i++) {
+                            final int date = VolumeDates.appender(
+                                    System.currentTimeMillis(), Calendar.DATE,
+                                    seed * 1000 + i);
+                            final Date d = VolumeDates.toDate(date);
+                            if (!sdf.format(d).equals(formatter.format(date))) {
+                                return Boolean.FALSE;
+                            }
+                        }
+                        return Boolean.TRUE;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get().booleanValue());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static int expected(SimpleDateFormat sdf, Calendar now,
+            int interval, int offset) {
+        final Calendar cal = (Calendar) now.clone();
+        cal.add(interval, offset);
+        return Integer.parseInt(sdf.format(cal.getTime()));
+    }
+}
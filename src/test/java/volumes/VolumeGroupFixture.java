@@ -0,0 +1,147 @@
+package volumes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic volume manager configuration directories with a given number of
+ * volume group files, and matching cluster volume lists, for tests and
+ * benchmarks.
+ */
+class VolumeGroupFixture {
+
+    /**
+     * intervals assigned to the VGs in turn
+     */
+    private static final String[] INTERVALS = { "day", "month", "year" };
+
+    /**
+     * retrieve name of the given VG
+     */
+    static String vgName(int i) {
+        return "fixture_vg_" + i;
+    }
+
+    /**
+     * creates a temporary configuration directory holding volume-manager.xml
+     * and a vg.d directory with the given number of VG files
+     */
+    static File createConfDir(int vgCount) throws IOException {
+        return createConfDir(vgCount, new HashMap<String, String>());
+    }
+
+    /**
+     * creates a temporary configuration directory as createConfDir(int),
+     * with the given volume-manager.xml properties added or replaced
+     */
+    static File createConfDir(int vgCount, Map<String, String> properties)
+            throws IOException {
+
+        final File confDir = File.createTempFile("volume-manager-fixture", "");
+        if (!confDir.delete() || !confDir.mkdir()) {
+            throw new IOException("unable to create " + confDir);
+        }
+        final File vgDir = new File(confDir, "vg.d");
+        if (!vgDir.mkdir()) {
+            throw new IOException("unable to create " + vgDir);
+        }
+
+        final Map<String, String> props = new LinkedHashMap<String, String>();
+        props.put("volume.mapr.rest.nodes", "node1,node2,node3");
+        props.put("volume.mapr.rest.principal", "mapr/node1@FQDN");
+        props.put("volume.mapr.rest.keytab", "/opt/mapr/conf/mapr.keytab");
+        props.put("volume.groups.config.dir", vgDir.getPath());
+        props.putAll(properties);
+
+        final StringBuilder xml = new StringBuilder("<configuration>\n");
+        for (Map.Entry<String, String> prop : props.entrySet()) {
+            xml.append(property(prop.getKey(), prop.getValue()));
+        }
+        xml.append("</configuration>\n");
+        write(new File(confDir, "volume-manager.xml"), xml.toString());
+
+        for (int i = 0; i < vgCount; i++) {
+            write(new File(vgDir, vgName(i)),
+                    "cluster=fixture\n"
+                    + "pathformat='/fixture/" + vgName(i) + "/'yyyy/MM/dd\n"
+                    + "name=" + vgName(i) + "\n"
+                    + "owner=root\n"
+                    + "group=root\n"
+                    + "ae=root\n"
+                    + "aetype=1\n"
+                    + "topology=/data\n"
+                    + "interval=" + INTERVALS[i % INTERVALS.length] + "\n"
+                    + "retention=7\n"
+                    + "ahead=3\n");
+        }
+
+        return confDir;
+    }
+
+    /**
+     * deletes a configuration directory created by createConfDir()
+     */
+    static void deleteConfDir(File confDir) {
+
+        final File vgDir = new File(confDir, "vg.d");
+        final File[] files = vgDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        vgDir.delete();
+        new File(confDir, "volume-manager.xml").delete();
+        confDir.delete();
+    }
+
+    /**
+     * builds cluster volume list: for each VG of the configuration the
+     * volumes of the past two weeks of days, months or years (most of which
+     * are to be purged or already exist), followed by unrelated volumes up to
+     * the given total count
+     */
+    static List<MaprVolume> clusterVolumes(VolumeManagerConfiguration conf,
+            int count) {
+
+        final List<MaprVolume> volumes = new ArrayList<MaprVolume>(count);
+        final long now = System.currentTimeMillis();
+
+        for (VolumeGroupConfiguration vgc : conf.getVgMap().values()) {
+            final int interval = VolumeManagerConfiguration
+                    .getCalInterval(vgc.getInterval()).intValue();
+            for (int offset = -14; offset <= 0 && volumes.size() < count; offset++) {
+                volumes.add(new MaprVolume(vgc.getName() + "_"
+                        + VolumeDates.appender(now, interval, offset)));
+            }
+        }
+
+        for (int i = 0; volumes.size() < count; i++) {
+            volumes.add(new MaprVolume(VolumeListFixture.volumeName(i)));
+        }
+
+        return volumes;
+    }
+
+    private static String property(String name, String value) {
+        return "<property>\n  <name>" + name + "</name>\n  <value>" + value
+                + "</value>\n</property>\n";
+    }
+
+    private static void write(File file, String content) throws IOException {
+        final Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+}
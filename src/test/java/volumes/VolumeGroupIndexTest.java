@@ -0,0 +1,57 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit test for VolumeGroupIndex
+ */
+public class VolumeGroupIndexTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public VolumeGroupIndexTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new VolumeGroupIndexTest("testMatchesRegexSemantics"));
+        return suite;
+    }
+
+    // classification equals lookup of the name stripped by "_\\d*$"
+    public void testMatchesRegexSemantics() {
+
+        final Map<String, VolumeGroupConfiguration> vgMap =
+                new HashMap<String, VolumeGroupConfiguration>();
+        for (String name : new String[] { "vg", "vg_a", "vg_ab", "logs", "x1" }) {
+            final VolumeGroupConfiguration vgc = new VolumeGroupConfiguration();
+            vgc.setName(name);
+            vgMap.put(name, vgc);
+        }
+        final VolumeGroupIndex index = new VolumeGroupIndex(vgMap);
+
+        final String[] volumes = { "vg_20190301", "vg", "vg_", "vg_a_2019",
+                "vg_ab_20190101", "vg_abc_20190101", "vg_a", "vg20190301",
+                "logs_1", "log_20190301", "x1", "x1_5", "x", "", "_2019",
+                "mapr.cluster.root", "users_20190301_x" };
+        for (String volume : volumes) {
+            assertSame(volume, vgMap.get(volume.replaceAll("_\\d*$", "")),
+                    index.match(volume));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package volumes;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH throughput of loading volume group directories of 10, 1k and 10k files,
+ * and of reloading configuration with all VG files unchanged (see
+ * 'benchmark' profile in pom.xml).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class VolumeGroupLoadBenchmark {
+
+    @Param({ "10", "1000", "10000" })
+    private int files;
+
+    private File confDir;
+    private VolumeManagerConfiguration conf;
+
+    @Setup
+    public void setup() throws Exception {
+        confDir = VolumeGroupFixture.createConfDir(files);
+        conf = new VolumeManagerConfiguration(confDir);
+    }
+
+    @TearDown
+    public void tearDown() {
+        VolumeGroupFixture.deleteConfDir(confDir);
+    }
+
+    @Benchmark
+    public VolumeManagerConfiguration loadVolumeGroups() {
+        conf.loadVolumeGroups();
+        return conf;
+    }
+
+    @Benchmark
+    public VolumeManagerConfiguration reloadUnchanged() {
+        return new VolumeManagerConfiguration(confDir, conf);
+    }
+}
@@ -0,0 +1,139 @@
+package volumes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Synthetic /rest/volume/list responses for tests and benchmarks. The payload
+ * is generated while it is being read, so even very large volume lists do not
+ * occupy heap on the producing side.
+ */
+class VolumeListFixture {
+
+    /**
+     * charset of generated payload
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * JSON head and tail of the list response
+     */
+    private static final String HEAD =
+            "{\"timestamp\":1467367200000,\"timeofday\":\"2016-07-01 12:00:00.000 GMT+0200\","
+            + "\"status\":\"OK\",\"total\":%d,\"data\":[";
+    private static final String TAIL = "]}";
+
+    /**
+     * retrieve volume name of the given item
+     */
+    static String volumeName(int i) {
+        return "fixture_vol_" + i;
+    }
+
+    /**
+     * builds JSON of a single volume item, attributes mimic a MapR 6.1
+     * volume list entry
+     */
+    static String volumeJson(int i) {
+
+        final StringBuilder sb = new StringBuilder(1536);
+        sb.append("{\"acl\":{\"Principal\":[\"User mapr\",\"User root\"],");
+        sb.append("\"Allowed actions\":[[\"dump\",\"restore\",\"m\",\"a\",\"d\",\"fc\"],[\"dump\"]]},");
+        sb.append("\"creator\":\"mapr\",\"aename\":\"mapr\",\"aetype\":0,");
+        sb.append("\"numreplicas\":\"3\",\"minreplicas\":\"2\",\"nsNumReplicas\":\"3\",");
+        sb.append("\"nsMinReplicas\":\"2\",\"allowGrant\":\"false\",\"reReplTimeOutSec\":\"0\",");
+        sb.append("\"replicationtype\":\"high_throughput\",\"rackpath\":\"/data\",");
+        sb.append("\"mirrorthrottle\":\"1\",\"accesstime\":\"July 1, 2016\",");
+        sb.append("\"readonly\":\"0\",\"mountdir\":\"/fixture/data/").append(i).append("\",");
+        sb.append("\"volumename\":\"").append(volumeName(i)).append("\",");
+        sb.append("\"mounted\":1,\"quota\":\"0\",\"advisoryquota\":\"0\",");
+        sb.append("\"snapshotcount\":\"0\",\"logicalUsed\":\"").append(i * 7).append("\",");
+        sb.append("\"used\":\"").append(i * 3).append("\",\"snapshotused\":\"0\",");
+        sb.append("\"totalused\":\"").append(i * 3).append("\",\"scheduleid\":0,");
+        sb.append("\"schedulename\":\"\",\"mirrorscheduleid\":0,\"volumetype\":0,");
+        sb.append("\"mirrortype\":3,\"creatorcontainerid\":").append(2049 + i).append(",");
+        sb.append("\"creatorvolumeuuid\":\"-").append(4000000000000000000L + i).append("\",");
+        sb.append("\"volumeid\":").append(100000 + i).append(",\"actualreplication\":[0,0,0,100,0,0,0,0,0,0,0],");
+        sb.append("\"nameContainerSizeMB\":0,\"nameContainerId\":").append(2049 + i).append(",");
+        sb.append("\"needsGfsck\":false,\"maxinodesalarmthreshold\":\"0\",");
+        sb.append("\"dbrepllagsecalarmthresh\":\"0\",\"limitspread\":\"true\",");
+        sb.append("\"partlyOutOfTopology\":0,\"auditVolume\":0,\"audited\":0,");
+        sb.append("\"coalesceInterval\":60,\"enableddataauditoperations\":\"getattr,setattr\",");
+        sb.append("\"disableddataauditoperations\":\"\",\"volumeAces\":{\"readAce\":\"p\",\"writeAce\":\"p\"},");
+        sb.append("\"fixCreatorId\":\"false\",\"ReplTypeConversionInProgress\":\"0\",");
+        sb.append("\"aggrinfo\":{\"numcontainers\":").append(i % 50 + 1).append(",");
+        sb.append("\"containers\":[{\"cid\":").append(2049 + i).append(",\"master\":\"10.0.0.1:5660\"}]}}");
+        return sb.toString();
+    }
+
+    /**
+     * builds complete list response as a string
+     */
+    static String json(int count) {
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format(HEAD, Integer.valueOf(count)));
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(volumeJson(i));
+        }
+        sb.append(TAIL);
+        return sb.toString();
+    }
+
+    /**
+     * opens a stream generating list response of the given size on the fly
+     */
+    static InputStream stream(final int count) {
+
+        return new InputStream() {
+
+            private byte[] chunk = String.format(HEAD,
+                    Integer.valueOf(count)).getBytes(UTF8);
+            private int pos = 0;
+            private int next = 0;
+
+            private boolean fill() {
+                while (pos >= chunk.length) {
+                    if (next > count) {
+                        return false;
+                    }
+                    if (next == count) {
+                        chunk = TAIL.getBytes(UTF8);
+                    } else {
+                        chunk = ((next > 0 ? "," : "") + volumeJson(next))
+                                .getBytes(UTF8);
+                    }
+                    next++;
+                    pos = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public int read() throws IOException {
+                if (!fill()) {
+                    return -1;
+                }
+                return chunk[pos++] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+                final int n = Math.min(len, chunk.length - pos);
+                System.arraycopy(chunk, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package volumes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH throughput of parsing /rest/volume/list responses of 1k, 10k and 100k
+ * volumes (see 'benchmark' profile in pom.xml).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class VolumeListParseBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    private int volumes;
+
+    private byte[] json;
+
+    @Setup
+    public void setup() throws Exception {
+        json = VolumeListFixture.json(volumes).getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public List<MaprVolume> parse() throws IOException {
+        final List<MaprVolume> list = new ArrayList<MaprVolume>(volumes);
+        MaprVolumeParser.parse(new ByteArrayInputStream(json), list);
+        return list;
+    }
+}
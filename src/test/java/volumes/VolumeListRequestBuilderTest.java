@@ -0,0 +1,75 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for VolumeListRequestBuilder
+ */
+public class VolumeListRequestBuilderTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public VolumeListRequestBuilderTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new VolumeListRequestBuilderTest("testColumnsAndFilter"));
+        suite.addTest(new VolumeListRequestBuilderTest("testNoFilter"));
+        suite.addTest(new VolumeListRequestBuilderTest("testFilterTooLong"));
+        return suite;
+    }
+
+    // columns and prefix filter are encoded into the URL
+    public void testColumnsAndFilter() throws Exception {
+
+        final String url = new VolumeListRequestBuilder("https://node1:8443")
+                .column("volumename").column("mountdir")
+                .namePrefixes(Arrays.asList("vg_b", "vg_a", "vg_b"))
+                .build();
+
+        assertTrue(url.startsWith("https://node1:8443/rest/volume/list?columns="));
+        assertEquals("https://node1:8443/rest/volume/list?columns=volumename,mountdir"
+                + "&filter=[volumename==vg_a*]or[volumename==vg_b*]",
+                URLDecoder.decode(url, "UTF-8"));
+    }
+
+    // no parameters if neither columns nor prefixes are given
+    public void testNoFilter() {
+
+        assertEquals("https://node1:8443/rest/volume/list",
+                new VolumeListRequestBuilder("https://node1:8443").build());
+    }
+
+    // filter is dropped if it would exceed the maximum length
+    public void testFilterTooLong() {
+
+        final List<String> prefixes = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            prefixes.add("volume_group_" + i);
+        }
+
+        final VolumeListRequestBuilder builder =
+                new VolumeListRequestBuilder("https://node1:8443")
+                .column("volumename").namePrefixes(prefixes);
+        assertNull(builder.buildFilter());
+        assertFalse(builder.build().contains("filter="));
+    }
+}
@@ -0,0 +1,200 @@
+package volumes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for VolumeManagerConfiguration
+ */
+public class VolumeManagerConfigurationTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public VolumeManagerConfigurationTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new VolumeManagerConfigurationTest("testInitialLoad"));
+        suite.addTest(new VolumeManagerConfigurationTest("testIncrementalReload"));
+        suite.addTest(new VolumeManagerConfigurationTest("testPendingChanges"));
+        suite.addTest(new VolumeManagerConfigurationTest("testParallelLoad"));
+        suite.addTest(new VolumeManagerConfigurationTest("testMalformedFile"));
+        return suite;
+    }
+
+    private File confDir;
+    private File vgDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        confDir = VolumeGroupFixture.createConfDir(3);
+        vgDir = new File(confDir, "vg.d");
+    }
+
+    @Override
+    protected void tearDown() {
+        VolumeGroupFixture.deleteConfDir(confDir);
+    }
+
+    public void testInitialLoad() {
+
+        final VolumeManagerConfiguration conf =
+                new VolumeManagerConfiguration(confDir);
+        assertEquals(3, conf.getVgMap().size());
+        assertEquals(conf.getVgMap().keySet(), conf.getChangedVgs());
+
+        conf.clearVgChanges();
+        assertTrue(conf.getChangedVgs().isEmpty());
+        assertFalse(conf.hasVgChanged(VolumeGroupFixture.vgName(0)));
+    }
+
+    // only files added or modified are parsed, only their VGs are flagged
+    public void testIncrementalReload() throws Exception {
+
+        final VolumeManagerConfiguration conf =
+                new VolumeManagerConfiguration(confDir);
+        conf.clearVgChanges();
+
+        // nothing changed
+        final VolumeManagerConfiguration same =
+                new VolumeManagerConfiguration(confDir, conf);
+        assertTrue(same.getChangedVgs().isEmpty());
+        for (String name : conf.getVgMap().keySet()) {
+            assertSame(conf.getVgMap().get(name), same.getVgMap().get(name));
+        }
+
+        // one VG modified, one added, one removed
+        final String modified = VolumeGroupFixture.vgName(0);
+        final String removed = VolumeGroupFixture.vgName(1);
+        final String unchanged = VolumeGroupFixture.vgName(2);
+        append(new File(vgDir, modified), "retention=8\n");
+        assertTrue(new File(vgDir, removed).delete());
+        copy(new File(vgDir, unchanged), new File(vgDir, "added"), "name=added\n");
+
+        final VolumeManagerConfiguration reloaded =
+                new VolumeManagerConfiguration(confDir, same);
+        assertEquals(new HashSet<String>(Arrays.asList(modified, unchanged, "added")),
+                reloaded.getVgMap().keySet());
+        assertEquals(new HashSet<String>(Arrays.asList(modified, "added")),
+                reloaded.getChangedVgs());
+        assertEquals(8, reloaded.getVgMap().get(modified).getRetention());
+        assertSame(conf.getVgMap().get(unchanged),
+                reloaded.getVgMap().get(unchanged));
+    }
+
+    // VGs not reconciled successfully yet remain flagged on reload
+    public void testPendingChanges() throws Exception {
+
+        final VolumeManagerConfiguration conf =
+                new VolumeManagerConfiguration(confDir);
+        conf.clearVgChanges();
+
+        append(new File(vgDir, VolumeGroupFixture.vgName(1)), "retention=9\n");
+        final VolumeManagerConfiguration first =
+                new VolumeManagerConfiguration(confDir, conf);
+        assertEquals(Collections.singleton(VolumeGroupFixture.vgName(1)),
+                first.getChangedVgs());
+
+        final VolumeManagerConfiguration second =
+                new VolumeManagerConfiguration(confDir, first);
+        assertEquals(Collections.singleton(VolumeGroupFixture.vgName(1)),
+                second.getChangedVgs());
+    }
+
+    // files loaded in parallel are merged in listing order, the first of VGs
+    // with the same name wins
+    public void testParallelLoad() throws Exception {
+
+        final File many = VolumeGroupFixture.createConfDir(100);
+        try {
+            final File manyVgDir = new File(many, "vg.d");
+            final String name = VolumeGroupFixture.vgName(42);
+            copy(new File(manyVgDir, name), new File(manyVgDir, "duplicate"),
+                    "retention=8\n");
+            new File(manyVgDir, "subdir").mkdir();
+
+            File first = null;
+            for (File file : manyVgDir.listFiles()) {
+                if (file.getName().equals(name)
+                        || file.getName().equals("duplicate")) {
+                    first = file;
+                    break;
+                }
+            }
+
+            final VolumeManagerConfiguration conf =
+                    new VolumeManagerConfiguration(many);
+            assertEquals(100, conf.getVgMap().size());
+            assertEquals(first.getName().equals("duplicate"),
+                    conf.getVgMap().get(name).getRetention() == 8);
+            conf.clearVgChanges();
+
+            final VolumeManagerConfiguration same =
+                    new VolumeManagerConfiguration(many, conf);
+            assertTrue(same.getChangedVgs().isEmpty());
+            assertSame(conf.getVgMap().get(name), same.getVgMap().get(name));
+        } finally {
+            new File(many, "vg.d/subdir").delete();
+            VolumeGroupFixture.deleteConfDir(many);
+        }
+    }
+
+    // a file that can't be parsed is skipped, other VGs are loaded
+    public void testMalformedFile() throws Exception {
+
+        append(new File(vgDir, VolumeGroupFixture.vgName(1)), "ae=\\u00zz\n");
+
+        final VolumeManagerConfiguration conf =
+                new VolumeManagerConfiguration(confDir);
+        assertEquals(new HashSet<String>(Arrays.asList(
+                VolumeGroupFixture.vgName(0), VolumeGroupFixture.vgName(2))),
+                conf.getVgMap().keySet());
+    }
+
+    /**
+     * appends to a file, moving its modification time ahead to be detected
+     * regardless of file system timestamp resolution
+     */
+    private static void append(File file, String content) throws IOException {
+        final long modified = file.lastModified();
+        final FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        file.setLastModified(modified + 2000);
+    }
+
+    private static void copy(File from, File to, String append)
+            throws IOException {
+        final byte[] content = Files.readAllBytes(from.toPath());
+        final FileOutputStream out = new FileOutputStream(to);
+        try {
+            out.write(content);
+            out.write(append.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
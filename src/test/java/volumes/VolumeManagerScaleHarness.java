@@ -0,0 +1,223 @@
+package volumes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs volume manager reconciles end to end against MaprRestSimulator and
+ * InMemoryVolumeFileSystem, and measures the time taken per reconcile.
+ * The first reconcile creates all volumes of the configured VGs, later ones
+ * find the cluster in the target state. Kerberos login is not part of it.
+ *
+ * usage: VolumeManagerScaleHarness [vgs=N] [volumes=N] [latency=MS]
+ * [errors=RATE] [iterations=N] [pagesize=N] [rate=N] [threads=N]
+ * [fslatency=MICROS] [fserrors=RATE]
+ */
+class VolumeManagerScaleHarness {
+
+    /**
+     * number of VG configuration files
+     */
+    int vgCount = 100;
+
+    /**
+     * number of cluster volumes unrelated to any VG
+     */
+    int clusterVolumes = 10000;
+
+    /**
+     * simulated REST latency in milliseconds, plus a jitter of up to the same
+     */
+    long latency = 5;
+
+    /**
+     * share of REST calls failing with HTTP 503
+     */
+    double serverErrorRate = 0;
+
+    /**
+     * share of volume creations and removals executed, but failing with
+     * HTTP 503
+     */
+    double lostResponseRate = 0;
+
+    /**
+     * number of volumes skipped at the start of each volume list page but
+     * the first
+     */
+    int listShift = 0;
+
+    int iterations = 3;
+
+    /**
+     * volume list page size, 0 for the whole list at once
+     */
+    int pageSize = 0;
+
+    /**
+     * REST rate limit, 0 for unlimited
+     */
+    int rateLimit = 0;
+
+    /**
+     * number of threads serving simulated REST calls
+     */
+    int serverThreads = 16;
+
+    /**
+     * simulated FS operation latency in microseconds
+     */
+    long fsLatencyMicros = 500;
+
+    /**
+     * share of FS operations failing
+     */
+    double fsFailureRate = 0;
+
+    /**
+     * outcome of a single reconcile
+     */
+    static final class Result {
+
+        final boolean success;
+        final long millis;
+        final long requests;
+        final long creates;
+        final long removes;
+        final int volumes;
+        final long fsOps;
+        final long fsFailures;
+
+        private Result(boolean success, long millis, MaprRestSimulator sim,
+                InMemoryVolumeFileSystem fs) {
+            this.success = success;
+            this.millis = millis;
+            this.requests = sim.getRequestCount();
+            this.creates = sim.getRequestCount("volume/create");
+            this.removes = sim.getRequestCount("volume/remove");
+            this.volumes = sim.getVolumeCount();
+            this.fsOps = fs.getOpCount();
+            this.fsFailures = fs.getFailureCount();
+        }
+
+        @Override
+        public String toString() {
+            return (success ? "succeeded" : "failed") + " in " + millis
+                    + " ms, " + requests + " REST calls (" + creates
+                    + " creates, " + removes + " removes), " + fsOps
+                    + " FS operations (" + fsFailures + " failed)";
+        }
+    }
+
+    /**
+     * runs the configured number of reconciles with a fresh simulator and
+     * configuration
+     */
+    Result[] run() throws IOException {
+
+        final MaprRestSimulator sim = new MaprRestSimulator(serverThreads);
+        sim.setLatency(latency, latency);
+        sim.setServerErrorRate(serverErrorRate);
+        sim.setLostResponseRate(lostResponseRate);
+        sim.setListShift(listShift);
+        sim.populate(clusterVolumes);
+        sim.start();
+
+        final InMemoryVolumeFileSystem fs = new InMemoryVolumeFileSystem();
+        fs.setLatencyMicros(fsLatencyMicros);
+        fs.setFailureRate(fsFailureRate);
+        sim.setFileSystem(fs);
+
+        final Map<String, String> props = new HashMap<String, String>();
+        props.put(VolumeManagerConfiguration.MAPR_REST_NODES_KEY, "localhost");
+        props.put(VolumeManagerConfiguration.MAPR_REST_PORT_KEY,
+                String.valueOf(sim.getPort()));
+        props.put(VolumeManagerConfiguration.MAPR_REST_SCHEME_KEY, "http");
+        props.put(VolumeManagerConfiguration.REST_LIST_PAGE_SIZE,
+                String.valueOf(pageSize));
+        props.put(VolumeManagerConfiguration.REST_RATE_LIMIT,
+                String.valueOf(rateLimit));
+        props.put(VolumeManagerConfiguration.REST_PROBE_INTERVAL, "0");
+        props.put(VolumeManagerConfiguration.ACTION_RETRY_DELAY, "0");
+        final File confDir = VolumeGroupFixture.createConfDir(vgCount, props);
+
+        try {
+            final VolumeManagerConfiguration conf =
+                    new VolumeManagerConfiguration(confDir);
+            if (!conf.isValid()) {
+                throw new IOException("invalid configuration in " + confDir);
+            }
+
+            VolumeManager.setConf(conf);
+            final VolumeActionManager vam = VolumeManager.getVolumeActionManager();
+            vam.setVMConf(conf);
+            vam.setFileSystem(fs);
+
+            final Result[] results = new Result[iterations];
+            for (int i = 0; i < iterations; i++) {
+                sim.resetRequestCounts();
+                fs.resetCounts();
+                final long start = System.nanoTime();
+                final boolean success = VolumeManager.reconcile();
+                results[i] = new Result(success,
+                        (System.nanoTime() - start) / 1000000, sim, fs);
+            }
+            return results;
+
+        } finally {
+            sim.stop();
+            VolumeManager.getVolumeActionManager().setFileSystem(null);
+            VolumeGroupFixture.deleteConfDir(confDir);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        final VolumeManagerScaleHarness harness = new VolumeManagerScaleHarness();
+        for (String arg : args) {
+            final int eq = arg.indexOf('=');
+            final String key = eq > 0 ? arg.substring(0, eq) : arg;
+            final String value = eq > 0 ? arg.substring(eq + 1) : "";
+
+            if ("vgs".equals(key)) {
+                harness.vgCount = Integer.parseInt(value);
+            } else if ("volumes".equals(key)) {
+                harness.clusterVolumes = Integer.parseInt(value);
+            } else if ("latency".equals(key)) {
+                harness.latency = Long.parseLong(value);
+            } else if ("errors".equals(key)) {
+                harness.serverErrorRate = Double.parseDouble(value);
+            } else if ("iterations".equals(key)) {
+                harness.iterations = Integer.parseInt(value);
+            } else if ("pagesize".equals(key)) {
+                harness.pageSize = Integer.parseInt(value);
+            } else if ("rate".equals(key)) {
+                harness.rateLimit = Integer.parseInt(value);
+            } else if ("threads".equals(key)) {
+                harness.serverThreads = Integer.parseInt(value);
+            } else if ("fslatency".equals(key)) {
+                harness.fsLatencyMicros = Long.parseLong(value);
+            } else if ("fserrors".equals(key)) {
+                harness.fsFailureRate = Double.parseDouble(value);
+            } else {
+                System.err.println("unknown option " + arg);
+                System.exit(1);
+            }
+        }
+
+        System.out.println("reconciling " + harness.vgCount + " VGs against "
+                + harness.clusterVolumes + " cluster volumes, REST latency "
+                + harness.latency + "-" + 2 * harness.latency + " ms, "
+                + harness.serverErrorRate + " server error rate");
+
+        final Result[] results = harness.run();
+        for (int i = 0; i < results.length; i++) {
+            System.out.println("reconcile " + (i + 1) + " " + results[i]);
+        }
+
+        // REST node probing and action workers may still be around
+        System.exit(0);
+    }
+}
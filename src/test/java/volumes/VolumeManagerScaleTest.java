@@ -0,0 +1,155 @@
+package volumes;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+
+/**
+ * Unit test for reconciles against MaprRestSimulator
+ */
+public class VolumeManagerScaleTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public VolumeManagerScaleTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(new VolumeManagerScaleTest("testParseFilter"));
+        suite.addTest(new VolumeManagerScaleTest("testReconcile"));
+        suite.addTest(new VolumeManagerScaleTest("testReconcileServerErrors"));
+        suite.addTest(new VolumeManagerScaleTest("testReconcileLostResponses"));
+        suite.addTest(new VolumeManagerScaleTest("testReconcileShiftedPages"));
+        suite.addTest(new VolumeManagerScaleTest("testReconcileFsErrors"));
+        return suite;
+    }
+
+    // simulator understands the filters built for volume list calls
+    public void testParseFilter() {
+
+        assertNull(MaprRestSimulator.parseFilter(null));
+        assertEquals(Arrays.asList("vg1", "vg_or"),
+                MaprRestSimulator.parseFilter(new VolumeListRequestBuilder("")
+                        .namePrefixes(Arrays.asList("vg1", "vg_or"))
+                        .buildFilter()));
+    }
+
+    // first reconcile creates volumes of all VGs, the second one finds the
+    // cluster in the target state
+    public void testReconcile() throws Exception {
+
+        final VolumeManagerScaleHarness harness = new VolumeManagerScaleHarness();
+        harness.vgCount = 6;
+        harness.clusterVolumes = 1000;
+        harness.latency = 0;
+        harness.pageSize = 300;
+        harness.iterations = 2;
+
+        final VolumeManagerScaleHarness.Result[] results = harness.run();
+
+        assertTrue(results[0].success);
+        assertTrue(results[0].creates > 0);
+        assertEquals(1000 + results[0].creates, results[0].volumes);
+        assertEquals(0, results[0].removes);
+        // parent lookup, parent creation if missing, owner and permission
+        assertTrue(results[0].fsOps >= 3 * results[0].creates);
+        assertTrue(results[0].fsOps <= 4 * results[0].creates);
+        assertEquals(0, results[0].fsFailures);
+
+        assertTrue(results[1].success);
+        assertEquals(0, results[1].fsOps);
+        assertEquals(0, results[1].creates);
+        assertEquals(0, results[1].removes);
+        assertEquals(results[0].volumes, results[1].volumes);
+    }
+
+    // reconcile fails while every REST call fails
+    public void testReconcileServerErrors() throws Exception {
+
+        final VolumeManagerScaleHarness harness = new VolumeManagerScaleHarness();
+        harness.vgCount = 2;
+        harness.clusterVolumes = 10;
+        harness.latency = 0;
+        harness.serverErrorRate = 1;
+        harness.iterations = 1;
+
+        final VolumeManagerScaleHarness.Result[] results = harness.run();
+
+        assertFalse(results[0].success);
+        assertEquals(0, results[0].creates);
+        assertEquals(10, results[0].volumes);
+    }
+
+    // volumes created although the response was lost aren't created again
+    public void testReconcileLostResponses() throws Exception {
+
+        final VolumeManagerScaleHarness harness = new VolumeManagerScaleHarness();
+        harness.vgCount = 2;
+        harness.clusterVolumes = 10;
+        harness.latency = 0;
+        harness.fsLatencyMicros = 0;
+        harness.lostResponseRate = 1;
+        harness.iterations = 1;
+
+        final VolumeManagerScaleHarness.Result[] results = harness.run();
+
+        assertTrue(results[0].success);
+        assertTrue(results[0].creates > 0);
+        assertEquals(10 + results[0].creates, results[0].volumes);
+    }
+
+    // volumes missing from a paged volume list aren't created again
+    public void testReconcileShiftedPages() throws Exception {
+
+        final VolumeManagerScaleHarness harness = new VolumeManagerScaleHarness();
+        harness.vgCount = 2;
+        harness.clusterVolumes = 10;
+        harness.latency = 0;
+        harness.fsLatencyMicros = 0;
+        harness.pageSize = 3;
+        harness.listShift = 1;
+        harness.iterations = 2;
+
+        final VolumeManagerScaleHarness.Result[] results = harness.run();
+
+        assertTrue(results[0].success);
+        assertTrue(results[0].creates > 0);
+        assertTrue(results[1].success);
+        assertEquals(0, results[1].creates);
+        assertEquals(results[0].volumes, results[1].volumes);
+    }
+
+    // every volume creation is given up after the configured number of
+    // attempts of its first FS step
+    public void testReconcileFsErrors() throws Exception {
+
+        final VolumeManagerScaleHarness harness = new VolumeManagerScaleHarness();
+        harness.vgCount = 2;
+        harness.clusterVolumes = 10;
+        harness.latency = 0;
+        harness.fsLatencyMicros = 0;
+        harness.fsFailureRate = 1;
+        harness.iterations = 1;
+
+        final VolumeManagerScaleHarness.Result[] results = harness.run();
+
+        assertFalse(results[0].success);
+        assertEquals(0, results[0].creates);
+        assertTrue(results[0].fsOps > 0);
+        assertEquals(0, results[0].fsOps % 3);
+        assertEquals(results[0].fsOps, results[0].fsFailures);
+    }
+}